@@ -0,0 +1,563 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.lang;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>
+ * The binary companion of {@link Literal}: writes values of a literal class to a
+ * {@link ByteBuffer} and reads them back, so that literals can be stored (e.g. in
+ * caches or spill files) or exchanged compactly without being converted to and
+ * parsed from text.
+ * </p>
+ *
+ * <p>
+ * Binary literals are found through the same register as text literals, with
+ * {@link Literal#binaryLiteral(Class)}. Binary literals are provided for primitives
+ * and their wrappers, {@link String}, {@link BigInteger}, {@link BigDecimal},
+ * {@link Date}, enums and arrays of binary literals; a literal registered with
+ * {@link Literal.Register#add(Class, Literal)} which also implements this interface
+ * is used as the binary literal of its class.
+ * </p>
+ *
+ * <p>
+ * Integral values (and chars) are written as variable-length integers (varints) of
+ * 7 bits per byte, using zigzag encoding for signed values so that small negative
+ * values are also short; floats and doubles are written in 4 and 8 bytes in the byte
+ * order of the buffer. Strings (in UTF-8), big integers and arrays are prefixed with
+ * their length. Enums are written as their ordinal. Nulls take a single byte. When a
+ * value does not fit in the remaining space, a {@link BufferOverflowException} is thrown
+ * and the value may have been partially written.
+ * </p>
+ *
+ * @param <T> The type of values that this is a binary literal for.
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public interface BinaryLiteral<T> {
+  /**
+   * Writes the value to the buffer, from its position, advancing the latter.
+   */
+  void write(T value, ByteBuffer out);
+
+  /**
+   * Reads a value from the buffer, from its position, advancing the latter.
+   */
+  T read(ByteBuffer in);
+
+  /**
+   * Writes the value as an unsigned varint: 7 bits per byte, least significant first,
+   * with the high bit of each byte set if more bytes follow.
+   */
+  static void writeVarLong(long value, ByteBuffer out) {
+    while ((value & ~0x7FL) != 0) {
+      out.put((byte)((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.put((byte)value);
+  }
+
+  /**
+   * Reads an unsigned varint written by {@link #writeVarLong(long, ByteBuffer)}.
+   */
+  static long readVarLong(ByteBuffer in) {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.get();
+      value |= (long)(b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint");
+  }
+
+  /**
+   * Writes the value as a zigzag-encoded varint, which is short for values of
+   * small magnitudes, positive or negative.
+   */
+  static void writeSignedVarLong(long value, ByteBuffer out) {
+    writeVarLong((value << 1) ^ (value >> 63), out);
+  }
+
+  /**
+   * Reads a signed varint written by {@link #writeSignedVarLong(long, ByteBuffer)}.
+   */
+  static long readSignedVarLong(ByteBuffer in) {
+    long value = readVarLong(in);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Reads the length prefixed to a value which can be null: the length plus one,
+   * or 0 for null (returned as -1). Fails if the buffer has fewer bytes remaining
+   * than the number of items of the value.
+   */
+  private static int readLength(ByteBuffer in) {
+    long length = readVarLong(in) - 1;
+    if (length > in.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    return (int)length;
+  }
+
+  /**
+   * Writes nulls as a 0 byte and other values as 1 followed by the values
+   * written by another binary literal.
+   */
+  class NullableBinaryLiteral<T> implements BinaryLiteral<T> {
+    NullableBinaryLiteral(BinaryLiteral<T> literal) {
+      this.literal = literal;
+    }
+
+    @Override
+    public void write(T value, ByteBuffer out) {
+      if (value == null) {
+        out.put((byte)0);
+      } else {
+        out.put((byte)1);
+        literal.write(value, out);
+      }
+    }
+
+    @Override
+    public T read(ByteBuffer in) {
+      return in.get() == 0 ? null : literal.read(in);
+    }
+
+    /**
+     * The binary literal of non-null values.
+     */
+    private final BinaryLiteral<T> literal;
+  }
+
+  /**
+   * Booleans are written as one byte, 1 for true and 0 for false.
+   */
+  class BooleanBinaryLiteral implements BinaryLiteral<Boolean> {
+    @Override
+    public void write(Boolean value, ByteBuffer out) {
+      out.put(value ? (byte)1 : (byte)0);
+    }
+
+    @Override
+    public Boolean read(ByteBuffer in) {
+      return in.get() != 0;
+    }
+
+    BooleanBinaryLiteral() {
+    }
+  }
+
+  /**
+   * Bytes are written as themselves.
+   */
+  class ByteBinaryLiteral implements BinaryLiteral<Byte> {
+    @Override
+    public void write(Byte value, ByteBuffer out) {
+      out.put(value);
+    }
+
+    @Override
+    public Byte read(ByteBuffer in) {
+      return in.get();
+    }
+
+    ByteBinaryLiteral() {
+    }
+  }
+
+  /**
+   * Shorts are written as signed varints.
+   */
+  class ShortBinaryLiteral implements BinaryLiteral<Short> {
+    @Override
+    public void write(Short value, ByteBuffer out) {
+      writeSignedVarLong(value, out);
+    }
+
+    @Override
+    public Short read(ByteBuffer in) {
+      return (short)readSignedVarLong(in);
+    }
+
+    ShortBinaryLiteral() {
+    }
+  }
+
+  /**
+   * Characters are written as unsigned varints.
+   */
+  class CharacterBinaryLiteral implements BinaryLiteral<Character> {
+    @Override
+    public void write(Character value, ByteBuffer out) {
+      writeVarLong(value, out);
+    }
+
+    @Override
+    public Character read(ByteBuffer in) {
+      return (char)readVarLong(in);
+    }
+
+    CharacterBinaryLiteral() {
+    }
+  }
+
+  /**
+   * Ints are written as signed varints.
+   */
+  class IntegerBinaryLiteral implements BinaryLiteral<Integer> {
+    @Override
+    public void write(Integer value, ByteBuffer out) {
+      writeSignedVarLong(value, out);
+    }
+
+    @Override
+    public Integer read(ByteBuffer in) {
+      return (int)readSignedVarLong(in);
+    }
+
+    IntegerBinaryLiteral() {
+    }
+  }
+
+  /**
+   * Longs are written as signed varints.
+   */
+  class LongBinaryLiteral implements BinaryLiteral<Long> {
+    @Override
+    public void write(Long value, ByteBuffer out) {
+      writeSignedVarLong(value, out);
+    }
+
+    @Override
+    public Long read(ByteBuffer in) {
+      return readSignedVarLong(in);
+    }
+
+    LongBinaryLiteral() {
+    }
+  }
+
+  /**
+   * Floats are written in 4 bytes.
+   */
+  class FloatBinaryLiteral implements BinaryLiteral<Float> {
+    @Override
+    public void write(Float value, ByteBuffer out) {
+      out.putFloat(value);
+    }
+
+    @Override
+    public Float read(ByteBuffer in) {
+      return in.getFloat();
+    }
+
+    FloatBinaryLiteral() {
+    }
+  }
+
+  /**
+   * Doubles are written in 8 bytes.
+   */
+  class DoubleBinaryLiteral implements BinaryLiteral<Double> {
+    @Override
+    public void write(Double value, ByteBuffer out) {
+      out.putDouble(value);
+    }
+
+    @Override
+    public Double read(ByteBuffer in) {
+      return in.getDouble();
+    }
+
+    DoubleBinaryLiteral() {
+    }
+  }
+
+  /**
+   * Strings are written as the length of their UTF-8 encoding (plus one, 0 for
+   * null) followed by the encoding, produced directly in the buffer.
+   */
+  class StringBinaryLiteral implements BinaryLiteral<String> {
+    @Override
+    public void write(String value, ByteBuffer out) {
+      if (value == null) {
+        out.put((byte)0);
+        return;
+      }
+      int length = value.length();
+      int encoded = length;
+      for (int i = 0; i < length; i++) {
+        char c = value.charAt(i);
+        if (c >= 0x80) {
+          if (c < 0x800) {
+            encoded += 1;
+          } else if (Character.isHighSurrogate(c) && i + 1 < length
+                  && Character.isLowSurrogate(value.charAt(i + 1))) {
+            encoded += 2;
+            i++;
+          } else if (!Character.isSurrogate(c)) {
+            encoded += 2;
+          }
+        }
+      }
+      writeVarLong(encoded + 1L, out);
+      if (out.remaining() < encoded) {
+        throw new BufferOverflowException();
+      }
+      for (int i = 0; i < length; i++) {
+        char c = value.charAt(i);
+        if (c < 0x80) {
+          out.put((byte)c);
+        } else if (c < 0x800) {
+          out.put((byte)(0xC0 | (c >> 6)));
+          out.put((byte)(0x80 | (c & 0x3F)));
+        } else if (Character.isSurrogate(c)) {
+          if (Character.isHighSurrogate(c) && i + 1 < length
+           && Character.isLowSurrogate(value.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, value.charAt(++i));
+            out.put((byte)(0xF0 | (cp >> 18)));
+            out.put((byte)(0x80 | ((cp >> 12) & 0x3F)));
+            out.put((byte)(0x80 | ((cp >> 6) & 0x3F)));
+            out.put((byte)(0x80 | (cp & 0x3F)));
+          } else {
+            // unpaired surrogate, replaced as by String.getBytes
+            out.put((byte)'?');
+          }
+        } else {
+          out.put((byte)(0xE0 | (c >> 12)));
+          out.put((byte)(0x80 | ((c >> 6) & 0x3F)));
+          out.put((byte)(0x80 | (c & 0x3F)));
+        }
+      }
+    }
+
+    @Override
+    public String read(ByteBuffer in) {
+      int length = readLength(in);
+      if (length == -1) {
+        return null;
+      } else if (in.hasArray()) {
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, UTF_8);
+        in.position(in.position() + length);
+        return value;
+      } else {
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+      }
+    }
+
+    StringBinaryLiteral() {
+    }
+  }
+
+  /**
+   * Big integers are written as the length of their two's-complement representation
+   * (plus one, 0 for null) followed by the representation.
+   */
+  class BigIntegerBinaryLiteral implements BinaryLiteral<BigInteger> {
+    @Override
+    public void write(BigInteger value, ByteBuffer out) {
+      if (value == null) {
+        out.put((byte)0);
+      } else {
+        byte[] bytes = value.toByteArray();
+        writeVarLong(bytes.length + 1L, out);
+        out.put(bytes);
+      }
+    }
+
+    @Override
+    public BigInteger read(ByteBuffer in) {
+      int length = readLength(in);
+      if (length == -1) {
+        return null;
+      }
+      byte[] bytes = new byte[length];
+      in.get(bytes);
+      return new BigInteger(bytes);
+    }
+
+    BigIntegerBinaryLiteral() {
+    }
+  }
+
+  /**
+   * Big decimals are written as their unscaled value (as a big integer) followed
+   * by their scale as a signed varint, or as a single 0 for null.
+   */
+  class BigDecimalBinaryLiteral implements BinaryLiteral<BigDecimal> {
+    @Override
+    public void write(BigDecimal value, ByteBuffer out) {
+      if (value == null) {
+        out.put((byte)0);
+      } else {
+        UNSCALED.write(value.unscaledValue(), out);
+        writeSignedVarLong(value.scale(), out);
+      }
+    }
+
+    @Override
+    public BigDecimal read(ByteBuffer in) {
+      BigInteger unscaled = UNSCALED.read(in);
+      return unscaled == null ? null : new BigDecimal(unscaled, (int)readSignedVarLong(in));
+    }
+
+    BigDecimalBinaryLiteral() {
+    }
+
+    private static final BigIntegerBinaryLiteral UNSCALED = new BigIntegerBinaryLiteral();
+  }
+
+  /**
+   * Dates are written as their time in milliseconds since the epoch, as a signed varint.
+   */
+  class DateBinaryLiteral implements BinaryLiteral<Date> {
+    @Override
+    public void write(Date value, ByteBuffer out) {
+      writeSignedVarLong(value.getTime(), out);
+    }
+
+    @Override
+    public Date read(ByteBuffer in) {
+      return new Date(readSignedVarLong(in));
+    }
+
+    DateBinaryLiteral() {
+    }
+  }
+
+  /**
+   * Enums are written as their ordinal plus one (0 for null), as a varint.
+   */
+  class EnumBinaryLiteral<T extends Enum<T>> implements BinaryLiteral<T> {
+    EnumBinaryLiteral(Class<T> cls) {
+      constants = cls.getEnumConstants();
+    }
+
+    @Override
+    public void write(T value, ByteBuffer out) {
+      writeVarLong(value == null ? 0 : value.ordinal() + 1, out);
+    }
+
+    @Override
+    public T read(ByteBuffer in) {
+      long ordinal = readVarLong(in) - 1;
+      if (ordinal < -1 || ordinal >= constants.length) {
+        throw new IllegalArgumentException("No enum constant with ordinal " + ordinal + " in "
+                                         + constants.getClass().getComponentType());
+      }
+      return ordinal == -1 ? null : constants[(int)ordinal];
+    }
+
+    /**
+     * The constants of the enum, by ordinal.
+     */
+    private final T[] constants;
+  }
+
+  /**
+   * Arrays of binary literals are written as their length (plus one, 0 for null)
+   * followed by their items. Arrays of primitives are written without boxing and
+   * arrays of bytes, floats and doubles are copied in bulk.
+   */
+  class ArrayBinaryLiteral<T> implements BinaryLiteral<T> {
+    ArrayBinaryLiteral(Class<T> arrayClass) {
+      componentType = arrayClass.getComponentType();
+      kind = componentType.isPrimitive() ? componentType.descriptorString().charAt(0) : 'L';
+      componentLiteral = kind == 'L' ? Literal.binaryLiteral(componentType) : null;
+    }
+
+    @Override
+    public void write(T array, ByteBuffer out) {
+      if (array == null) {
+        out.put((byte)0);
+        return;
+      }
+      int length = Array.getLength(array);
+      writeVarLong(length + 1L, out);
+      switch (kind) {
+        case 'B' -> out.put((byte[])array);
+        case 'Z' -> { for (boolean b: (boolean[])array) out.put(b ? (byte)1 : (byte)0); }
+        case 'S' -> { for (short s: (short[])array) writeSignedVarLong(s, out); }
+        case 'C' -> { for (char c: (char[])array) writeVarLong(c, out); }
+        case 'I' -> { for (int i: (int[])array) writeSignedVarLong(i, out); }
+        case 'J' -> { for (long l: (long[])array) writeSignedVarLong(l, out); }
+        case 'F' -> {
+          out.asFloatBuffer().put((float[])array);
+          out.position(out.position() + length * Float.BYTES);
+        }
+        case 'D' -> {
+          out.asDoubleBuffer().put((double[])array);
+          out.position(out.position() + length * Double.BYTES);
+        }
+        default -> {
+          BinaryLiteral<Object> literal = (BinaryLiteral<Object>)componentLiteral;
+          for (Object item: (Object[])array) {
+            literal.write(item, out);
+          }
+        }
+      }
+    }
+
+    @Override
+    public T read(ByteBuffer in) {
+      int length = readLength(in);
+      if (length == -1) {
+        return null;
+      }
+      Object array = Array.newInstance(componentType, length);
+      switch (kind) {
+        case 'B' -> in.get((byte[])array);
+        case 'Z' -> { boolean[] a = (boolean[])array; for (int i = 0; i < length; i++) a[i] = in.get() != 0; }
+        case 'S' -> { short[] a = (short[])array; for (int i = 0; i < length; i++) a[i] = (short)readSignedVarLong(in); }
+        case 'C' -> { char[] a = (char[])array; for (int i = 0; i < length; i++) a[i] = (char)readVarLong(in); }
+        case 'I' -> { int[] a = (int[])array; for (int i = 0; i < length; i++) a[i] = (int)readSignedVarLong(in); }
+        case 'J' -> { long[] a = (long[])array; for (int i = 0; i < length; i++) a[i] = readSignedVarLong(in); }
+        case 'F' -> {
+          in.asFloatBuffer().get((float[])array);
+          in.position(in.position() + length * Float.BYTES);
+        }
+        case 'D' -> {
+          in.asDoubleBuffer().get((double[])array);
+          in.position(in.position() + length * Double.BYTES);
+        }
+        default -> {
+          Object[] a = (Object[])array;
+          for (int i = 0; i < length; i++) {
+            a[i] = componentLiteral.read(in);
+          }
+        }
+      }
+      return (T)array;
+    }
+
+    /**
+     * The component type of the array (can also be an array in case of multi-dimensional arrays).
+     */
+    private final Class<?> componentType;
+
+    /**
+     * The descriptor of the component type if primitive ('I' for int, 'J' for long,
+     * etc.), or 'L' for reference types.
+     */
+    private final char kind;
+
+    /**
+     * The binary literal of the component type, if not primitive.
+     */
+    private final BinaryLiteral<?> componentLiteral;
+  }
+}
@@ -5,15 +5,18 @@
 package ma.vi.base.lang;
 
 import ma.vi.base.reflect.Classes;
-import ma.vi.base.string.Escape;
+import ma.vi.base.util.Convert;
+import ma.vi.base.util.Numbers;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Array;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.function.Function;
 
 import static ma.vi.base.lang.Errors.checkArgument;
 import static ma.vi.base.lang.Errors.unchecked;
@@ -92,6 +95,16 @@ public interface Literal<T> {
     return Register.isLiteral(cls);
   }
 
+  /**
+   * Returns the {@link BinaryLiteral} for writing and reading values of the specified
+   * class in binary, or null if the class has no binary literal. A literal registered
+   * through {@link Register#add(Class, Literal)} which also implements {@link BinaryLiteral}
+   * is returned as the binary literal of its class.
+   */
+  static <T> BinaryLiteral<T> binaryLiteral(Class<T> cls) {
+    return Register.binary(cls);
+  }
+
   /**
    * This is a convenience method equivalent to getting the literal for the class
    * through {@link #literal(Class)} and using its {@link #toValue(String)}
@@ -148,12 +161,12 @@ public interface Literal<T> {
    */
   class ReflectiveLiteral<T> extends NullableLiteral<T> {
     private ReflectiveLiteral(Class<T> cls) {
-      constructor = unchecked(() -> cls.getDeclaredConstructor(String.class));
+      constructor = Classes.instanceFactory(cls, String.class);
     }
 
     @Override
     public T toValueNonNull(String repr) {
-      return unchecked(() -> constructor.newInstance(repr));
+      return newInstance(constructor, repr);
     }
 
     @Override
@@ -162,10 +175,10 @@ public interface Literal<T> {
     }
 
     /**
-     * Single string argument constructor for constructing the literals from their
-     * string representation.
+     * Handle to the single string argument constructor for constructing the literals
+     * from their string representation.
      */
-    private final Constructor<T> constructor;
+    private final MethodHandle constructor;
   }
 
   /**
@@ -175,12 +188,12 @@ public interface Literal<T> {
   class PrimitiveLiteral<T> extends NullableLiteral<T> {
     private PrimitiveLiteral(Class<T> cls) {
       wrapperClass = Classes.wrapperClassOf(cls);
-      constructor = unchecked(() -> (Constructor<T>)wrapperClass.getDeclaredConstructor(String.class));
+      constructor = Classes.instanceFactory(wrapperClass, String.class);
     }
 
     @Override
     public T toValueNonNull(String repr) {
-      return unchecked(() -> constructor.newInstance(repr));
+      return newInstance(constructor, repr);
     }
 
     @Override
@@ -194,10 +207,51 @@ public interface Literal<T> {
     private final Class<?> wrapperClass;
 
     /**
-     * Single string argument constructor for constructing the literals from their
-     * string representation.
+     * Handle to the single string argument constructor of the wrapper class for
+     * constructing the literals from their string representation.
+     */
+    private final MethodHandle constructor;
+  }
+
+  /**
+   * Creates a value by invoking the handle of a constructor taking its string
+   * representation.
+   */
+  private static <T> T newInstance(MethodHandle constructor, String repr) {
+    try {
+      Object value = constructor.invokeExact(repr);
+      return (T)value;
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw unchecked(t);
+    }
+  }
+
+  /**
+   * Literals reconstructed from their string representation by a parsing function
+   * (such as the parsers of {@link Numbers}, which do not go through reflection)
+   * and whose string representation is produced by their {@link #toString()} method.
+   */
+  class ParsedLiteral<T> extends NullableLiteral<T> {
+    private ParsedLiteral(Function<String, T> parser) {
+      this.parser = parser;
+    }
+
+    @Override
+    public T toValueNonNull(String repr) {
+      return parser.apply(repr);
+    }
+
+    @Override
+    public String toTextNonNull(T value) {
+      return value.toString();
+    }
+
+    /**
+     * Reconstructs values from their string representation.
      */
-    private final Constructor<T> constructor;
+    private final Function<String, T> parser;
   }
 
   /**
@@ -246,12 +300,21 @@ public interface Literal<T> {
    */
   class EnumLiteral<T extends Enum<T>> extends NullableLiteral<T> {
     private EnumLiteral(Class<T> cls) {
-      valueOf = unchecked(() -> cls.getDeclaredMethod("valueOf", String.class));
+      this.cls = cls;
+      T[] values = cls.getEnumConstants();
+      constants = new HashMap<>(values.length * 2);
+      for (T value: values) {
+        constants.put(value.name(), value);
+      }
     }
 
     @Override
     public T toValueNonNull(String repr) {
-      return unchecked(() -> (T)valueOf.invoke(null, repr));
+      T value = constants.get(repr);
+      if (value == null) {
+        throw new IllegalArgumentException("No enum constant " + cls.getCanonicalName() + "." + repr);
+      }
+      return value;
     }
 
     @Override
@@ -260,9 +323,14 @@ public interface Literal<T> {
     }
 
     /**
-     * The enum valueOf method for reconstruction.
+     * The enum class.
      */
-    private final Method valueOf;
+    private final Class<T> cls;
+
+    /**
+     * The constants of the enum by name, for reconstruction without reflection.
+     */
+    private final Map<String, T> constants;
   }
 
   /**
@@ -286,70 +354,320 @@ public interface Literal<T> {
   /**
    * Array of literals are literals, literalized as '[a, b, c, ....]'. This is a recursive definition
    * allowing higher dimensional arrays of literals to be also considered literals.
+   * <p>
+   * Arrays are read and written in a single pass over their text: the items of arrays
+   * of primitives are parsed and formatted directly from and to the text, without boxing
+   * nor intermediate strings (unless they contain escaped characters), and nested arrays
+   * are read and written by the literal of their component type at the position that
+   * the enclosing array has reached. {@link #toText(Object, Appendable)} streams the
+   * text of large arrays to an {@link Appendable} (such as a {@link java.io.Writer})
+   * instead of building it in memory.
    */
   class ArrayLiteral<T> extends NullableLiteral<T> {
     private ArrayLiteral(Class<T> arrayClass) {
       componentType = arrayClass.getComponentType();
       componentTypeLiteral = literal(componentType);
       multiDimensional = componentType.isArray();
+      kind = componentType.isPrimitive() ? componentType.descriptorString().charAt(0) : 'L';
     }
 
     @Override
     protected T toValueNonNull(String repr) {
-      List<Object> items = new ArrayList<>();
-      String remapped = ARRAY_ESC.map(repr);
-      char c = remapped.charAt(1);
-      if (c != ']') {
-        int level = 0;
-        StringBuilder item = new StringBuilder();
-        for (int i = 1; i < remapped.length() - 1; i++) {
-          c = remapped.charAt(i);
-          if (c == '[') {
-            level++;
-            item.append(c);
-          } else if (c == ']') {
-            level--;
-            item.append(c);
-          } else if (c == ',') {
-            if (level == 0) {
-              items.add(itemValue(item.toString()));
-              item.delete(0, item.length());
-            } else {
-              item.append(c);
-            }
+      return toValue(repr, 0, repr.length());
+    }
+
+    /**
+     * Reconstructs the array from the characters from start (inclusive) to end
+     * (exclusive) of the text.
+     */
+    public T toValue(CharSequence text, int start, int end) {
+      if (end - start == NULL_LITERAL.length()
+       && NULL_LITERAL.contentEquals(text.subSequence(start, end))) {
+        return null;
+      }
+      checkArgument(end - start >= 2 && text.charAt(end - 1) == ']',
+                    "Array must be enclosed in square brackets: " + text.subSequence(start, end));
+      return read(new Reader(text, start, end), end - 1);
+    }
+
+    @Override
+    protected String toTextNonNull(T array) {
+      StringBuilder text = new StringBuilder();
+      write(array, text);
+      return text.toString();
+    }
+
+    /**
+     * Appends the text representation of the array (or {@link #NULL_LITERAL} for
+     * null) to the output.
+     */
+    public void toText(T array, Appendable out) throws IOException {
+      if (out instanceof StringBuilder text) {
+        if (array == null) {
+          text.append(NULL_LITERAL);
+        } else {
+          write(array, text);
+        }
+      } else {
+        Writer writer = new Writer(out);
+        try {
+          if (array == null) {
+            writer.text.append(NULL_LITERAL);
           } else {
-            item.append(c);
+            write(array, writer.text, writer);
+          }
+          writer.flush();
+        } catch (UncheckedIOException e) {
+          throw e.getCause();
+        }
+      }
+    }
+
+    /**
+     * Reads the array starting at the position of the reader, on its opening
+     * bracket, leaving the reader after its closing bracket. The position of the
+     * closing bracket is known for the outermost array (the end of its text);
+     * otherwise it is -1 and is the first closing bracket which is not escaped
+     * and not matched by an opening one.
+     */
+    private T read(Reader in, int close) {
+      checkArgument(in.pos < in.end && in.text.charAt(in.pos) == '[',
+                    "Array expected at position " + in.pos + " of " + in.text);
+      in.pos++;
+      Object items = Array.newInstance(componentType, closes(in, close) ? 0 : 8);
+      int size = 0;
+      while (true) {
+        checkArgument(in.pos < in.end, "Unterminated array in " + in.text);
+        if (closes(in, close)) {
+          // empty array or empty last item, which are not read as items
+          in.pos++;
+          break;
+        }
+        if (size == Array.getLength(items)) {
+          Object grown = Array.newInstance(componentType, size * 2);
+          System.arraycopy(items, 0, grown, 0, size);
+          items = grown;
+        }
+        if (multiDimensional
+         && componentTypeLiteral instanceof ArrayLiteral<?> nested
+         && in.text.charAt(in.pos) == '[') {
+          ((Object[])items)[size] = nested.read(in, -1);
+        } else if (!readItem(in, close, items, size)) {
+          // empty last item
+          in.pos++;
+          break;
+        }
+        size++;
+
+        checkArgument(in.pos < in.end, "Unterminated array in " + in.text);
+        if (closes(in, close)) {
+          in.pos++;
+          break;
+        }
+        char c = in.text.charAt(in.pos++);
+        checkArgument(c == ',', "Unexpected character '" + c + "' at position " + (in.pos - 1) + " of " + in.text);
+      }
+      if (size != Array.getLength(items)) {
+        Object trimmed = Array.newInstance(componentType, size);
+        System.arraycopy(items, 0, trimmed, 0, size);
+        items = trimmed;
+      }
+      return (T)items;
+    }
+
+    private static boolean closes(Reader in, int close) {
+      return close == -1 ? in.text.charAt(in.pos) == ']' : in.pos == close;
+    }
+
+    /**
+     * Reads the item at the position of the reader, up to the next separator (or
+     * closing bracket of the array) which is not escaped nor inside brackets, into
+     * the array of items at the index. Returns false, without reading it, if the
+     * item is empty and last.
+     */
+    private boolean readItem(Reader in, int close, Object items, int index) {
+      CharSequence text = in.text;
+      int start = in.pos;
+      boolean escaped = false;
+      int level = 0;
+      int i = start;
+      int end = -1;
+      for (; i < in.end && i != close; i++) {
+        char c = text.charAt(i);
+        if (c == '\\') {
+          if (i + 1 == close) {
+            // the closing bracket cannot be escaped: drop the backslash
+            end = i;
+            i = close;
+            break;
+          } else if (i + 1 < in.end) {
+            escaped |= isSpecial(text.charAt(i + 1));
+            i++;
+          }
+        } else if (c == '[') {
+          level++;
+        } else if (c == ']') {
+          if (level == 0 && close == -1) {
+            break;
           }
+          level--;
+        } else if (c == ',' && level == 0) {
+          break;
         }
-        if (item.length() > 0) {
-          items.add(itemValue(item.toString()));
+      }
+      in.pos = i;
+      if (end == -1) {
+        end = i;
+      }
+      if (end == start && closes(in, close)) {
+        return false;
+      }
+
+      if (escaped) {
+        StringBuilder unescaped = in.scratch;
+        unescaped.setLength(0);
+        for (int j = start; j < end; j++) {
+          char c = text.charAt(j);
+          if (c == '\\' && j + 1 < end && isSpecial(text.charAt(j + 1))) {
+            c = text.charAt(++j);
+          } else if (c == '\\' && j + 1 < end) {
+            unescaped.append(c);
+            c = text.charAt(++j);
+          }
+          unescaped.append(c);
         }
+        text = unescaped;
+        start = 0;
+        end = unescaped.length();
       }
 
-      // put list of read items into an array to return
-      int i = 0;
-      T array = (T)Array.newInstance(componentType, items.size());
-      for (Object obj : items) Array.set(array, i++, obj);
-      return array;
+      if (kind != 'L') {
+        checkArgument(end - start != NULL_LITERAL.length()
+                   || !NULL_LITERAL.contentEquals(text.subSequence(start, end)),
+                      "Null item in array of " + componentType);
+      }
+      if (kind == 'C') {
+        checkArgument(end - start == 1, "Item of array of char is not a single character: '"
+                                      + text.subSequence(start, end) + '\'');
+      }
+      switch (kind) {
+        case 'I' -> ((int[])    items)[index] = Numbers.parseInt   (text, start, end);
+        case 'J' -> ((long[])   items)[index] = Numbers.parseLong  (text, start, end);
+        case 'D' -> ((double[]) items)[index] = Numbers.parseDouble(text, start, end);
+        case 'F' -> ((float[])  items)[index] = Numbers.parseFloat (text, start, end);
+        case 'S' -> ((short[])  items)[index] = Numbers.parseShort (text, start, end);
+        case 'B' -> ((byte[])   items)[index] = Numbers.parseByte  (text, start, end);
+        case 'Z' -> ((boolean[])items)[index] = Convert.parseBoolean(text, start, end);
+        case 'C' -> ((char[])   items)[index] = text.charAt(start);
+        default  -> ((Object[]) items)[index] = componentTypeLiteral.toValue(text.subSequence(start, end).toString());
+      }
+      return true;
     }
 
-    private Object itemValue(String item) {
-      return componentTypeLiteral.toValue(multiDimensional ? item : ARRAY_ESC.demap(item));
+    /**
+     * Writes the text of the array to the output, flushing it to the writer (if not
+     * null) as it grows.
+     */
+    private void write(Object array, StringBuilder out) {
+      write(array, out, null);
     }
 
-    @Override
-    protected String toTextNonNull(T array) {
-      StringBuilder repr = new StringBuilder("[");
+    private void write(Object array, StringBuilder out, Writer writer) {
+      out.append('[');
       int length = Array.getLength(array);
       for (int i = 0; i < length; i++) {
-        Object item = Array.get(array, i);
         if (i > 0) {
-          repr.append(',');
+          out.append(',');
+        }
+        switch (kind) {
+          case 'I' -> out.append(((int[])    array)[i]);
+          case 'J' -> out.append(((long[])   array)[i]);
+          case 'D' -> out.append(((double[]) array)[i]);
+          case 'F' -> out.append(((float[])  array)[i]);
+          case 'S' -> out.append(((short[])  array)[i]);
+          case 'B' -> out.append(((byte[])   array)[i]);
+          case 'Z' -> out.append(((boolean[])array)[i]);
+          case 'C' -> appendEscaped(out, String.valueOf(((char[])array)[i]));
+          default  -> {
+            Object item = ((Object[])array)[i];
+            if (item != null && componentTypeLiteral instanceof ArrayLiteral<?> nested) {
+              nested.write(item, out, writer);
+            } else {
+              String itemAsText = componentTypeLiteral.toText(item);
+              if (multiDimensional) {
+                out.append(itemAsText);
+              } else {
+                appendEscaped(out, itemAsText);
+              }
+            }
+          }
+        }
+        if (writer != null && out.length() >= Writer.FLUSH_SIZE) {
+          writer.flush();
+        }
+      }
+      out.append(']');
+    }
+
+    private static void appendEscaped(StringBuilder out, String text) {
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        if (isSpecial(c)) {
+          out.append('\\');
+        }
+        out.append(c);
+      }
+    }
+
+    /**
+     * True for the characters which are escaped in the text of items: square
+     * brackets surround arrays and the comma separates their items.
+     */
+    private static boolean isSpecial(char c) {
+      return c == '[' || c == ',' || c == ']';
+    }
+
+    /**
+     * The text of an array being read with the position reached.
+     */
+    private static final class Reader {
+      Reader(CharSequence text, int start, int end) {
+        this.text = text;
+        this.pos = start;
+        this.end = end;
+      }
+
+      final CharSequence text;
+      final int end;
+      int pos;
+
+      /**
+       * Buffer for unescaping items.
+       */
+      final StringBuilder scratch = new StringBuilder();
+    }
+
+    /**
+     * Buffers the text of an array written to an {@link Appendable}.
+     */
+    private static final class Writer {
+      Writer(Appendable out) {
+        this.out = out;
+      }
+
+      void flush() {
+        try {
+          out.append(text);
+          text.setLength(0);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
         }
-        String itemAsText = componentTypeLiteral.toText(item);
-        repr.append(multiDimensional ? itemAsText : ARRAY_ESC.escape(itemAsText));
       }
-      return repr.append("]").toString();
+
+      final Appendable out;
+      final StringBuilder text = new StringBuilder(FLUSH_SIZE + 64);
+
+      static final int FLUSH_SIZE = 8192;
     }
 
     /**
@@ -369,65 +687,77 @@ public interface Literal<T> {
     private final boolean multiDimensional;
 
     /**
-     * When literalizing arrays, square brackets are used to surround the array and the
-     * comma for separating items inside. These characters should thus be escaped in the
-     * literal forms of the array items and un-escaped when reconstructing the array. The
-     * {@link Escape} utility class is used for this purpose.
+     * The descriptor of the component type if primitive ('I' for int, 'J' for long,
+     * etc.), or 'L' for reference types.
      */
-    private static final Escape ARRAY_ESC = new Escape("[,]");
+    private final char kind;
   }
 
   /**
-   * The register for literal types.
+   * The register for literal types. The literal of each class is resolved once and
+   * held in a {@link ClassValue}, so that looking it up (or checking whether a class
+   * is a literal) is a constant-time operation which does not lock. The base literals
+   * are immutable and literals registered with {@link #add(Class, Literal)} are kept
+   * in a map copied on each change, after which the resolved literals are refreshed.
    */
   class Register {
-    public <T> void add(Class<T> cls, Literal<T> literal) {
+    /**
+     * Registers the literal for the class, replacing any previously registered one.
+     *
+     * @throws IllegalArgumentException if the class is a base literal class.
+     */
+    public static <T> void add(Class<T> cls, Literal<T> literal) {
+      checkArgument(cls != null && literal != null, "Class and literal must not be null");
       checkArgument(!isBaseLiteral(cls), cls + " is a base literal class whose literalization " +
           "is already defined and cannot be replaced as it could break the relationships " +
           "between the existing classes in the system");
-      register.put(cls, literal);
+      synchronized (Register.class) {
+        Map<Class<?>, Literal<?>> changed = new HashMap<>(registered);
+        changed.put(cls, literal);
+        registered = Map.copyOf(changed);
+        version++;
+      }
     }
 
-    public void remove(Class<?> cls) {
+    /**
+     * Removes the literal registered for the class.
+     *
+     * @throws IllegalArgumentException if the class is a base literal class.
+     */
+    public static void remove(Class<?> cls) {
       checkArgument(!isBaseLiteral(cls), cls + " is a base literal class whose literalization " +
           "is already defined and cannot be removed as it could break the relationships " +
           "between the existing classes in the system");
-      register.remove(cls);
+      synchronized (Register.class) {
+        if (registered.containsKey(cls)) {
+          Map<Class<?>, Literal<?>> changed = new HashMap<>(registered);
+          changed.remove(cls);
+          registered = Map.copyOf(changed);
+          version++;
+        }
+      }
     }
 
+    /**
+     * Returns the literal for the class, or null if it is not a literal class.
+     */
     public static <T> Literal<T> get(Class<T> cls) {
-      Literal<T> literal = (Literal<T>) register.get(cls);
-      if (literal == null) {
-        // auto-register known base classes
-        if (cls.isEnum()) {
-          literal = new EnumLiteral(cls);
-        } else if (char.class.equals(cls) ||
-            (Character.class.equals(cls))) {
-          literal = (Literal<T>) new CharacterLiteral();
-        } else if (cls.isPrimitive()) {
-          literal = new PrimitiveLiteral<>(cls);
-        } else if (cls.isArray() &&
-            isLiteral(cls.getComponentType())) {
-          literal = new ArrayLiteral<>(cls);
-        }
-
-        if (literal != null) {
-          synchronized (Literal.class) {
-            if (!register.containsKey(cls)) {
-              register.put(cls, literal);
-            }
-          }
-        }
-      }
-      return literal;
+      return (Literal<T>)resolved(cls).literal;
     }
 
+    /**
+     * Returns true if the class is a literal class, i.e. {@link #get(Class)}
+     * returns a literal for it.
+     */
     public static boolean isLiteral(Class<?> cls) {
-      return register.containsKey(cls) ||
-          cls.isEnum() ||
-          cls.isPrimitive() ||
-          (cls.isArray() && register.containsKey(componentType(cls)));
+      return resolved(cls).literal != null;
+    }
 
+    /**
+     * Returns the binary literal for the class, or null if it has none.
+     */
+    public static <T> BinaryLiteral<T> binary(Class<T> cls) {
+      return (BinaryLiteral<T>)resolved(cls).binary;
     }
 
     public static boolean isBaseLiteral(Class<?> cls) {
@@ -437,40 +767,176 @@ public interface Literal<T> {
           (cls.isArray() && baseLiterals.containsKey(componentType(cls)));
     }
 
+    /**
+     * Returns the literal resolved for the class, resolving it again if literals
+     * have been registered or removed since it was resolved.
+     */
+    private static Resolved resolved(Class<?> cls) {
+      Resolved r = literals.get(cls);
+      if (r.version != version) {
+        literals.remove(cls);
+        r = literals.get(cls);
+      }
+      return r;
+    }
+
+    /**
+     * Finds the literal for the class: a base literal, a registered literal or, for
+     * enums, primitives and arrays of literals, a new literal.
+     */
+    private static Literal<?> resolve(Class<?> cls) {
+      Literal<?> literal = baseLiterals.get(cls);
+      if (literal == null) {
+        literal = registered.get(cls);
+      }
+      if (literal == null) {
+        if (cls.isEnum()) {
+          literal = new EnumLiteral(cls);
+        } else if (cls.isPrimitive() && cls != void.class) {
+          literal = new PrimitiveLiteral<>(cls);
+        } else if (cls.isArray() && isLiteral(cls.getComponentType())) {
+          literal = new ArrayLiteral<>(cls);
+        }
+      }
+      return literal;
+    }
+
+    /**
+     * Finds the binary literal for the class with the literal resolved for it: a
+     * base binary literal, the literal itself if registered and also binary or, for
+     * enums and arrays of binary literals, a new binary literal.
+     */
+    private static BinaryLiteral<?> resolveBinary(Class<?> cls, Literal<?> literal) {
+      BinaryLiteral<?> binary = baseBinaryLiterals.get(cls);
+      if (binary == null && literal instanceof BinaryLiteral<?> b) {
+        binary = b;
+      }
+      if (binary == null) {
+        if (cls.isEnum()) {
+          binary = new BinaryLiteral.EnumBinaryLiteral(cls);
+        } else if (cls.isArray() && binary(cls.getComponentType()) != null) {
+          binary = new BinaryLiteral.ArrayBinaryLiteral<>(cls);
+        }
+      }
+      return binary;
+    }
+
     private Register() {
     }
 
-    private static final Map<Class<?>, Literal<?>> baseLiterals = new HashMap<>();
-    private static final Map<Class<?>, Literal<?>> register = new HashMap<>();
+    /**
+     * The literal and binary literal of a class (null if it has none), with the
+     * version of the registrations they were resolved with.
+     */
+    private record Resolved(int version, Literal<?> literal, BinaryLiteral<?> binary) {}
+
+    /**
+     * Literals resolved per class.
+     */
+    private static final ClassValue<Resolved> literals = new ClassValue<>() {
+      @Override
+      protected Resolved computeValue(Class<?> type) {
+        int v = version;
+        Literal<?> literal = resolve(type);
+        return new Resolved(v, literal, resolveBinary(type, literal));
+      }
+    };
+
+    /**
+     * The literals of the base classes, which cannot be changed.
+     */
+    private static final Map<Class<?>, Literal<?>> baseLiterals;
+
+    /**
+     * The binary literals of the base classes.
+     */
+    private static final Map<Class<?>, BinaryLiteral<?>> baseBinaryLiterals;
+
+    /**
+     * The literals registered through {@link #add(Class, Literal)}; replaced by
+     * a new map on every change.
+     */
+    private static volatile Map<Class<?>, Literal<?>> registered = Map.of();
+
+    /**
+     * Incremented on every change to the registered literals, invalidating the
+     * literals resolved before the change.
+     */
+    private static volatile int version;
 
     static {
-      baseLiterals.put(Date.class,          new DateLiteral());
-      baseLiterals.put(String.class,        new StringLiteral());
-      baseLiterals.put(StringBuilder.class, new ReflectiveLiteral<>(StringBuilder.class));
-      baseLiterals.put(StringBuffer.class,  new ReflectiveLiteral<>(StringBuffer.class));
-
-      baseLiterals.put(Boolean.class,       new ReflectiveLiteral<>(Boolean.class));
-      baseLiterals.put(Character.class,     new CharacterLiteral());
-      baseLiterals.put(Long.class,          new ReflectiveLiteral<>(Long.class));
-      baseLiterals.put(Integer.class,       new ReflectiveLiteral<>(Integer.class));
-      baseLiterals.put(Short.class,         new ReflectiveLiteral<>(Short.class));
-      baseLiterals.put(Byte.class,          new ReflectiveLiteral<>(Byte.class));
-      baseLiterals.put(Float.class,         new ReflectiveLiteral<>(Float.class));
-      baseLiterals.put(Double.class,        new ReflectiveLiteral<>(Double.class));
-
-      baseLiterals.put(BigInteger.class,    new ReflectiveLiteral<>(BigInteger.class));
-      baseLiterals.put(BigDecimal.class,    new ReflectiveLiteral<>(BigDecimal.class));
-
-      baseLiterals.put(boolean.class,       new PrimitiveLiteral<>(Boolean.class));
-      baseLiterals.put(char.class,          new CharacterLiteral());
-      baseLiterals.put(long.class,          new PrimitiveLiteral<>(Long.class));
-      baseLiterals.put(int.class,           new PrimitiveLiteral<>(Integer.class));
-      baseLiterals.put(short.class,         new PrimitiveLiteral<>(Short.class));
-      baseLiterals.put(byte.class,          new PrimitiveLiteral<>(Byte.class));
-      baseLiterals.put(float.class,         new PrimitiveLiteral<>(Float.class));
-      baseLiterals.put(double.class,        new PrimitiveLiteral<>(Double.class));
-
-      register.putAll(baseLiterals);
+      Map<Class<?>, Literal<?>> base = new HashMap<>();
+      base.put(Date.class,          new DateLiteral());
+      base.put(String.class,        new StringLiteral());
+      base.put(StringBuilder.class, new ReflectiveLiteral<>(StringBuilder.class));
+      base.put(StringBuffer.class,  new ReflectiveLiteral<>(StringBuffer.class));
+
+      ParsedLiteral<Boolean> booleans = new ParsedLiteral<>(s -> Convert.parseBoolean(s, 0, s.length()));
+      ParsedLiteral<Long>    longs    = new ParsedLiteral<>(s -> Numbers.parseLong(s, 0, s.length()));
+      ParsedLiteral<Integer> ints     = new ParsedLiteral<>(s -> Numbers.parseInt(s, 0, s.length()));
+      ParsedLiteral<Short>   shorts   = new ParsedLiteral<>(s -> Numbers.parseShort(s, 0, s.length()));
+      ParsedLiteral<Byte>    bytes    = new ParsedLiteral<>(s -> Numbers.parseByte(s, 0, s.length()));
+      ParsedLiteral<Float>   floats   = new ParsedLiteral<>(s -> Numbers.parseFloat(s, 0, s.length()));
+      ParsedLiteral<Double>  doubles  = new ParsedLiteral<>(s -> Numbers.parseDouble(s, 0, s.length()));
+
+      base.put(Boolean.class,       booleans);
+      base.put(Character.class,     new CharacterLiteral());
+      base.put(Long.class,          longs);
+      base.put(Integer.class,       ints);
+      base.put(Short.class,         shorts);
+      base.put(Byte.class,          bytes);
+      base.put(Float.class,         floats);
+      base.put(Double.class,        doubles);
+
+      base.put(BigInteger.class,    new ReflectiveLiteral<>(BigInteger.class));
+      base.put(BigDecimal.class,    new ReflectiveLiteral<>(BigDecimal.class));
+
+      base.put(boolean.class,       booleans);
+      base.put(char.class,          new CharacterLiteral());
+      base.put(long.class,          longs);
+      base.put(int.class,           ints);
+      base.put(short.class,         shorts);
+      base.put(byte.class,          bytes);
+      base.put(float.class,         floats);
+      base.put(double.class,        doubles);
+
+      baseLiterals = Map.copyOf(base);
+
+      Map<Class<?>, BinaryLiteral<?>> binary = new HashMap<>();
+      binary.put(Date.class,        new BinaryLiteral.NullableBinaryLiteral<>(new BinaryLiteral.DateBinaryLiteral()));
+      binary.put(String.class,      new BinaryLiteral.StringBinaryLiteral());
+      binary.put(BigInteger.class,  new BinaryLiteral.BigIntegerBinaryLiteral());
+      binary.put(BigDecimal.class,  new BinaryLiteral.BigDecimalBinaryLiteral());
+
+      BinaryLiteral<Boolean>   booleanBinary = new BinaryLiteral.BooleanBinaryLiteral();
+      BinaryLiteral<Character> charBinary    = new BinaryLiteral.CharacterBinaryLiteral();
+      BinaryLiteral<Long>      longBinary    = new BinaryLiteral.LongBinaryLiteral();
+      BinaryLiteral<Integer>   intBinary     = new BinaryLiteral.IntegerBinaryLiteral();
+      BinaryLiteral<Short>     shortBinary   = new BinaryLiteral.ShortBinaryLiteral();
+      BinaryLiteral<Byte>      byteBinary    = new BinaryLiteral.ByteBinaryLiteral();
+      BinaryLiteral<Float>     floatBinary   = new BinaryLiteral.FloatBinaryLiteral();
+      BinaryLiteral<Double>    doubleBinary  = new BinaryLiteral.DoubleBinaryLiteral();
+
+      binary.put(boolean.class,     booleanBinary);
+      binary.put(char.class,        charBinary);
+      binary.put(long.class,        longBinary);
+      binary.put(int.class,         intBinary);
+      binary.put(short.class,       shortBinary);
+      binary.put(byte.class,        byteBinary);
+      binary.put(float.class,       floatBinary);
+      binary.put(double.class,      doubleBinary);
+
+      // wrappers can be null
+      binary.put(Boolean.class,     new BinaryLiteral.NullableBinaryLiteral<>(booleanBinary));
+      binary.put(Character.class,   new BinaryLiteral.NullableBinaryLiteral<>(charBinary));
+      binary.put(Long.class,        new BinaryLiteral.NullableBinaryLiteral<>(longBinary));
+      binary.put(Integer.class,     new BinaryLiteral.NullableBinaryLiteral<>(intBinary));
+      binary.put(Short.class,       new BinaryLiteral.NullableBinaryLiteral<>(shortBinary));
+      binary.put(Byte.class,        new BinaryLiteral.NullableBinaryLiteral<>(byteBinary));
+      binary.put(Float.class,       new BinaryLiteral.NullableBinaryLiteral<>(floatBinary));
+      binary.put(Double.class,      new BinaryLiteral.NullableBinaryLiteral<>(doubleBinary));
+
+      baseBinaryLiterals = Map.copyOf(binary);
     }
   }
 }
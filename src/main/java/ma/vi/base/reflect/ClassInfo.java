@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.reflect;
+
+import ma.vi.base.reflect.Dissector.MethodDescriptor;
+
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static java.lang.reflect.Modifier.isProtected;
+import static java.lang.reflect.Modifier.isPublic;
+import static ma.vi.base.reflect.Dissector.methodDescriptor;
+import static ma.vi.base.string.Strings.capFirst;
+
+/**
+ * <p>
+ * The reflective metadata of a class (constructors, methods, fields, properties
+ * and component classes) as returned by {@link Dissector}. A single instance is
+ * kept per class, in a {@link ClassValue}, so that the metadata is cached without
+ * preventing the class (and its class loader) from being unloaded.
+ * </p>
+ *
+ * <p>
+ * Each part of the metadata is computed on first access, once: threads requesting
+ * a part while it is being computed wait for it instead of computing it again. The
+ * collections returned are unmodifiable. The constructors and properties of classes
+ * with a metadata index (generated by {@link MetadataIndexProcessor}) are loaded
+ * from the index instead of being inferred reflectively.
+ * </p>
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+final class ClassInfo {
+  ClassInfo(Class<?> cls) {
+    this(cls, true);
+  }
+
+  /**
+   * Creates the metadata of the class, specifying whether the constructors and
+   * properties of the class are loaded from its metadata index, if it has one
+   * (see {@link MetadataIndexProcessor}), or always inferred reflectively.
+   */
+  ClassInfo(Class<?> cls, boolean useIndex) {
+    this.cls = cls;
+    this.useIndex = useIndex;
+  }
+
+  /**
+   * All constructors of the class, including private and protected ones.
+   */
+  Set<Constructor<?>> constructors() {
+    Set<Constructor<?>> c = constructors;
+    if (c == null) {
+      synchronized (this) {
+        c = constructors;
+        if (c == null && index() != null) {
+          constructors = c = index().constructors();
+        }
+        if (c == null) {
+          // add all public constructors
+          Set<Constructor<?>> ctors = new HashSet<>();
+          Collections.addAll(ctors, cls.getConstructors());
+
+          // add non-public declared constructors
+          Stream.of(cls.getDeclaredConstructors())
+                .filter(ctor -> !isPublic(ctor.getModifiers()))
+                .forEach(ctors::add);
+          constructors = c = Collections.unmodifiableSet(ctors);
+        }
+      }
+    }
+    return c;
+  }
+
+  /**
+   * All methods of the class including private and protected ones declared in
+   * the class or in its superclasses (only the most specialised protected ones).
+   */
+  Map<MethodDescriptor, Method> methods() {
+    Map<MethodDescriptor, Method> m = methods;
+    if (m == null) {
+      synchronized (this) {
+        m = methods;
+        if (m == null) {
+          // add all public methods
+          Map<MethodDescriptor, Method> all = new HashMap<>();
+          Arrays.stream(cls.getMethods()).forEach(method -> all.put(methodDescriptor(method), method));
+
+          // add non-public declared methods
+          for (Class<?> cur = cls; cur != null; cur = cur.getSuperclass()) {
+            for (Method method : cur.getDeclaredMethods()) {
+              int mod = method.getModifiers();
+              if (isProtected(mod)) {
+                all.putIfAbsent(methodDescriptor(method), method);
+              } else if (!isPublic(mod)) {
+                all.put(methodDescriptor(method), method);
+              }
+            }
+          }
+          methods = m = Collections.unmodifiableMap(all);
+        }
+      }
+    }
+    return m;
+  }
+
+  /**
+   * All fields of the class, by name.
+   */
+  Map<String, Field> fields() {
+    Map<String, Field> f = fields;
+    if (f == null) {
+      synchronized (this) {
+        f = fields;
+        if (f == null) {
+          Map<String, Field> all = new HashMap<>();
+          Arrays.stream(cls.getFields()).forEach(field -> all.put(field.getName(), field));
+
+          for (Class<?> cur : components()) {
+            for (Field field : cur.getDeclaredFields()) {
+              String fieldName = field.getName();
+              if (!all.containsKey(fieldName) && !isPublic(field.getModifiers())) {
+                all.put(fieldName, field);
+              }
+            }
+          }
+          fields = f = Collections.unmodifiableMap(all);
+        }
+      }
+    }
+    return f;
+  }
+
+  /**
+   * All properties of the class, by name.
+   */
+  Map<String, Property> properties() {
+    Map<String, Property> p = properties;
+    if (p == null) {
+      synchronized (this) {
+        p = properties;
+        if (p == null) {
+          properties = p = index() != null
+                         ? index().properties()
+                         : Collections.unmodifiableMap(computeProperties());
+        }
+      }
+    }
+    return p;
+  }
+
+  /**
+   * The classes and interfaces composing the class (including itself) in order
+   * of most specific (the class itself) to the least (java.lang.Object).
+   */
+  List<Class<?>> components() {
+    List<Class<?>> c = components;
+    if (c == null) {
+      synchronized (this) {
+        c = components;
+        if (c == null) {
+          List<Class<?>> classes = new ArrayList<>();
+          classes.add(cls);
+          classes.addAll(Arrays.asList(cls.getInterfaces()));
+
+          Class<?> superClass = cls.getSuperclass();
+          if (superClass != null) {
+            classes.addAll(Dissector.info(superClass).components());
+          }
+          components = c = Collections.unmodifiableList(classes);
+        }
+      }
+    }
+    return c;
+  }
+
+  /**
+   * The components, accessors and canonical constructor of the class, which must
+   * be a record class.
+   */
+  Records.Info record() {
+    Records.Info r = record;
+    if (r == null) {
+      synchronized (this) {
+        r = record;
+        if (r == null) {
+          record = r = new Records.Info(cls);
+        }
+      }
+    }
+    return r;
+  }
+
+  /**
+   * Computes all the parts of the metadata which have not been computed yet.
+   */
+  void preload() {
+    constructors();
+    methods();
+    fields();
+    properties();
+    components();
+    if (cls.isRecord()) {
+      record();
+    }
+  }
+
+  /**
+   * The metadata loaded from the index of the class, or null if not indexed.
+   * Must be called while holding the lock on this object.
+   */
+  private MetadataIndex.Metadata index() {
+    if (!indexRead) {
+      index = useIndex ? MetadataIndex.read(cls) : null;
+      indexRead = true;
+    }
+    return index;
+  }
+
+  private Map<String, Property> computeProperties() {
+    Map<String, Property> properties = new HashMap<>();
+
+    if (cls.isRecord()) {
+      for (RecordComponent c: cls.getRecordComponents()) {
+        properties.put(c.getName(), new Property(c.getName(), c.getAccessor(), null));
+      }
+    } else {
+      /*
+       * Add properties based on getters and setters
+       */
+      Map<MethodDescriptor, Method> methods = methods();
+      for (Map.Entry<MethodDescriptor, Method> entry: methods.entrySet()) {
+        MethodDescriptor desc = entry.getKey();
+
+        Method method = entry.getValue();
+        String methodName = method.getName();
+        String propertyName = Property.propertyNameFromMethod(methodName);
+        if (!properties.containsKey(propertyName)) {
+          int mod = method.getModifiers();
+          if (!Modifier.isStatic(mod)
+           && !Modifier.isAbstract(mod)
+           && Modifier.isPublic(mod)
+           && (methodName.startsWith("is")
+           || methodName.startsWith("get")
+           || methodName.startsWith("set"))) {
+
+            if (desc.parameterTypes.length == 0
+             && (methodName.startsWith("is")
+              || methodName.startsWith("get"))) {
+
+              Class<?> type = method.getReturnType();
+              Method setter = methods.get(new MethodDescriptor("set" + capFirst(propertyName), type));
+              if (setter != null && !setter.getReturnType().equals(void.class)) {
+                setter = null;
+              }
+              properties.put(propertyName, new Property(propertyName, method, setter));
+
+            } else if (desc.parameterTypes.length == 1
+                    && desc.name.startsWith("set")) {
+
+              Class<?> type = desc.parameterTypes[0];
+              Method getter = methods.get(new MethodDescriptor("get" + capFirst(propertyName)));
+              if (getter == null) {
+                getter = methods.get(new MethodDescriptor("is" + capFirst(propertyName)));
+              }
+              if (getter != null && !getter.getReturnType().equals(type)) {
+                getter = null;
+              }
+              properties.put(propertyName, new Property(propertyName, getter, method));
+            }
+          }
+        }
+      }
+
+      // Add properties based on fields
+      for (Map.Entry<String, Field> entry: fields().entrySet()) {
+        String propertyName = entry.getKey();
+        if (!properties.containsKey(propertyName)) {
+          Field field = entry.getValue();
+          int mod = field.getModifiers();
+          if (!Modifier.isStatic(mod)) {
+            properties.put(propertyName, new Property(field));
+          }
+        }
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * The class described.
+   */
+  private final Class<?> cls;
+
+  /**
+   * Whether to load the constructors and properties from the metadata index.
+   */
+  private final boolean useIndex;
+
+  /**
+   * The metadata loaded from the index of the class (guarded by this object).
+   */
+  private MetadataIndex.Metadata index;
+  private boolean indexRead;
+
+  private volatile Set<Constructor<?>> constructors;
+  private volatile Map<MethodDescriptor, Method> methods;
+  private volatile Map<String, Field> fields;
+  private volatile Map<String, Property> properties;
+  private volatile List<Class<?>> components;
+  private volatile Records.Info record;
+}
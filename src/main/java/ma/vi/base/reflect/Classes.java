@@ -8,6 +8,8 @@ import ma.vi.base.collections.Maps;
 import ma.vi.base.lang.NotFoundException;
 import ma.vi.base.tuple.T2;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
@@ -16,6 +18,7 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import static java.lang.invoke.MethodType.methodType;
 import static ma.vi.base.lang.Errors.unchecked;
 import static org.apache.commons.lang3.StringUtils.countMatches;
 
@@ -54,14 +57,14 @@ public class Classes {
    * <p>
    * The type of the parameters of the constructor to used are determined from the parameters
    * supplied. This requires that all parameters are non-null; null parameters are assumed to
-   * be of object type otherwise.
+   * be of object type otherwise. The constructor is resolved as by {@link #instanceFactory(Class, Class[])}.
    */
   public static Object instanceOf(Class<?> cls, Object... parameters) {
-    List<T2<Object, Class<?>>> paramsWithType = new ArrayList<>();
-    for (Object parameter: parameters) {
-      paramsWithType.add(T2.of(parameter, parameter == null ? Object.class : parameter.getClass()));
+    Class<?>[] types = new Class<?>[parameters.length];
+    for (int i = 0; i < parameters.length; i++) {
+      types[i] = parameters[i] == null ? Object.class : parameters[i].getClass();
     }
-    return instanceOfWithTypes(cls, paramsWithType.toArray(new T2[0]));
+    return newInstance(cls, types, parameters);
   }
 
   /**
@@ -70,43 +73,186 @@ public class Classes {
    * types, an instance of the corresponding wrapper type is created instead.
    */
   public static Object instanceOfWithTypes(Class<?> cls, T2<Object, Class<?>>... parameters) {
+    Object[] params = new Object[parameters.length];
+    Class<?>[] types = new Class<?>[parameters.length];
+    for (int i = 0; i < parameters.length; i++) {
+      params[i] = parameters[i].a;
+      types[i] = parameters[i].b;
+    }
+    return newInstance(cls, types, params);
+  }
+
+  /**
+   * <p>
+   * Returns a method handle of type <code>(parameterTypes)Object</code> creating
+   * instances of the class through its constructor (or its <code>valueOf</code> method
+   * for enums) accepting arguments of the specified types. For primitive types, instances
+   * of the corresponding wrapper type are created instead.
+   * </p>
+   *
+   * <p>
+   * A constructor with exactly the specified parameter types is used if there is one;
+   * otherwise the most specific constructor whose parameter types are assignable from
+   * the specified types, after boxing or unboxing, is chosen; if several are applicable
+   * and none is more specific than all the others, the choice is ambiguous and an
+   * {@link IllegalArgumentException} is thrown, as by javac. The handle is resolved
+   * once per class and parameter types and cached, so that repeated instantiations
+   * only cost the invocation of the handle.
+   * </p>
+   *
+   * @throws IllegalArgumentException if the class is abstract or has no constructor
+   *         accepting arguments of the specified types, or more than one and none
+   *         more specific than the others.
+   */
+  public static MethodHandle instanceFactory(Class<?> cls, Class<?>... parameterTypes) {
+    return factory(cls, parameterTypes).handle;
+  }
+
+  private static Object newInstance(Class<?> cls, Class<?>[] types, Object[] params) {
     if (cls.isPrimitive()) {
       cls = wrapperClassOf(cls);
     }
-    if (Character.class.equals(cls) && parameters.length > 0 &&
-        parameters[0].a instanceof String && ((String)parameters[0].a).length() > 0) {
+    if (Character.class.equals(cls) && params.length > 0 &&
+        params[0] instanceof String s && s.length() > 0) {
       // For creation of characters, use only first character of string if
       // a string is provided as the construction parameter.
-      parameters[0] = T2.of(((String)parameters[0].a).charAt(0), Character.class);
+      params[0] = s.charAt(0);
+      types[0] = Character.class;
+    }
+    MethodHandle spreader = factory(cls, types).spreader;
+    try {
+      return (Object)spreader.invokeExact(params);
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw unchecked(t);
     }
+  }
 
-    // get parameter types
-    Object[] params = new Object[parameters.length];
-    Class<?>[] types = new Class<?>[parameters.length];
-    for (int i = 0; i < parameters.length; i++) {
-      params[i] = parameters[i].a;
-      types[i] = parameters[i].b;
+  /**
+   * Returns the cached factory of the class for the parameter types, resolving it
+   * on first request.
+   */
+  private static Factory factory(Class<?> cls, Class<?>[] types) {
+    if (cls.isPrimitive()) {
+      cls = wrapperClassOf(cls);
+    }
+    FactoryCache cache = factories.get(cls);
+    Factory factory = types.length == 1 ? cache.single.get(types[0])
+                                        : cache.multiple.get(new Signature(types));
+    if (factory == null) {
+      factory = resolveFactory(cls, types.clone());
+      Factory existing = types.length == 1
+                       ? cache.single.putIfAbsent(types[0], factory)
+                       : cache.multiple.putIfAbsent(new Signature(types.clone()), factory);
+      if (existing != null) {
+        factory = existing;
+      }
     }
+    return factory;
+  }
+
+  private static Factory resolveFactory(Class<?> cls, Class<?>[] types) {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
     try {
+      MethodHandle handle;
       if (cls.isEnum()) {
         Method valueOf = cls.getDeclaredMethod("valueOf", types);
-        return valueOf.invoke(null, params);
+        handle = lookup.unreflect(valueOf);
       } else {
-        // search for matching constructor and build if found
-        Constructor ctor = cls.getDeclaredConstructor(types);
-        if (!Modifier.isAbstract(cls.getModifiers())) {
-          ctor.setAccessible(true);
-          return ctor.newInstance(params);
-        } else {
-          throw new IllegalArgumentException(cls + " does not have a constructor taking the following " +
-                                                 "parameters " + Arrays.toString(types) + "  or constructor is abstract.");
+        if (Modifier.isAbstract(cls.getModifiers())) {
+          throw new IllegalArgumentException(cls + " is abstract and cannot be instantiated");
+        }
+        Constructor<?> ctor = null;
+        List<Constructor<?>> candidates = new ArrayList<>();
+        for (Constructor<?> c: Dissector.constructors(cls)) {
+          Class<?>[] params = c.getParameterTypes();
+          if (Arrays.equals(params, types)) {
+            ctor = c;
+            break;
+          } else if (assignable(params, types)) {
+            addIfMaximallySpecific(c, candidates, types);
+          }
         }
+        if (ctor == null) {
+          if (candidates.isEmpty()) {
+            throw new IllegalArgumentException(cls + " does not have a constructor taking the following " +
+                                               "parameters " + Arrays.toString(types));
+          } else if (candidates.size() > 1) {
+            throw new IllegalArgumentException("Constructors of " + cls + " are ambiguous for parameters " +
+                                               Arrays.toString(types) + ": " + candidates);
+          }
+          ctor = candidates.get(0);
+        }
+        ctor.trySetAccessible();
+        handle = lookup.unreflectConstructor(ctor);
       }
-    } catch (Exception e) {
+      handle = handle.asType(methodType(Object.class, types));
+      return new Factory(handle, handle.asSpreader(Object[].class, types.length));
+
+    } catch (ReflectiveOperationException e) {
       throw unchecked(e);
     }
   }
 
+  /**
+   * Adds the constructor to the maximally specific candidates, unless one of them
+   * is more specific, removing those that it is more specific than. Of constructors
+   * differing only in the boxing of their parameters, the one with more parameters
+   * of exactly the specified types is kept (the first one if equal).
+   */
+  private static void addIfMaximallySpecific(Constructor<?> ctor,
+                                             List<Constructor<?>> candidates,
+                                             Class<?>[] types) {
+    Class<?>[] params = ctor.getParameterTypes();
+    boolean dominated = false;
+    for (Iterator<Constructor<?>> i = candidates.iterator(); i.hasNext(); ) {
+      Class<?>[] other = i.next().getParameterTypes();
+      boolean moreSpecific = assignable(other, params);
+      boolean lessSpecific = assignable(params, other);
+      if (moreSpecific && lessSpecific) {
+        if (exactMatches(params, types) > exactMatches(other, types)) {
+          i.remove();
+        } else {
+          dominated = true;
+        }
+      } else if (moreSpecific) {
+        i.remove();
+      } else if (lessSpecific) {
+        dominated = true;
+      }
+    }
+    if (!dominated) {
+      candidates.add(ctor);
+    }
+  }
+
+  private static int exactMatches(Class<?>[] parameters, Class<?>[] types) {
+    int matches = 0;
+    for (int i = 0; i < parameters.length; i++) {
+      if (parameters[i] == types[i]) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Returns true if values of the specified types can be passed as arguments
+   * for the parameters, after boxing or unboxing.
+   */
+  private static boolean assignable(Class<?>[] parameters, Class<?>[] types) {
+    if (parameters.length != types.length) {
+      return false;
+    }
+    for (int i = 0; i < parameters.length; i++) {
+      if (!wrapperClassOf(parameters[i]).isAssignableFrom(wrapperClassOf(types[i]))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Creates a new instance of the class or returns null if construction failed.
    */
@@ -264,6 +410,46 @@ public class Classes {
    */
   private final static ConcurrentMap<T2<String, String>, Class<?>> loadedClasses = new ConcurrentHashMap<>();
 
+  /**
+   * A method handle creating instances of a class from arguments of specific types
+   * and the same handle taking its arguments in an array.
+   */
+  private record Factory(MethodHandle handle, MethodHandle spreader) {}
+
+  /**
+   * The parameter types of a factory.
+   */
+  private record Signature(Class<?>[] types) {
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Signature s && Arrays.equals(types, s.types);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(types);
+    }
+  }
+
+  /**
+   * The factories of a class, those with a single parameter being keyed by the
+   * type of the parameter to avoid creating a signature on lookup.
+   */
+  private static final class FactoryCache {
+    final ConcurrentMap<Class<?>, Factory> single = new ConcurrentHashMap<>();
+    final ConcurrentMap<Signature, Factory> multiple = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Instance factories resolved per class.
+   */
+  private static final ClassValue<FactoryCache> factories = new ClassValue<>() {
+    @Override
+    protected FactoryCache computeValue(Class<?> type) {
+      return new FactoryCache();
+    }
+  };
+
   /**
    * Cache for subclass relationships.
    */
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.reflect;
+
+import ma.vi.base.util.Convert;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.WrongMethodTypeException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import static java.lang.invoke.MethodType.methodType;
+import static ma.vi.base.lang.Errors.checkArgument;
+import static ma.vi.base.lang.Errors.unchecked;
+import static ma.vi.base.reflect.Classes.wrapperClassOf;
+
+/**
+ * <p>
+ * Copies the values of the properties of objects of a source class to the properties
+ * with the same names of objects of a target class (e.g. from entities to DTOs and
+ * back). The properties to copy are matched once, when the copier is created, and
+ * compiled into a single method handle which reads and writes each property directly,
+ * in sequence, without boxing primitive values. The handle is bound as a constant in
+ * a generated hidden class (see {@link Invokers}) so that, once optimized by the JIT,
+ * the copy is inlined into straight-line field reads and writes (or accessor calls)
+ * like a hand-written copy.
+ * </p>
+ *
+ * <p>
+ * A property of the source is copied to the property of the target with the same
+ * name if the former is readable, the latter writable and the value of the former
+ * can be assigned to the latter, possibly after a primitive widening, boxing or
+ * unboxing conversion (unboxing a null value fails with a {@link NullPointerException}).
+ * Optionally, values of other types can be converted with {@link Convert#convert(Object, Class)};
+ * otherwise properties with incompatible types are not copied.
+ * </p>
+ *
+ * <pre>
+ *    Copier&lt;Person, PersonDto&gt; copier = Copier.of(Person.class, PersonDto.class);
+ *    PersonDto dto = copier.copy(person);
+ *    List&lt;PersonDto&gt; dtos = copier.copyAll(people);
+ * </pre>
+ *
+ * <p>
+ * Copiers are immutable and thread-safe; those returned by the <code>of</code>
+ * methods are cached.
+ * </p>
+ *
+ * @param <S> The type of the source objects.
+ * @param <T> The type of the target objects.
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class Copier<S, T> {
+  /**
+   * Returns the copier from the source to the target class copying the properties
+   * with compatible types.
+   */
+  public static <S, T> Copier<S, T> of(Class<S> source, Class<T> target) {
+    return of(source, target, false);
+  }
+
+  /**
+   * Returns the copier from the source to the target class, specifying whether
+   * values of properties of incompatible types are converted (with {@link Convert})
+   * or not copied.
+   */
+  public static <S, T> Copier<S, T> of(Class<S> source, Class<T> target, boolean convert) {
+    checkArgument(source != null, "Source class must not be null");
+    checkArgument(target != null, "Target class must not be null");
+    ConcurrentMap<Class<?>, Copier<?, ?>> cache = (convert ? convertingCopiers : copiers).get(source);
+    Copier<S, T> copier = (Copier<S, T>)cache.get(target);
+    if (copier == null) {
+      copier = new Copier<>(source, target, convert);
+      Copier<S, T> existing = (Copier<S, T>)cache.putIfAbsent(target, copier);
+      if (existing != null) {
+        copier = existing;
+      }
+    }
+    return copier;
+  }
+
+  private Copier(Class<S> source, Class<T> target, boolean convert) {
+    this.source = source;
+    this.target = target;
+
+    Set<String> copied = new LinkedHashSet<>();
+    List<MethodHandle> copies = new ArrayList<>();
+    Map<String, Property> targetProperties = Dissector.properties(target);
+    for (Property from: Dissector.properties(source).values()) {
+      Property to = targetProperties.get(from.name());
+      if (to != null && from.isReadable() && to.isWritable()) {
+        MethodHandle copy = copy(from, to, convert);
+        if (copy != null) {
+          copies.add(copy);
+          copied.add(from.name());
+        }
+      }
+    }
+    this.properties = Collections.unmodifiableSet(copied);
+
+    // chain the property copies into a single handle running them in sequence
+    MethodHandle all = MethodHandles.empty(methodType(void.class, Object.class, Object.class));
+    for (int i = copies.size() - 1; i >= 0; i--) {
+      all = MethodHandles.foldArguments(all, copies.get(i));
+    }
+    this.copy = Invokers.implement(BiConsumer.class, all);
+
+    Supplier<Object> ctor;
+    try {
+      ctor = Invokers.implement(Supplier.class, Classes.instanceFactory(target));
+    } catch (IllegalArgumentException e) {
+      ctor = null;
+    }
+    this.constructor = ctor;
+  }
+
+  /**
+   * Copies the properties of the source object to the target object and returns
+   * the latter.
+   */
+  public T copy(S source, T target) {
+    checkArgument(source != null, "Source object must not be null");
+    checkArgument(target != null, "Target object must not be null");
+    try {
+      copy.accept(source, target);
+      return target;
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw unchecked(t);
+    }
+  }
+
+  /**
+   * Copies the properties of the source object to a new instance of the target
+   * class, created with its no-argument constructor, and returns it.
+   *
+   * @throws IllegalArgumentException if the target class has no such constructor.
+   */
+  public T copy(S source) {
+    return copy(source, newTarget());
+  }
+
+  /**
+   * Copies all the source objects to new instances of the target class, returned
+   * in the same order. Null sources are copied as null.
+   */
+  public List<T> copyAll(Collection<? extends S> sources) {
+    List<T> copies = new ArrayList<>(sources.size());
+    for (S s: sources) {
+      copies.add(s == null ? null : copy(s));
+    }
+    return copies;
+  }
+
+  /**
+   * The class of the objects copied from.
+   */
+  public Class<S> source() {
+    return source;
+  }
+
+  /**
+   * The class of the objects copied to.
+   */
+  public Class<T> target() {
+    return target;
+  }
+
+  /**
+   * The names of the properties copied.
+   */
+  public Set<String> properties() {
+    return properties;
+  }
+
+  @Override
+  public String toString() {
+    return "Copier(" + source.getName() + " -> " + target.getName() + ") " + properties;
+  }
+
+  private T newTarget() {
+    checkArgument(constructor != null, target + " does not have a no-argument constructor");
+    try {
+      return (T)constructor.get();
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw unchecked(t);
+    }
+  }
+
+  /**
+   * Returns a handle of type <code>(Object source, Object target)void</code> copying
+   * the value of the property of the source to the property of the target, or null
+   * if the types of the properties are not compatible and conversion is not allowed.
+   */
+  private static MethodHandle copy(Property from, Property to, boolean convert) {
+    Class<?> fromType = from.type();
+    Class<?> toType = to.type();
+
+    MethodHandle getter = from.directGetter();
+    getter = getter.asType(getter.type().changeParameterType(0, Object.class));
+    if (!compatible(fromType, toType)) {
+      if (!convert) {
+        return null;
+      }
+      MethodHandle converter = MethodHandles.insertArguments(CONVERT, 1, wrapperClassOf(toType));
+      getter = MethodHandles.filterReturnValue(getter.asType(methodType(Object.class, Object.class)), converter);
+    }
+    getter = getter.asType(methodType(toType, Object.class));
+
+    MethodHandle setter = to.directSetter();
+    setter = setter.asType(methodType(void.class, Object.class, toType));
+
+    // (target, source) -> setter(target, getter(source)), then swap the arguments
+    MethodHandle copy = MethodHandles.filterArguments(setter, 1, getter);
+    return MethodHandles.permuteArguments(copy, methodType(void.class, Object.class, Object.class), 1, 0);
+  }
+
+  /**
+   * Returns true if a value of the first type can be assigned to the second, possibly
+   * after a primitive widening, boxing or unboxing conversion.
+   */
+  private static boolean compatible(Class<?> from, Class<?> to) {
+    if (to.isAssignableFrom(from)) {
+      return true;
+    } else if (from.isPrimitive() && to.isPrimitive()) {
+      try {
+        MethodHandles.identity(from).asType(methodType(to, from));
+        return true;
+      } catch (WrongMethodTypeException e) {
+        return false;
+      }
+    } else {
+      return wrapperClassOf(to).isAssignableFrom(wrapperClassOf(from));
+    }
+  }
+
+  /**
+   * The class of the objects copied from.
+   */
+  private final Class<S> source;
+
+  /**
+   * The class of the objects copied to.
+   */
+  private final Class<T> target;
+
+  /**
+   * The names of the properties copied.
+   */
+  private final Set<String> properties;
+
+  /**
+   * Copies all the properties from a source (the first argument) to a target,
+   * in sequence.
+   */
+  private final BiConsumer<Object, Object> copy;
+
+  /**
+   * Creates a new instance of the target class, or null if the target class
+   * has no no-argument constructor.
+   */
+  private final Supplier<Object> constructor;
+
+  /**
+   * Handle to {@link Convert#convert(Object, Class)}.
+   */
+  private static final MethodHandle CONVERT = unchecked(() -> MethodHandles.publicLookup().findStatic(
+      Convert.class, "convert", methodType(Object.class, Object.class, Class.class)));
+
+  /**
+   * Copiers per source class, keyed by target class.
+   */
+  private static final ClassValue<ConcurrentMap<Class<?>, Copier<?, ?>>> copiers = new ClassValue<>() {
+    @Override
+    protected ConcurrentMap<Class<?>, Copier<?, ?>> computeValue(Class<?> type) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+
+  /**
+   * Copiers converting values of incompatible types, per source class, keyed
+   * by target class.
+   */
+  private static final ClassValue<ConcurrentMap<Class<?>, Copier<?, ?>>> convertingCopiers = new ClassValue<>() {
+    @Override
+    protected ConcurrentMap<Class<?>, Copier<?, ?>> computeValue(Class<?> type) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+}
@@ -4,22 +4,34 @@
 
 package ma.vi.base.reflect;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.*;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 import java.util.stream.Stream;
 
-import static java.lang.reflect.Modifier.isProtected;
-import static java.lang.reflect.Modifier.isPublic;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static ma.vi.base.lang.Errors.checkArgument;
-import static ma.vi.base.string.Strings.capFirst;
+import static ma.vi.base.lang.Errors.unchecked;
 
 /**
  * Utility functions to access the constructors, methods and fields
- * of classes, reflectively.
+ * of classes, reflectively. The metadata of each class is computed once and
+ * cached for as long as the class is loaded.
  *
  * @author Vikash Madhow (vikash.madhow@gmail.com)
  */
@@ -30,17 +42,7 @@ public class Dissector {
    */
   public static Set<Constructor<?>> constructors(Class<?> cls) {
     checkArgument(cls != null, "Class must not be null");
-    return ctorsCache.computeIfAbsent(cls, k -> {
-      // add all public constructors
-      Set<Constructor<?>> ctors = new HashSet<>();
-      Collections.addAll(ctors, cls.getConstructors());
-
-      // add non-public declared constructors
-      Stream.of(cls.getDeclaredConstructors())
-            .filter(c -> !isPublic(c.getModifiers()))
-            .forEach(ctors::add);
-      return ctors;
-    });
+    return info(cls).constructors();
   }
 
   /**
@@ -64,24 +66,7 @@ public class Dissector {
    */
   public static Map<MethodDescriptor, Method> methods(Class<?> cls) {
     checkArgument(cls != null, "Class must not be null");
-    return methodsCache.computeIfAbsent(cls, k -> {
-      // add all public methods
-      Map<MethodDescriptor, Method> methods = new HashMap<>();
-      Arrays.stream(cls.getMethods()).forEach(m -> methods.put(methodDescriptor(m), m));
-
-      // add non-public declared methods
-      for (Class<?> cur = cls; cur != null; cur = cur.getSuperclass()) {
-        for (Method m : cur.getDeclaredMethods()) {
-          int mod = m.getModifiers();
-          if (isProtected(mod)) {
-            methods.putIfAbsent(methodDescriptor(m), m);
-          } else if (!isPublic(mod)) {
-            methods.put(methodDescriptor(m), m);
-          }
-        }
-      }
-      return methods;
-    });
+    return info(cls).methods();
   }
 
   /**
@@ -105,20 +90,7 @@ public class Dissector {
    */
   public static Map<String, Field> fields(Class<?> cls) {
     checkArgument(cls != null, "Class must not be null");
-    return fieldsCache.computeIfAbsent(cls, k -> {
-      Map<String, Field> fields = new HashMap<>();
-      Arrays.stream(cls.getFields()).forEach(f -> fields.put(f.getName(), f));
-
-      for (Class<?> cur : componentClasses(cls)) {
-        for (Field f : cur.getDeclaredFields()) {
-          String fieldName = f.getName();
-          if (!fields.containsKey(fieldName) && !isPublic(f.getModifiers())) {
-            fields.put(fieldName, f);
-          }
-        }
-      }
-      return fields;
-    });
+    return info(cls).fields();
   }
 
   /**
@@ -135,76 +107,7 @@ public class Dissector {
    */
   public static Map<String, Property> properties(Class<?> cls) {
     checkArgument(cls != null, "Class must not be null");
-    return propertiesCache.computeIfAbsent(cls, k -> {
-      Map<String, Property> properties = new HashMap<>();
-
-      if (cls.isRecord()) {
-        for (RecordComponent c: cls.getRecordComponents()) {
-          properties.put(c.getName(), new Property(c.getName(), c.getAccessor(), null));
-        }
-      } else {
-        /*
-         * Add properties based on getters and setters
-         */
-        Map<MethodDescriptor, Method> methods = methods(cls);
-        for (Map.Entry<MethodDescriptor, Method> entry: methods.entrySet()) {
-          MethodDescriptor desc = entry.getKey();
-
-          Method method = entry.getValue();
-          String methodName = method.getName();
-          String propertyName = Property.propertyNameFromMethod(methodName);
-          if (!properties.containsKey(propertyName)) {
-            int mod = method.getModifiers();
-            if (!Modifier.isStatic(mod)
-             && !Modifier.isAbstract(mod)
-             && Modifier.isPublic(mod)
-             && (methodName.startsWith("is")
-             || methodName.startsWith("get")
-             || methodName.startsWith("set"))) {
-
-              if (desc.parameterTypes.length == 0
-               && (methodName.startsWith("is")
-                || methodName.startsWith("get"))) {
-
-                Class<?> type = method.getReturnType();
-                Method setter = methods.get(new MethodDescriptor("set" + capFirst(propertyName), type));
-                if (setter != null && !setter.getReturnType().equals(void.class)) {
-                  setter = null;
-                }
-                properties.put(propertyName, new Property(propertyName, method, setter));
-
-              } else if (desc.parameterTypes.length == 1
-                      && desc.name.startsWith("set")) {
-
-                Class<?> type = desc.parameterTypes[0];
-                Method getter = methods.get(new MethodDescriptor("get" + capFirst(propertyName)));
-                if (getter == null) {
-                  getter = methods.get(new MethodDescriptor("is" + capFirst(propertyName)));
-                }
-                if (getter != null && !getter.getReturnType().equals(type)) {
-                  getter = null;
-                }
-                properties.put(propertyName, new Property(propertyName, getter, method));
-              }
-            }
-          }
-        }
-
-        // Add properties based on fields
-        Map<String, Field> fields = fields(cls);
-        for (Map.Entry<String, Field> entry: fields.entrySet()) {
-          String propertyName = entry.getKey();
-          if (!properties.containsKey(propertyName)) {
-            Field field = entry.getValue();
-            int mod = field.getModifiers();
-            if (!Modifier.isStatic(mod)) {
-              properties.put(propertyName, new Property(field));
-            }
-          }
-        }
-      }
-      return properties;
-    });
+    return info(cls).properties();
   }
 
   /**
@@ -221,18 +124,143 @@ public class Dissector {
    * itself) in order of most specific (the class itself) to the least (java.lang.Object).
    */
   public static List<Class<?>> componentClasses(Class<?> cls) {
-    if (!componentsCache.containsKey(cls)) {
-      List<Class<?>> classes = new ArrayList<>();
-      classes.add(cls);
-      classes.addAll(Arrays.asList(cls.getInterfaces()));
+    checkArgument(cls != null, "Class must not be null");
+    return info(cls).components();
+  }
+
+  /**
+   * Computes and caches the metadata (constructors, methods, fields, properties and
+   * component classes) of all the classes, in parallel on the common fork-join pool,
+   * so that it is not computed on first use (e.g. when a server is first accessed).
+   * Classes whose metadata could not be computed (typically because some class that
+   * they refer to is missing) are reported as failed, and do not stop the preloading
+   * of others.
+   */
+  public static PreloadReport preload(Collection<Class<?>> classes) {
+    return preload(classes, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Computes and caches the metadata of all the classes in parallel on the
+   * specified fork-join pool.
+   */
+  public static PreloadReport preload(Collection<Class<?>> classes, ForkJoinPool pool) {
+    checkArgument(classes != null, "Classes must not be null");
+    checkArgument(pool != null, "Pool must not be null");
+    long start = System.nanoTime();
+    LongAdder work = new LongAdder();
+    LongAdder loaded = new LongAdder();
+    Map<String, Throwable> failures = new ConcurrentHashMap<>();
+    pool.invoke(ForkJoinTask.adapt(() -> classes.parallelStream().forEach(cls -> {
+      long classStart = System.nanoTime();
+      try {
+        info(cls).preload();
+        loaded.increment();
+      } catch (LinkageError | RuntimeException e) {
+        failures.put(cls.getName(), e);
+      }
+      work.add(System.nanoTime() - classStart);
+    })));
+    return new PreloadReport(loaded.intValue(),
+                             Collections.unmodifiableMap(failures),
+                             Duration.ofNanos(System.nanoTime() - start),
+                             Duration.ofNanos(work.sum()));
+  }
+
+  /**
+   * Loads (without initializing) all the classes in the package and its subpackages
+   * found by the class loader in folders and jar files of the class path, and
+   * computes and caches their metadata in parallel on the common fork-join pool.
+   * Classes which could not be loaded are reported as failed.
+   */
+  public static PreloadReport preload(String packageName, ClassLoader loader) {
+    checkArgument(packageName != null, "Package name must not be null");
+    checkArgument(loader != null, "Class loader must not be null");
+    long start = System.nanoTime();
+    Map<String, Throwable> failures = new ConcurrentHashMap<>();
+    List<Class<?>> classes = classNames(packageName, loader)
+        .parallelStream()
+        .map(name -> {
+          try {
+            return Class.forName(name, false, loader);
+          } catch (ClassNotFoundException | LinkageError e) {
+            failures.put(name, e);
+            return null;
+          }
+        })
+        .filter(Objects::nonNull)
+        .collect(toList());
+
+    PreloadReport report = preload(classes);
+    failures.putAll(report.failures());
+    return new PreloadReport(report.classes(),
+                             Collections.unmodifiableMap(failures),
+                             Duration.ofNanos(System.nanoTime() - start),
+                             report.work());
+  }
 
-      Class<?> superClass = cls.getSuperclass();
-      if (superClass != null) {
-        classes.addAll(componentClasses(cls.getSuperclass()));
+  /**
+   * The outcome of preloading the metadata of classes.
+   *
+   * @param classes The number of classes whose metadata was computed.
+   * @param failures The classes (by name) which could not be loaded or whose metadata
+   *                 could not be computed, with the corresponding error.
+   * @param elapsed The time taken for the preloading.
+   * @param work The sum of the time spent on each class, across all threads.
+   */
+  public record PreloadReport(int classes,
+                              Map<String, Throwable> failures,
+                              Duration elapsed,
+                              Duration work) {}
+
+  /**
+   * Returns the names of the classes in the package and its subpackages found in
+   * folders and jar files of the class path of the class loader.
+   */
+  private static List<String> classNames(String packageName, ClassLoader loader) {
+    String path = packageName.replace('.', '/');
+    List<String> names = new ArrayList<>();
+    try {
+      for (URL url: Collections.list(loader.getResources(path))) {
+        if (url.getProtocol().equals("file")) {
+          Path folder = Paths.get(url.toURI());
+          try (Stream<Path> files = Files.walk(folder)) {
+            files.map(f -> folder.relativize(f).toString().replace(File.separatorChar, '/'))
+                 .filter(Dissector::isClassFile)
+                 .forEach(f -> names.add(className(path + '/' + f)));
+          }
+        } else if (url.getProtocol().equals("jar")) {
+          JarURLConnection connection = (JarURLConnection)url.openConnection();
+          connection.setUseCaches(false);
+          try (JarFile jar = connection.getJarFile()) {
+            jar.stream()
+               .map(JarEntry::getName)
+               .filter(e -> e.startsWith(path + '/') && isClassFile(e))
+               .forEach(e -> names.add(className(e)));
+          }
+        }
       }
-      componentsCache.put(cls, classes);
+    } catch (IOException | URISyntaxException e) {
+      throw unchecked(e);
     }
-    return componentsCache.get(cls);
+    return names;
+  }
+
+  private static boolean isClassFile(String file) {
+    return file.endsWith(".class")
+        && !file.endsWith("module-info.class")
+        && !file.endsWith("package-info.class");
+  }
+
+  private static String className(String classFile) {
+    return classFile.substring(0, classFile.length() - ".class".length()).replace('/', '.');
+  }
+
+  /**
+   * Returns the metadata of the class, computed and cached on first use.
+   */
+  static ClassInfo info(Class<?> cls) {
+    return classInfo.get(cls);
   }
 
   /**
@@ -289,27 +317,13 @@ public class Dissector {
   }
 
   /**
-   * Constructors cache.
-   */
-  private final static ConcurrentMap<Class<?>, Set<Constructor<?>>> ctorsCache = new ConcurrentHashMap<>();
-
-  /**
-   * Methods cache.
-   */
-  private final static ConcurrentMap<Class<?>, Map<MethodDescriptor, Method>> methodsCache = new ConcurrentHashMap<>();
-
-  /**
-   * Fields cache.
+   * The metadata of classes. Being held by a {@link ClassValue}, the metadata
+   * does not keep classes (and their class loaders) from being unloaded.
    */
-  private final static ConcurrentMap<Class<?>, Map<String, Field>> fieldsCache = new ConcurrentHashMap<>();
-
-  /**
-   * Properties cache.
-   */
-  private final static ConcurrentMap<Class<?>, Map<String, Property>> propertiesCache = new ConcurrentHashMap<>();
-
-  /**
-   * Class components cache.
-   */
-  private final static ConcurrentMap<Class<?>, List<Class<?>>> componentsCache = new ConcurrentHashMap<>();
-}
\ No newline at end of file
+  private static final ClassValue<ClassInfo> classInfo = new ClassValue<>() {
+    @Override
+    protected ClassInfo computeValue(Class<?> type) {
+      return new ClassInfo(type);
+    }
+  };
+}
@@ -0,0 +1,20 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.reflect;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a class for which {@link MetadataIndexProcessor} generates, at compile time,
+ * an index of its properties and constructors. {@link Dissector} then loads the
+ * metadata of the class from that index instead of inferring it by scanning the
+ * class hierarchy reflectively.
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Indexed {}
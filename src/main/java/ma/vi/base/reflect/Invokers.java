@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.reflect;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.invoke.MethodType.methodType;
+import static ma.vi.base.lang.Errors.checkArgument;
+import static ma.vi.base.lang.Errors.unchecked;
+
+/**
+ * <p>
+ * Implements functional interfaces with method handles through generated hidden
+ * classes. The handle is held in a <code>static final</code> field of the hidden
+ * class, which the JIT treats as a constant: the implementation of the abstract
+ * method of the interface invokes it exactly and, once compiled, is inlined down
+ * to the target of the handle (e.g. a field read or a call to a getter). A handle
+ * held in an instance field, on the other hand, is not a constant and is invoked
+ * through its generic adapters on each call.
+ * </p>
+ *
+ * <pre>
+ *    ToIntFunction&lt;Object&gt; x = Invokers.implement(ToIntFunction.class, xGetter);
+ *    int value = x.applyAsInt(point);
+ * </pre>
+ *
+ * <p>
+ * A hidden class is generated for every implementation: implementations should be
+ * created once and reused (e.g. cached with the metadata they are derived from).
+ * Hidden classes are unloaded once their implementations are no longer reachable.
+ * </p>
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+final class Invokers {
+  /**
+   * Returns an implementation of the functional interface which invokes the handle,
+   * adapted (with {@link MethodHandle#asType(MethodType)}) to the erased type of the
+   * abstract method of the interface. Exceptions thrown by the handle, including
+   * checked ones, propagate unchanged from the implementation.
+   *
+   * @throws IllegalArgumentException if the class is not an interface with a single
+   *                                  abstract method.
+   * @throws java.lang.invoke.WrongMethodTypeException if the handle cannot be adapted
+   *                                                   to the type of the method.
+   */
+  static <T> T implement(Class<T> iface, MethodHandle target) {
+    checkArgument(target != null, "Method handle must not be null");
+    Method method = abstractMethod(iface);
+    MethodType type = methodType(method.getReturnType(), method.getParameterTypes());
+    MethodHandle handle = target.asType(type);
+    byte[] bytes = unchecked(() -> classBytes(iface, method, type));
+    try {
+      MethodHandles.Lookup hidden = LOOKUP.defineHiddenClassWithClassData(bytes, handle, true);
+      Class<?> cls = hidden.lookupClass();
+      return iface.cast(hidden.findConstructor(cls, methodType(void.class)).invoke());
+    } catch (Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw unchecked(t);
+    }
+  }
+
+  private static Method abstractMethod(Class<?> iface) {
+    checkArgument(iface != null && iface.isInterface(), iface + " is not an interface");
+    Method found = null;
+    for (Method m: iface.getMethods()) {
+      if (Modifier.isAbstract(m.getModifiers()) && !isObjectMethod(m)) {
+        checkArgument(found == null, iface + " has more than one abstract method");
+        found = m;
+      }
+    }
+    checkArgument(found != null, iface + " has no abstract method");
+    return found;
+  }
+
+  private static boolean isObjectMethod(Method m) {
+    try {
+      Object.class.getMethod(m.getName(), m.getParameterTypes());
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Generates the hidden class implementing the method of the interface:
+   *
+   * <pre>
+   *   final class Invoker implements I {
+   *     private static final MethodHandle H = (MethodHandle)MethodHandles.classData(lookup(), "_", MethodHandle.class);
+   *     public R m(P1 p1, ...) { return (R)H.invokeExact(p1, ...); }
+   *   }
+   * </pre>
+   *
+   * The code of each method is straight-line, so no stack map frames are needed.
+   */
+  private static byte[] classBytes(Class<?> iface, Method method, MethodType type) throws IOException {
+    ConstantPool cp = new ConstantPool();
+    int thisClass = cp.cls(INVOKER_NAME);
+    int superClass = cp.cls("java/lang/Object");
+    int ifaceClass = cp.cls(internalName(iface));
+    int handleClass = cp.cls(HANDLE);
+    int handleField = cp.ref(9, thisClass, "H", "L" + HANDLE + ";");
+    int objectInit = cp.ref(10, superClass, "<init>", "()V");
+    int lookup = cp.ref(10, cp.cls(HANDLES), "lookup", "()L" + LOOKUP_NAME + ";");
+    int classData = cp.ref(10, cp.cls(HANDLES), "classData",
+                           "(L" + LOOKUP_NAME + ";Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;");
+    int dataName = cp.string("_");
+    int invokeExact = cp.ref(10, handleClass, "invokeExact", type.toMethodDescriptorString());
+    int code = cp.utf8("Code");
+
+    // constructor
+    ByteArrayOutputStream init = new ByteArrayOutputStream();
+    init.write(0x2A);                                   // aload_0
+    op(init, 0xB7, objectInit);                         // invokespecial Object.<init>
+    init.write(0xB1);                                   // return
+
+    // static initializer loading the handle from the class data
+    ByteArrayOutputStream clinit = new ByteArrayOutputStream();
+    op(clinit, 0xB8, lookup);                           // invokestatic MethodHandles.lookup
+    op(clinit, 0x13, dataName);                         // ldc_w "_"
+    op(clinit, 0x13, handleClass);                      // ldc_w MethodHandle.class
+    op(clinit, 0xB8, classData);                        // invokestatic MethodHandles.classData
+    op(clinit, 0xC0, handleClass);                      // checkcast MethodHandle
+    op(clinit, 0xB3, handleField);                      // putstatic H
+    clinit.write(0xB1);                                 // return
+
+    // implementation of the abstract method
+    ByteArrayOutputStream impl = new ByteArrayOutputStream();
+    op(impl, 0xB2, handleField);                        // getstatic H
+    int slot = 1;
+    for (Class<?> p: type.parameterArray()) {
+      impl.write(load(p));                              // xload slot
+      impl.write(slot);
+      slot += slots(p);
+    }
+    op(impl, 0xB6, invokeExact);                        // invokevirtual MethodHandle.invokeExact
+    impl.write(ret(type.returnType()));                 // xreturn
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(0xCAFEBABE);
+    data.writeShort(0);
+    data.writeShort(61);                                // Java 17
+    int initName = cp.utf8("<init>"), voidDesc = cp.utf8("()V"), clinitName = cp.utf8("<clinit>");
+    int implName = cp.utf8(method.getName()), implDesc = cp.utf8(type.toMethodDescriptorString());
+    int fieldName = cp.utf8("H"), fieldDesc = cp.utf8("L" + HANDLE + ";");
+    cp.write(data);
+
+    data.writeShort(0x0030);                            // final super
+    data.writeShort(thisClass);
+    data.writeShort(superClass);
+    data.writeShort(1);
+    data.writeShort(ifaceClass);
+
+    data.writeShort(1);                                 // private static final MethodHandle H
+    data.writeShort(0x001A);
+    data.writeShort(fieldName);
+    data.writeShort(fieldDesc);
+    data.writeShort(0);
+
+    data.writeShort(3);
+    method(data, 0x0001, initName, voidDesc, code, 1, 1, init.toByteArray());
+    method(data, 0x0008, clinitName, voidDesc, code, 3, 0, clinit.toByteArray());
+    method(data, 0x0001, implName, implDesc, code, Math.max(slot, 2), slot, impl.toByteArray());
+    data.writeShort(0);                                 // no class attributes
+    data.flush();
+    return out.toByteArray();
+  }
+
+  private static void method(DataOutputStream data, int access, int name, int descriptor, int codeName,
+                             int maxStack, int maxLocals, byte[] code) throws IOException {
+    data.writeShort(access);
+    data.writeShort(name);
+    data.writeShort(descriptor);
+    data.writeShort(1);
+    data.writeShort(codeName);
+    data.writeInt(12 + code.length);
+    data.writeShort(maxStack);
+    data.writeShort(maxLocals);
+    data.writeInt(code.length);
+    data.write(code);
+    data.writeShort(0);                                 // no exception handlers
+    data.writeShort(0);                                 // no code attributes
+  }
+
+  private static void op(ByteArrayOutputStream code, int opcode, int index) {
+    code.write(opcode);
+    code.write(index >>> 8);
+    code.write(index);
+  }
+
+  private static int load(Class<?> type) {
+    return type == long.class   ? 0x16
+         : type == float.class  ? 0x17
+         : type == double.class ? 0x18
+         : type.isPrimitive()   ? 0x15
+                                : 0x19;
+  }
+
+  private static int ret(Class<?> type) {
+    return type == void.class   ? 0xB1
+         : type == long.class   ? 0xAD
+         : type == float.class  ? 0xAE
+         : type == double.class ? 0xAF
+         : type.isPrimitive()   ? 0xAC
+                                : 0xB0;
+  }
+
+  private static int slots(Class<?> type) {
+    return type == long.class || type == double.class ? 2 : 1;
+  }
+
+  private static String internalName(Class<?> cls) {
+    return cls.getName().replace('.', '/');
+  }
+
+  private Invokers() {}
+
+  /**
+   * The constant pool of the class being generated, with entries created on first
+   * reference and numbered from 1.
+   */
+  private static final class ConstantPool {
+    int utf8(String value) {
+      return entry("U" + value, 1, d -> d.writeUTF(value));
+    }
+
+    int cls(String internalName) {
+      int name = utf8(internalName);
+      return entry("C" + internalName, 7, d -> d.writeShort(name));
+    }
+
+    int string(String value) {
+      int utf8 = utf8(value);
+      return entry("S" + value, 8, d -> d.writeShort(utf8));
+    }
+
+    /**
+     * A field (tag 9) or method (tag 10) reference.
+     */
+    int ref(int tag, int owner, String name, String descriptor) {
+      int n = utf8(name), t = utf8(descriptor);
+      int nameAndType = entry("N" + name + ' ' + descriptor, 12, d -> {
+        d.writeShort(n);
+        d.writeShort(t);
+      });
+      return entry("R" + tag + ' ' + owner + ' ' + name + ' ' + descriptor, tag, d -> {
+        d.writeShort(owner);
+        d.writeShort(nameAndType);
+      });
+    }
+
+    void write(DataOutputStream data) throws IOException {
+      data.writeShort(entries.size() + 1);
+      for (Entry e: entries) {
+        data.writeByte(e.tag);
+        e.content.write(data);
+      }
+    }
+
+    private int entry(String key, int tag, Content content) {
+      Integer index = indices.get(key);
+      if (index == null) {
+        entries.add(new Entry(tag, content));
+        index = entries.size();
+        indices.put(key, index);
+      }
+      return index;
+    }
+
+    private interface Content {
+      void write(DataOutputStream data) throws IOException;
+    }
+
+    private record Entry(int tag, Content content) {}
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Integer> indices = new HashMap<>();
+  }
+
+  /**
+   * The name of the generated classes, to which the JVM appends a unique suffix
+   * (hidden classes must be in the package of the lookup defining them).
+   */
+  private static final String INVOKER_NAME = "ma/vi/base/reflect/Invoker";
+
+  private static final String HANDLE = "java/lang/invoke/MethodHandle";
+  private static final String HANDLES = "java/lang/invoke/MethodHandles";
+  private static final String LOOKUP_NAME = "java/lang/invoke/MethodHandles$Lookup";
+
+  /**
+   * Lookup defining the hidden classes in this package.
+   */
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+}
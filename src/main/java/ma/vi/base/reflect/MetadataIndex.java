@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.reflect;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipFile;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>
+ * Reads the metadata index generated for a class by {@link MetadataIndexProcessor},
+ * resolving the members that it lists. Otherwise (e.g. if the index is out of date)
+ * {@link Dissector} falls back to reflection.
+ * </p>
+ *
+ * <p>
+ * The index records a fingerprint of the members of the class and of each of its
+ * supertypes (which may come from other libraries and change independently of
+ * the class), and is only used if they match the classes loaded at runtime. So
+ * that this check does not amount to the scan of the hierarchy that the index
+ * replaces, each fingerprint is computed from the members declared by its class
+ * alone, and those of supertypes, shared by many classes, are computed once and
+ * cached.
+ * </p>
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+final class MetadataIndex {
+  private MetadataIndex() {}
+
+  /**
+   * The constructors and properties of a class, as loaded from its index.
+   */
+  record Metadata(Set<Constructor<?>> constructors, Map<String, Property> properties) {}
+
+  /**
+   * Returns the metadata of the class loaded from its index, or null if the class
+   * has no (valid) index.
+   */
+  static Metadata read(Class<?> cls) {
+    ClassLoader loader = cls.getClassLoader();
+    if (loader == null) {
+      // classes of the platform are never indexed
+      return null;
+    }
+    try (InputStream in = resource(cls, PATH + cls.getName())) {
+      if (in == null) {
+        return null;
+      }
+      Map<String, Long> fingerprints = new HashMap<>();
+      List<String[]> members = new ArrayList<>();
+      for (String line: new String(in.readAllBytes(), UTF_8).split("\n")) {
+        if (line.startsWith("s ")) {
+          String[] s = line.split(" ");
+          fingerprints.put(s[1], Long.parseUnsignedLong(s[2], 16));
+        } else if (line.startsWith("c ") || line.startsWith("p ")) {
+          members.add(line.split(" ", -1));
+        }
+      }
+      Map<String, Class<?>> hierarchy = hierarchy(cls, fingerprints);
+      if (hierarchy == null) {
+        return null;
+      }
+
+      /*
+       * Members are looked up in their declaring classes, found in the hierarchy
+       * by name, and the types of properties are compared by name, so that classes
+       * are only resolved by name for the parameters of constructors and setters
+       * without getters.
+       */
+      Set<Constructor<?>> constructors = new HashSet<>();
+      Map<String, Property> properties = new HashMap<>();
+      for (String[] m: members) {
+        if (m[0].equals("c")) {
+          constructors.add(cls.getDeclaredConstructor(
+              m[1].isEmpty() ? new Class<?>[0] : classes(m[1].split(","), loader)));
+        } else {
+          String name = m[1];
+          Property property;
+          if (!m[5].equals("-")) {
+            property = new Property(declaringClass(m[5], hierarchy, loader).getDeclaredField(name));
+          } else {
+            Method getter = m[3].equals("-") ? null : method(m[3], hierarchy, loader);
+            Class<?> type = getter != null ? getter.getReturnType() : type(m[2], loader);
+            Method setter = m[4].equals("-") ? null : method(m[4], hierarchy, loader, type);
+            property = new Property(name, getter, setter);
+          }
+          if (!property.type().getName().equals(m[2])) {
+            return null;
+          }
+          properties.put(name, property);
+        }
+      }
+      return new Metadata(Collections.unmodifiableSet(constructors),
+                          Collections.unmodifiableMap(properties));
+
+    } catch (IOException
+           | ReflectiveOperationException
+           | LinkageError
+           | IllegalArgumentException
+           | IndexOutOfBoundsException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the class and its supertypes (superclasses and interfaces, direct or
+   * not, excluding those of the platform) by name, or null if their fingerprints
+   * at runtime are not those recorded in the index.
+   */
+  private static Map<String, Class<?>> hierarchy(Class<?> cls, Map<String, Long> fingerprints) {
+    Long fingerprint = fingerprints.get(cls.getName());
+    if (fingerprint == null || fingerprint != fingerprint(cls, true)) {
+      return null;
+    }
+    Map<String, Class<?>> hierarchy = new HashMap<>();
+    hierarchy.put(cls.getName(), cls);
+    supertypes(cls, hierarchy);
+    if (hierarchy.size() != fingerprints.size()) {
+      return null;
+    }
+    for (Class<?> s: hierarchy.values()) {
+      if (s != cls && !supertypeFingerprints.get(s).equals(fingerprints.get(s.getName()))) {
+        return null;
+      }
+    }
+    return hierarchy;
+  }
+
+  private static void supertypes(Class<?> cls, Map<String, Class<?>> supertypes) {
+    List<Class<?>> direct = new ArrayList<>(Arrays.asList(cls.getInterfaces()));
+    if (cls.getSuperclass() != null) {
+      direct.add(cls.getSuperclass());
+    }
+    for (Class<?> s: direct) {
+      if (!isPlatform(s.getName()) && supertypes.putIfAbsent(s.getName(), s) == null) {
+        supertypes(s, supertypes);
+      }
+    }
+  }
+
+  /**
+   * The class declaring a member: one of the hierarchy or, if from the platform
+   * (e.g. {@link Object#getClass()}), found by name.
+   */
+  private static Class<?> declaringClass(String name,
+                                         Map<String, Class<?>> hierarchy,
+                                         ClassLoader loader) throws ClassNotFoundException {
+    Class<?> cls = hierarchy.get(name);
+    return cls != null ? cls : Class.forName(name, false, loader);
+  }
+
+  /**
+   * Classes from the <code>java</code> packages are not fingerprinted: they are
+   * part of the platform the indexed class is compiled and run against.
+   */
+  static boolean isPlatform(String className) {
+    return className.startsWith("java.");
+  }
+
+  /**
+   * Returns the fingerprint of the class, with or without its constructors, computed
+   * from its declared members only: the sum (which does not depend on the order of
+   * the members) of the hashes of its instance fields and public instance getters
+   * and setters (see {@link #startHash(char, String)}).
+   */
+  private static long fingerprint(Class<?> cls, boolean constructors) {
+    long fingerprint = 0;
+    for (Field f: cls.getDeclaredFields()) {
+      int mod = f.getModifiers();
+      if (!Modifier.isStatic(mod) && !f.isSynthetic()) {
+        long hash = startHash(Modifier.isPublic(mod) ? 'F' : 'f', f.getName());
+        fingerprint += endHash(addType(hash, f.getType().getName()));
+      }
+    }
+    for (Method m: cls.getDeclaredMethods()) {
+      int mod = m.getModifiers();
+      if (Modifier.isPublic(mod) && !Modifier.isStatic(mod) && !m.isSynthetic() && isAccessorName(m.getName())) {
+        long hash = startHash(Modifier.isAbstract(mod) ? 'a' : 'm', m.getName());
+        for (Class<?> p: m.getParameterTypes()) {
+          hash = addType(hash, p.getName());
+        }
+        fingerprint += endHash(addType(hash, m.getReturnType().getName()));
+      }
+    }
+    if (constructors) {
+      for (Constructor<?> c: cls.getDeclaredConstructors()) {
+        if (!c.isSynthetic()) {
+          long hash = startHash('c', "<init>");
+          for (Class<?> p: c.getParameterTypes()) {
+            hash = addType(hash, p.getName());
+          }
+          fingerprint += endHash(hash);
+        }
+      }
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Opens the resource from the code source (folder or jar file) of the class, in
+   * which the processor writes its index, or through its class loader if its code
+   * source is not local. Reading from
+   * the code source, whose jar file is opened once and kept open, is several
+   * times faster than through the class loader, which locates each resource by
+   * URL.
+   */
+  private static InputStream resource(Class<?> cls, String name) throws IOException {
+    CodeSource source = cls.getProtectionDomain().getCodeSource();
+    URL location = source == null ? null : source.getLocation();
+    Object root = location == null ? null : roots.computeIfAbsent(location.toString(), l -> root(location));
+    if (root instanceof JarFile jar) {
+      JarEntry entry = jar.getJarEntry(name);
+      return entry == null ? null : jar.getInputStream(entry);
+    } else if (root instanceof Path folder) {
+      Path file = folder.resolve(name);
+      return Files.isRegularFile(file) ? Files.newInputStream(file) : null;
+    } else {
+      return cls.getClassLoader().getResourceAsStream(name);
+    }
+  }
+
+  /**
+   * The folder or jar file at the location, or {@link #NO_ROOT} if it is not local.
+   */
+  private static Object root(URL location) {
+    try {
+      if (location.getProtocol().equals("file")) {
+        Path path = Path.of(location.toURI());
+        if (Files.isDirectory(path)) {
+          return path;
+        } else if (Files.isRegularFile(path)) {
+          return new JarFile(path.toFile(), false, ZipFile.OPEN_READ, JarFile.runtimeVersion());
+        }
+      }
+    } catch (URISyntaxException | IOException | IllegalArgumentException e) {
+      // read through the class loader
+    }
+    return NO_ROOT;
+  }
+
+  /**
+   * True if the method name could be that of a getter or setter.
+   */
+  static boolean isAccessorName(String name) {
+    return name.startsWith("get") || name.startsWith("is") || name.startsWith("set");
+  }
+
+  /**
+   * Starts the hash of a member of a class, of the kind ('F' for a public field,
+   * 'f' for other fields, 'm' for a getter or setter, 'a' for an abstract one and
+   * 'c' for a constructor) and name. The hash is continued with the names of its
+   * types (as returned by {@link Class#getName()}: of the field, or of the parameters
+   * and then the result of the method) and ended with {@link #endHash(long)}. As it uses
+   * the hash codes of names, which are specified and cached, it is computed without
+   * creating any string.
+   */
+  static long startHash(char kind, String name) {
+    return (((0xCBF29CE484222325L ^ kind) * 0x100000001B3L) ^ name.hashCode()) * 0x100000001B3L;
+  }
+
+  static long addType(long hash, String className) {
+    return (hash ^ className.hashCode()) * 0x100000001B3L;
+  }
+
+  /**
+   * Ends the hash of a member, spreading its bits (with the finalizer of MurmurHash3)
+   * so that the sum of the hashes of the members of a class is well distributed.
+   */
+  static long endHash(long hash) {
+    hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+    hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return hash ^ (hash >>> 33);
+  }
+
+  /**
+   * Returns the method, named in the index with the name of its declaring class
+   * (<code>&lt;class&gt;.&lt;method&gt;</code>), with the parameters.
+   */
+  private static Method method(String qualifiedName,
+                               Map<String, Class<?>> hierarchy,
+                               ClassLoader loader,
+                               Class<?>... parameterTypes) throws ReflectiveOperationException {
+    int dot = qualifiedName.lastIndexOf('.');
+    return declaringClass(qualifiedName.substring(0, dot), hierarchy, loader)
+          .getDeclaredMethod(qualifiedName.substring(dot + 1), parameterTypes);
+  }
+
+  private static Class<?>[] classes(String[] names, ClassLoader loader) throws ClassNotFoundException {
+    Class<?>[] classes = new Class<?>[names.length];
+    for (int i = 0; i < names.length; i++) {
+      classes[i] = type(names[i], loader);
+    }
+    return classes;
+  }
+
+  private static Class<?> type(String name, ClassLoader loader) throws ClassNotFoundException {
+    Class<?> primitive = PRIMITIVES.get(name);
+    return primitive != null ? primitive : Class.forName(name, false, loader);
+  }
+
+  /**
+   * Folder of the class path under which the index of each class is stored,
+   * as a resource named after the class.
+   */
+  static final String PATH = "META-INF/ma.vi.base/index/";
+
+  /**
+   * Fingerprints of the supertypes of indexed classes, computed once per class.
+   */
+  private static final ClassValue<Long> supertypeFingerprints = new ClassValue<>() {
+    @Override
+    protected Long computeValue(Class<?> type) {
+      return fingerprint(type, false);
+    }
+  };
+
+  /**
+   * The folders and jar files of the code sources of indexed classes, by location.
+   */
+  private static final Map<String, Object> roots = new ConcurrentHashMap<>();
+
+  private static final Object NO_ROOT = new Object();
+
+  private static final Map<String, Class<?>> PRIMITIVES = Map.of(
+      "boolean", boolean.class,
+      "byte",    byte.class,
+      "char",    char.class,
+      "short",   short.class,
+      "int",     int.class,
+      "long",    long.class,
+      "float",   float.class,
+      "double",  double.class);
+}
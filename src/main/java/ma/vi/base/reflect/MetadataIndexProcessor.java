@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.reflect;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+import static javax.lang.model.element.Modifier.*;
+import static javax.lang.model.util.ElementFilter.*;
+import static ma.vi.base.string.Strings.capFirst;
+
+/**
+ * <p>
+ * An annotation processor generating the metadata index of the classes annotated
+ * with {@link Indexed}: for each such class, a resource named
+ * <code>META-INF/ma.vi.base/index/&lt;binary class name&gt;</code> listing the
+ * constructors and properties of the class, as {@link Dissector} would infer them
+ * reflectively. When present, {@link Dissector} builds the metadata of the class
+ * from that index, which only requires targeted lookups of the members listed
+ * instead of a scan of all the methods and fields of the class hierarchy.
+ * </p>
+ *
+ * <p>
+ * The processor is not registered as a service, so that it does not run in every
+ * compilation using this library: it must be requested explicitly, with this
+ * library on the annotation processor path, e.g. with javac:
+ * </p>
+ * <pre>
+ *    javac -processorpath base.jar -processor ma.vi.base.reflect.MetadataIndexProcessor ...
+ * </pre>
+ * <p>
+ * or with Gradle:
+ * </p>
+ * <pre>
+ *    dependencies {
+ *      implementation("ma.vi:base:&lt;version&gt;")
+ *      annotationProcessor("ma.vi:base:&lt;version&gt;")
+ *    }
+ *    tasks.withType(JavaCompile).configureEach {
+ *      options.compilerArgs += ["-processor", "ma.vi.base.reflect.MetadataIndexProcessor"]
+ *    }
+ * </pre>
+ * <p>
+ * As <code>-processor</code> disables the discovery of processors, any other
+ * processor used by the compilation must be added to its (comma-separated) list.
+ * </p>
+ *
+ * <p>
+ * The index consists of one line per constructor (<code>c</code> followed by the
+ * comma-separated names of the parameter types) and one line per property
+ * (<code>p</code> followed by the name and type of the property, its getter and
+ * setter method names and the class declaring its field, with <code>-</code> for
+ * an absent member; getters and setters are qualified by the binary name of
+ * their declaring class), preceded by one line per class of the hierarchy of the
+ * class, itself included (<code>s</code> followed by the binary name of the class
+ * and a fingerprint of its members, see {@link MetadataIndex}) against which the
+ * index is validated when loaded. Only
+ * top-level and static nested classes and records are
+ * indexed.
+ * </p>
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+@SupportedAnnotationTypes("ma.vi.base.reflect.Indexed")
+public class MetadataIndexProcessor extends AbstractProcessor {
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+    for (Element element: round.getElementsAnnotatedWith(Indexed.class)) {
+      if (element instanceof TypeElement type) {
+        if ((type.getKind() != ElementKind.CLASS && type.getKind() != ElementKind.RECORD)
+         || (type.getNestingKind() != NestingKind.TOP_LEVEL
+          && (type.getNestingKind() != NestingKind.MEMBER || !type.getModifiers().contains(STATIC)))) {
+          processingEnv.getMessager().printMessage(
+              Diagnostic.Kind.WARNING,
+              "Only top-level and static nested classes and records can be indexed", type);
+        } else {
+          write(type, index(type));
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the lines of the index of the type.
+   */
+  private List<String> index(TypeElement type) {
+    List<String> lines = new ArrayList<>();
+    lines.add("s " + elements().getBinaryName(type) + ' ' + fingerprint(type, true));
+    Map<String, String> supertypes = new TreeMap<>();
+    supertypes(type, supertypes);
+    supertypes.forEach((name, fingerprint) -> lines.add("s " + name + ' ' + fingerprint));
+
+    for (ExecutableElement ctor: constructorsIn(type.getEnclosedElements())) {
+      StringJoiner params = new StringJoiner(",");
+      for (VariableElement param: ctor.getParameters()) {
+        params.add(className(param.asType()));
+      }
+      lines.add("c " + params);
+    }
+
+    Map<String, String> properties = new LinkedHashMap<>();
+    if (type.getKind() == ElementKind.RECORD) {
+      for (RecordComponentElement c: type.getRecordComponents()) {
+        properties.put(c.getSimpleName().toString(),
+                       property(c.getSimpleName(), c.asType(), c.getAccessor(), null, null));
+      }
+    } else {
+      /*
+       * Properties from getters and setters, as inferred by Dissector: getters
+       * are paired with a setter of the same type (and vice versa).
+       */
+      List<ExecutableElement> methods = methodsIn(elements().getAllMembers(type));
+      for (ExecutableElement m: methods) {
+        String name = m.getSimpleName().toString();
+        if (isPropertyMethod(m)
+         && m.getParameters().isEmpty()
+         && (name.startsWith("is") || name.startsWith("get"))) {
+          String property = Property.propertyNameFromMethod(name);
+          if (!properties.containsKey(property)) {
+            TypeMirror propertyType = m.getReturnType();
+            ExecutableElement setter = method(methods, "set" + capFirst(property), propertyType);
+            if (setter != null && setter.getReturnType().getKind() != TypeKind.VOID) {
+              setter = null;
+            }
+            properties.put(property, property(property, propertyType, m, setter, null));
+          }
+        }
+      }
+      for (ExecutableElement m: methods) {
+        String name = m.getSimpleName().toString();
+        if (isPropertyMethod(m)
+         && m.getParameters().size() == 1
+         && name.startsWith("set")) {
+          String property = Property.propertyNameFromMethod(name);
+          if (!properties.containsKey(property)) {
+            TypeMirror propertyType = m.getParameters().get(0).asType();
+            ExecutableElement getter = method(methods, "get" + capFirst(property), null);
+            if (getter == null) {
+              getter = method(methods, "is" + capFirst(property), null);
+            }
+            if (getter != null && !types().isSameType(types().erasure(getter.getReturnType()),
+                                                      types().erasure(propertyType))) {
+              getter = null;
+            }
+            properties.put(property, property(property, propertyType, getter, m, null));
+          }
+        }
+      }
+
+      /*
+       * Properties from the public fields of the class hierarchy, then from
+       * non-public ones, most specific classes first.
+       */
+      for (boolean publicFields: new boolean[]{true, false}) {
+        for (TypeElement cur = type; cur != null; cur = superclass(cur)) {
+          for (VariableElement field: fieldsIn(cur.getEnclosedElements())) {
+            Set<Modifier> mod = field.getModifiers();
+            String property = field.getSimpleName().toString();
+            if (!mod.contains(STATIC)
+             && mod.contains(PUBLIC) == publicFields
+             && !properties.containsKey(property)) {
+              properties.put(property, property(property, field.asType(), null, null, cur));
+            }
+          }
+        }
+      }
+    }
+    lines.addAll(properties.values());
+    return lines;
+  }
+
+  /**
+   * Adds the fingerprints of the supertypes of the type to the map, as computed
+   * from their declared members by {@link MetadataIndex} when the index is loaded.
+   */
+  private void supertypes(TypeElement type, Map<String, String> fingerprints) {
+    List<TypeMirror> supertypes = new ArrayList<>(type.getInterfaces());
+    supertypes.add(type.getSuperclass());
+    for (TypeMirror s: supertypes) {
+      if (s.getKind() == TypeKind.DECLARED) {
+        TypeElement element = (TypeElement)((DeclaredType)s).asElement();
+        String name = elements().getBinaryName(element).toString();
+        if (!MetadataIndex.isPlatform(name) && !fingerprints.containsKey(name)) {
+          fingerprints.put(name, fingerprint(element, false));
+          supertypes(element, fingerprints);
+        }
+      }
+    }
+  }
+
+  /**
+   * The fingerprint of the members of the type from which properties are inferred,
+   * and of its constructors if requested, in hexadecimal, as computed at runtime by
+   * {@link MetadataIndex}.
+   */
+  private String fingerprint(TypeElement type, boolean constructors) {
+    long fingerprint = 0;
+    for (VariableElement f: fieldsIn(type.getEnclosedElements())) {
+      Set<Modifier> mod = f.getModifiers();
+      if (!mod.contains(STATIC)) {
+        fingerprint += MetadataIndex.endHash(MetadataIndex.addType(
+            MetadataIndex.startHash(mod.contains(PUBLIC) ? 'F' : 'f', f.getSimpleName().toString()),
+            className(f.asType())));
+      }
+    }
+    for (ExecutableElement m: methodsIn(type.getEnclosedElements())) {
+      Set<Modifier> mod = m.getModifiers();
+      String name = m.getSimpleName().toString();
+      if (mod.contains(PUBLIC) && !mod.contains(STATIC) && MetadataIndex.isAccessorName(name)) {
+        long hash = MetadataIndex.startHash(mod.contains(ABSTRACT) ? 'a' : 'm', name);
+        for (VariableElement param: m.getParameters()) {
+          hash = MetadataIndex.addType(hash, className(param.asType()));
+        }
+        fingerprint += MetadataIndex.endHash(MetadataIndex.addType(hash, className(m.getReturnType())));
+      }
+    }
+    if (constructors) {
+      for (ExecutableElement c: constructorsIn(type.getEnclosedElements())) {
+        long hash = MetadataIndex.startHash('c', "<init>");
+        for (VariableElement param: c.getParameters()) {
+          hash = MetadataIndex.addType(hash, className(param.asType()));
+        }
+        fingerprint += MetadataIndex.endHash(hash);
+      }
+    }
+    return Long.toHexString(fingerprint);
+  }
+
+  private static boolean isPropertyMethod(ExecutableElement m) {
+    Set<Modifier> mod = m.getModifiers();
+    return mod.contains(PUBLIC) && !mod.contains(STATIC) && !mod.contains(ABSTRACT);
+  }
+
+  /**
+   * Returns the method with the name and, if not null, single parameter of the
+   * type (no parameter otherwise), or null if there is no such method.
+   */
+  private ExecutableElement method(List<ExecutableElement> methods, String name, TypeMirror parameterType) {
+    for (ExecutableElement m: methods) {
+      if (m.getSimpleName().contentEquals(name)) {
+        List<? extends VariableElement> params = m.getParameters();
+        if (parameterType == null ? params.isEmpty()
+                                  : params.size() == 1
+                                 && types().isSameType(types().erasure(params.get(0).asType()),
+                                                       types().erasure(parameterType))) {
+          return m;
+        }
+      }
+    }
+    return null;
+  }
+
+  private String property(CharSequence name,
+                          TypeMirror type,
+                          ExecutableElement getter,
+                          ExecutableElement setter,
+                          TypeElement fieldClass) {
+    return "p " + name
+        + ' ' + className(type)
+        + ' ' + (getter == null ? "-" : qualifiedName(getter))
+        + ' ' + (setter == null ? "-" : qualifiedName(setter))
+        + ' ' + (fieldClass == null ? "-" : elements().getBinaryName(fieldClass));
+  }
+
+  /**
+   * The name of the method qualified by the binary name of its declaring class.
+   */
+  private String qualifiedName(ExecutableElement method) {
+    return elements().getBinaryName((TypeElement)method.getEnclosingElement()) + "." + method.getSimpleName();
+  }
+
+  private TypeElement superclass(TypeElement type) {
+    TypeMirror superclass = type.getSuperclass();
+    return superclass.getKind() == TypeKind.DECLARED
+         ? (TypeElement)((DeclaredType)superclass).asElement()
+         : null;
+  }
+
+  /**
+   * The name of the erasure of the type as returned by {@link Class#getName()}.
+   */
+  private String className(TypeMirror type) {
+    TypeMirror t = types().erasure(type);
+    return switch (t.getKind()) {
+      case ARRAY    -> "[" + descriptor(((ArrayType)t).getComponentType());
+      case DECLARED -> elements().getBinaryName((TypeElement)((DeclaredType)t).asElement()).toString();
+      default       -> t.toString();
+    };
+  }
+
+  private String descriptor(TypeMirror type) {
+    TypeMirror t = types().erasure(type);
+    return switch (t.getKind()) {
+      case BOOLEAN  -> "Z";
+      case BYTE     -> "B";
+      case CHAR     -> "C";
+      case SHORT    -> "S";
+      case INT      -> "I";
+      case LONG     -> "J";
+      case FLOAT    -> "F";
+      case DOUBLE   -> "D";
+      case ARRAY    -> "[" + descriptor(((ArrayType)t).getComponentType());
+      default       -> "L" + className(t) + ";";
+    };
+  }
+
+  private void write(TypeElement type, List<String> lines) {
+    String name = elements().getBinaryName(type).toString();
+    try {
+      FileObject file = processingEnv.getFiler().createResource(
+          StandardLocation.CLASS_OUTPUT, "", MetadataIndex.PATH + name, type);
+      try (Writer out = file.openWriter()) {
+        out.write("# Metadata index of " + name + " generated by " + getClass().getName() + '\n');
+        for (String line: lines) {
+          out.write(line);
+          out.write('\n');
+        }
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(
+          Diagnostic.Kind.ERROR, "Could not write the metadata index of " + name + ": " + e, type);
+    }
+  }
+
+  private Elements elements() {
+    return processingEnv.getElementUtils();
+  }
+
+  private Types types() {
+    return processingEnv.getTypeUtils();
+  }
+}
@@ -4,10 +4,16 @@
 
 package ma.vi.base.reflect;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.Field;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.util.Objects;
+import java.util.function.*;
 
+import static java.lang.invoke.MethodType.methodType;
 import static ma.vi.base.lang.Errors.checkArgument;
 import static ma.vi.base.lang.Errors.unchecked;
 import static ma.vi.base.string.Strings.uncapFirst;
@@ -41,26 +47,160 @@ public class Property {
     return name;
   }
 
+  /**
+   * Returns the value of the property in the object. The property is read through
+   * an accessor compiled on first use into a hidden class which reads the field or
+   * calls the getter through a constant method handle (see {@link Invokers}). Once
+   * optimized by the JIT, the accessor is inlined like a direct field read or getter
+   * call where the call site of this method sees few different properties; call
+   * sites reading many properties dispatch to their accessors through an interface
+   * call.
+   */
   public Object get(Object object) {
-    checkArgument(field != null || getter != null, "This property cannot be read from");
-    return unchecked(() -> field != null ? field.get(object) : getter.invoke(object));
+    try {
+      return ((Function<Object, Object>)getter(OBJECT)).apply(object);
+    } catch (Throwable t) {
+      throw readFailure(t, object);
+    }
   }
 
+  /**
+   * Returns the value of the property, which must be of a type convertible to int
+   * (such as int, short, or Integer), without boxing.
+   */
+  public int getInt(Object object) {
+    try {
+      return ((ToIntFunction<Object>)getter(INT)).applyAsInt(object);
+    } catch (Throwable t) {
+      throw readFailure(t, object);
+    }
+  }
+
+  /**
+   * Returns the value of the property, which must be of a type convertible to long,
+   * without boxing.
+   */
+  public long getLong(Object object) {
+    try {
+      return ((ToLongFunction<Object>)getter(LONG)).applyAsLong(object);
+    } catch (Throwable t) {
+      throw readFailure(t, object);
+    }
+  }
+
+  /**
+   * Returns the value of the property, which must be of a type convertible to double,
+   * without boxing.
+   */
+  public double getDouble(Object object) {
+    try {
+      return ((ToDoubleFunction<Object>)getter(DOUBLE)).applyAsDouble(object);
+    } catch (Throwable t) {
+      throw readFailure(t, object);
+    }
+  }
+
+  /**
+   * Returns the value of the property, which must be a boolean or Boolean, without boxing.
+   */
+  public boolean getBoolean(Object object) {
+    try {
+      return ((Predicate<Object>)getter(BOOLEAN)).test(object);
+    } catch (Throwable t) {
+      throw readFailure(t, object);
+    }
+  }
+
+  /**
+   * Sets the value of the property in the object, through an accessor compiled
+   * on first use, as for {@link #get(Object)}.
+   */
   public void set(Object object, Object value) {
-    checkArgument(field != null || setter != null, "This property cannot be written to");
-    if (field != null) {
-      unchecked(() -> field.set(object, value));
-    } else {
-      unchecked(() -> setter.invoke(object, value));
+    try {
+      ((BiConsumer<Object, Object>)setter(OBJECT)).accept(object, value);
+    } catch (Throwable t) {
+      throw writeFailure(t, object, value);
+    }
+  }
+
+  /**
+   * Sets the property, which must be of a type to which an int can be converted
+   * (such as int, long or Integer), without boxing if it is primitive.
+   */
+  public void setInt(Object object, int value) {
+    try {
+      ((ObjIntConsumer<Object>)setter(INT)).accept(object, value);
+    } catch (Throwable t) {
+      throw writeFailure(t, object);
     }
   }
 
+  /**
+   * Sets the property, which must be of a type to which a long can be converted,
+   * without boxing if it is primitive.
+   */
+  public void setLong(Object object, long value) {
+    try {
+      ((ObjLongConsumer<Object>)setter(LONG)).accept(object, value);
+    } catch (Throwable t) {
+      throw writeFailure(t, object);
+    }
+  }
+
+  /**
+   * Sets the property, which must be of a type to which a double can be converted,
+   * without boxing if it is primitive.
+   */
+  public void setDouble(Object object, double value) {
+    try {
+      ((ObjDoubleConsumer<Object>)setter(DOUBLE)).accept(object, value);
+    } catch (Throwable t) {
+      throw writeFailure(t, object);
+    }
+  }
+
+  /**
+   * Sets the property, which must be a boolean or Boolean, without boxing if it is primitive.
+   */
+  public void setBoolean(Object object, boolean value) {
+    try {
+      ((ObjBooleanConsumer)setter(BOOLEAN)).accept(object, value);
+    } catch (Throwable t) {
+      throw writeFailure(t, object);
+    }
+  }
+
+  /**
+   * Returns a method handle of type (Object)Object reading this property from
+   * an object. The handle is created on first request and cached.
+   */
+  public MethodHandle getterHandle() {
+    MethodHandle handle = getterHandle;
+    if (handle == null) {
+      getterHandle = handle = directGetter().asType(methodType(Object.class, Object.class));
+    }
+    return handle;
+  }
+
+  /**
+   * Returns a method handle of type (Object, Object)void setting this property
+   * on an object (the first argument) to a value (the second argument). The
+   * handle is created on first request and cached.
+   */
+  public MethodHandle setterHandle() {
+    MethodHandle handle = setterHandle;
+    if (handle == null) {
+      setterHandle = handle = directSetter().asType(methodType(void.class, Object.class, Object.class));
+    }
+    return handle;
+  }
+
   public boolean isReadable() {
-    return getter != null;
+    return field != null || getter != null;
   }
 
   public boolean isWritable() {
-    return getter != null;
+    return field != null || setter != null;
   }
 
   public static String propertyNameFromMethod(String methodName) {
@@ -74,6 +214,159 @@ public class Property {
     }
   }
 
+  /**
+   * Returns a new handle reading the property, of type <code>(D)P</code> where
+   * D is the class declaring the field or getter and P the type of the property.
+   */
+  MethodHandle directGetter() {
+    checkArgument(isReadable(), "This property cannot be read from");
+    return unchecked(() -> {
+      if (field != null) {
+        field.trySetAccessible();
+        return MethodHandles.lookup().unreflectGetter(field);
+      } else {
+        getter.trySetAccessible();
+        return MethodHandles.lookup().unreflect(getter);
+      }
+    });
+  }
+
+  /**
+   * Returns a new handle setting the property, of type <code>(D,P)</code> where
+   * D is the class declaring the field or setter and P the type of the property
+   * (the return type of the handle is the return type of the setter, if any).
+   */
+  MethodHandle directSetter() {
+    checkArgument(isWritable(), "This property cannot be written to");
+    return unchecked(() -> {
+      if (field != null) {
+        field.trySetAccessible();
+        return MethodHandles.lookup().unreflectSetter(field);
+      } else {
+        setter.trySetAccessible();
+        return MethodHandles.lookup().unreflect(setter);
+      }
+    });
+  }
+
+  /**
+   * Returns the accessor reading the property as the specified kind of value
+   * (an implementation of the interface of that kind in {@link #GETTERS}),
+   * creating and caching it on first request.
+   */
+  private Object getter(int kind) {
+    Object accessor = getters[kind];
+    if (accessor == null) {
+      MethodHandle raw = directGetter();
+      try {
+        accessor = Invokers.implement(GETTERS[kind], raw);
+      } catch (WrongMethodTypeException e) {
+        throw new IllegalArgumentException("Property " + name + " of type " + type().getName() +
+                                           " cannot be read as " + KINDS[kind].getName());
+      }
+      getters[kind] = accessor;
+    }
+    return accessor;
+  }
+
+  /**
+   * Returns the accessor setting the property to the specified kind of value
+   * (an implementation of the interface of that kind in {@link #SETTERS}),
+   * creating and caching it on first request.
+   */
+  private Object setter(int kind) {
+    Object accessor = setters[kind];
+    if (accessor == null) {
+      MethodHandle raw = directSetter();
+      try {
+        accessor = Invokers.implement(SETTERS[kind], raw);
+      } catch (WrongMethodTypeException e) {
+        throw new IllegalArgumentException("Property " + name + " of type " + type().getName() +
+                                           " cannot be set to a " + KINDS[kind].getName());
+      }
+      setters[kind] = accessor;
+    }
+    return accessor;
+  }
+
+  /**
+   * Sets a boolean property without boxing (there is no such interface in
+   * java.util.function).
+   */
+  interface ObjBooleanConsumer {
+    void accept(Object object, boolean value);
+  }
+
+  /**
+   * Errors raised by the accessors are rethrown as is, other exceptions as unchecked.
+   */
+  private static RuntimeException rethrow(Throwable t) {
+    if (t instanceof Error e) {
+      throw e;
+    }
+    return unchecked(t);
+  }
+
+  /**
+   * Returns the exception to throw for one raised reading the property from the
+   * object, as for {@link #rethrow(Throwable)}, except that a ClassCastException
+   * raised as the object is not an instance of the class declaring the field or
+   * getter is translated to an IllegalArgumentException, as thrown by reflection.
+   */
+  private RuntimeException readFailure(Throwable t, Object object) {
+    return failure(t, object, field != null ? field : getter);
+  }
+
+  /**
+   * Returns the exception to throw for one raised setting the property of the
+   * object, as for {@link #readFailure(Throwable, Object)}.
+   */
+  private RuntimeException writeFailure(Throwable t, Object object) {
+    return failure(t, object, field != null ? field : setter);
+  }
+
+  /**
+   * Returns the exception to throw for one raised setting the property of the
+   * object to the value, as for {@link #writeFailure(Throwable, Object)}, also
+   * translating to an IllegalArgumentException the ClassCastException or
+   * NullPointerException raised when the value cannot be converted to the type
+   * of the property (e.g. null for a primitive property).
+   */
+  private RuntimeException writeFailure(Throwable t, Object object, Object value) {
+    if (t instanceof ClassCastException || t instanceof NullPointerException) {
+      Class<?> type = field != null ? field.getType() : setter.getParameterTypes()[0];
+      if (!convertible(value, type)) {
+        return new IllegalArgumentException("Property " + name + " of type " + type.getName() +
+                                            " cannot be set to " + (value == null ? "null" : "a " +
+                                            value.getClass().getName()), t);
+      }
+    }
+    return writeFailure(t, object);
+  }
+
+  private RuntimeException failure(Throwable t, Object object, Member accessor) {
+    if (t instanceof ClassCastException
+     && object != null && !accessor.getDeclaringClass().isInstance(object)) {
+      return new IllegalArgumentException("Property " + name + " of " + accessor.getDeclaringClass().getName() +
+                                          " cannot be accessed on a " + object.getClass().getName(), t);
+    }
+    return rethrow(t);
+  }
+
+  /**
+   * Returns true if the value can be converted to the type by the accessors, i.e.
+   * cast to it or, for primitive types, unboxed and widened to it. This is only
+   * checked after an accessor has failed, to find the cause of the failure.
+   */
+  private static boolean convertible(Object value, Class<?> type) {
+    try {
+      MethodHandles.identity(Object.class).asType(methodType(type, Object.class)).invoke(value);
+      return true;
+    } catch (Throwable t) {
+      return false;
+    }
+  }
+
   @Override
   public String toString() {
     return name();
@@ -104,4 +397,43 @@ public class Property {
   private final Field field;
   private final Method getter;
   private final Method setter;
+
+  /**
+   * Accessors reading the property, by kind of value read (see {@link #KINDS}),
+   * created on first use. Accessors are immutable and can be safely shared
+   * between threads even if published through a race.
+   */
+  private final Object[] getters = new Object[KINDS.length];
+
+  /**
+   * Accessors setting the property, by kind of value set, created on first use.
+   */
+  private final Object[] setters = new Object[KINDS.length];
+
+  /**
+   * Handles of type (Object)Object and (Object, Object)void reading and setting
+   * the property, created on first request.
+   */
+  private MethodHandle getterHandle;
+  private MethodHandle setterHandle;
+
+  /**
+   * The types of values that properties can be read as or set to, indexed
+   * by the constants below.
+   */
+  private static final Class<?>[] KINDS = {Object.class, int.class, long.class, double.class, boolean.class};
+
+  /**
+   * The interfaces implemented by the accessors reading and setting each kind of value.
+   */
+  private static final Class<?>[] GETTERS = {Function.class, ToIntFunction.class, ToLongFunction.class,
+                                             ToDoubleFunction.class, Predicate.class};
+  private static final Class<?>[] SETTERS = {BiConsumer.class, ObjIntConsumer.class, ObjLongConsumer.class,
+                                             ObjDoubleConsumer.class, ObjBooleanConsumer.class};
+
+  private static final int OBJECT = 0;
+  private static final int INT = 1;
+  private static final int LONG = 2;
+  private static final int DOUBLE = 3;
+  private static final int BOOLEAN = 4;
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.reflect;
+
+import ma.vi.base.lang.NotFoundException;
+
+import java.util.Optional;
+
+import static ma.vi.base.lang.Errors.checkArgument;
+
+/**
+ * <p>
+ * A dot-separated path of properties (e.g. <code>address.city.name</code>),
+ * compiled once by {@link State#compile(Class, String)} and reusable to read
+ * and write the property referenced by the path in any number of objects.
+ * </p>
+ *
+ * <p>
+ * The properties making up the path are resolved when the path is compiled, using
+ * the declared type of each intermediate property. As the value of a property can
+ * be an instance of a subclass of its declared type, each segment also remembers
+ * the class it was last resolved against and is re-resolved only when it is
+ * reached through an object of a different class. Once resolved, reading or
+ * writing through the path does not allocate. Instances are thread-safe.
+ * </p>
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class PropertyPath {
+  PropertyPath(Class<?> cls, String path) {
+    checkArgument(cls != null, "Class cannot be null");
+    checkArgument(path != null && !path.isEmpty(), "Path cannot be empty");
+    this.path = path;
+    this.names = path.split("\\.", -1);
+    this.segments = new Segment[names.length];
+
+    Class<?> type = cls;
+    for (int i = 0; i < names.length; i++) {
+      checkArgument(!names[i].isEmpty(), "Path '" + path + "' has an empty segment");
+      Optional<Property> p = Dissector.property(type, names[i]);
+      if (p.isPresent()) {
+        segments[i] = new Segment(type, p.get());
+        type = p.get().type();
+      } else if (i == 0) {
+        throw new NotFoundException("Property " + names[i] + " could not be found in " + cls);
+      } else {
+        // Not a property of the declared type: resolve from the actual
+        // values when the path is used.
+        break;
+      }
+    }
+  }
+
+  /**
+   * Returns the value of the property referenced by this path in the object,
+   * or null if some intermediate property in the path is null.
+   */
+  public Object get(Object object) {
+    Object value = object;
+    for (int i = 0; i < names.length; i++) {
+      if (value == null) {
+        return null;
+      }
+      value = property(i, value).get(value);
+    }
+    return value;
+  }
+
+  /**
+   * Sets the value of the property referenced by this path in the object.
+   *
+   * @throws NullPointerException if some intermediate property in the path is null.
+   */
+  public void set(Object object, Object value) {
+    Object target = object;
+    int last = names.length - 1;
+    for (int i = 0; i < last; i++) {
+      target = property(i, target).get(target);
+      if (target == null) {
+        throw new NullPointerException("Could not set the value of the property referenced by path " + path +
+            " in " + object + " to " + value + " as some intermediate part" +
+            " of the path is null");
+      }
+    }
+    property(last, target).set(target, value);
+  }
+
+  /**
+   * The path as it was compiled.
+   */
+  public String path() {
+    return path;
+  }
+
+  @Override
+  public String toString() {
+    return path;
+  }
+
+  /**
+   * Returns the property at position i of the path for the object, resolving
+   * (and remembering) it if the object is not of the class that the property
+   * was last resolved against.
+   */
+  private Property property(int i, Object object) {
+    Class<?> cls = object.getClass();
+    Segment segment = segments[i];
+    if (segment != null && segment.cls == cls) {
+      return segment.property;
+    }
+    Property property = Dissector.property(cls, names[i]).orElseThrow(
+        () -> new NotFoundException("Property " + names[i] + " could not be found in " + cls));
+    segments[i] = new Segment(cls, property);
+    return property;
+  }
+
+  /**
+   * A property of the path resolved against a class. Segments are immutable
+   * and can thus be safely replaced in the segments array while it is being
+   * read by other threads.
+   */
+  private record Segment(Class<?> cls, Property property) {}
+
+  /**
+   * The path as it was compiled.
+   */
+  private final String path;
+
+  /**
+   * The names of the properties in the path.
+   */
+  private final String[] names;
+
+  /**
+   * The property at each position of the path, with the class that it was
+   * resolved against, or null if not resolved yet.
+   */
+  private final Segment[] segments;
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.reflect;
+
+import ma.vi.base.util.Convert;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.util.*;
+
+import static java.lang.invoke.MethodType.methodType;
+import static ma.vi.base.lang.Errors.checkArgument;
+import static ma.vi.base.lang.Errors.unchecked;
+import static ma.vi.base.reflect.Classes.wrapperClassOf;
+
+/**
+ * <p>
+ * Utility functions to create and read records without reflection on each call: the
+ * components, accessors and canonical constructor of a record class are resolved
+ * once, into method handles cached with the rest of the metadata of the class
+ * (see {@link Dissector}).
+ * </p>
+ *
+ * <pre>
+ *    record Point(int x, int y) {}
+ *
+ *    Point p = Records.fromMap(Point.class, Map.of("x", 1, "y", 2));
+ *    Map&lt;String, Object&gt; m = Records.toMap(p);          // {x=1, y=2}
+ *    Point q = Records.newInstance(Point.class, 3, 4);
+ * </pre>
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class Records {
+  /**
+   * Returns the names of the components of the record class, in declaration order.
+   */
+  public static List<String> componentNames(Class<? extends Record> cls) {
+    return info(cls).componentNames;
+  }
+
+  /**
+   * Returns a handle of type <code>(Object)Object</code> returning the value of the
+   * named component of a record of the class.
+   *
+   * @throws IllegalArgumentException if the record has no such component.
+   */
+  public static MethodHandle accessor(Class<? extends Record> cls, String component) {
+    Info info = info(cls);
+    return info.accessors[info.index(component)];
+  }
+
+  /**
+   * Returns a handle of type <code>(Object[])Object</code> creating a record of
+   * the class through its canonical constructor, from the values of its components
+   * in declaration order.
+   */
+  public static MethodHandle canonicalConstructor(Class<? extends Record> cls) {
+    return info(cls).constructor;
+  }
+
+  /**
+   * Creates a record of the class from the values of its components, in declaration
+   * order.
+   */
+  public static <R extends Record> R newInstance(Class<R> cls, Object... values) {
+    Info info = info(cls);
+    checkArgument(values.length == info.types.length,
+                  cls + " has " + info.types.length + " components but " + values.length + " values were supplied");
+    return (R)info.create(values);
+  }
+
+  /**
+   * Creates a record of the class from the values of its components in the map, keyed
+   * by component name. Missing (or null) values are set to null, or to the default
+   * value (zero or false) of primitive components. Values which are not of the type
+   * of their component are converted with {@link Convert#convert(Object, Class)}.
+   */
+  public static <R extends Record> R fromMap(Class<R> cls, Map<String, ?> values) {
+    checkArgument(values != null, "Values must not be null");
+    Info info = info(cls);
+    Object[] args = new Object[info.types.length];
+    for (int i = 0; i < args.length; i++) {
+      Object value = values.get(info.names[i]);
+      if (value == null) {
+        value = info.defaults[i];
+      } else if (!info.boxedTypes[i].isInstance(value)) {
+        value = Convert.convert(value, info.boxedTypes[i]);
+      }
+      args[i] = value;
+    }
+    return (R)info.create(args);
+  }
+
+  /**
+   * Returns the values of the components of the record keyed by component name,
+   * in declaration order.
+   */
+  public static Map<String, Object> toMap(Record record) {
+    checkArgument(record != null, "Record must not be null");
+    Info info = info(record.getClass());
+    Map<String, Object> map = new LinkedHashMap<>();
+    for (int i = 0; i < info.names.length; i++) {
+      map.put(info.names[i], info.get(i, record));
+    }
+    return map;
+  }
+
+  private static Info info(Class<?> cls) {
+    checkArgument(cls != null && cls.isRecord(), cls + " is not a record class");
+    return Dissector.info(cls).record();
+  }
+
+  private Records() {}
+
+  /**
+   * The components of a record class with handles to their accessors and to the
+   * canonical constructor of the class.
+   */
+  static final class Info {
+    Info(Class<?> cls) {
+      RecordComponent[] components = cls.getRecordComponents();
+      int n = components.length;
+      names = new String[n];
+      types = new Class<?>[n];
+      boxedTypes = new Class<?>[n];
+      defaults = new Object[n];
+      accessors = new MethodHandle[n];
+      indices = new HashMap<>();
+
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      for (int i = 0; i < n; i++) {
+        RecordComponent c = components[i];
+        names[i] = c.getName();
+        types[i] = c.getType();
+        boxedTypes[i] = wrapperClassOf(c.getType());
+        defaults[i] = c.getType().isPrimitive() ? Array.get(Array.newInstance(c.getType(), 1), 0) : null;
+        indices.put(c.getName(), i);
+
+        c.getAccessor().trySetAccessible();
+        MethodHandle accessor = unchecked(() -> lookup.unreflect(c.getAccessor()));
+        accessors[i] = accessor.asType(methodType(Object.class, Object.class));
+      }
+      componentNames = List.of(names);
+
+      Constructor<?> ctor = unchecked(() -> cls.getDeclaredConstructor(types));
+      ctor.trySetAccessible();
+      MethodHandle handle = unchecked(() -> lookup.unreflectConstructor(ctor));
+      constructor = handle.asType(handle.type().changeReturnType(Object.class))
+                          .asSpreader(Object[].class, n);
+    }
+
+    int index(String component) {
+      Integer i = indices.get(component);
+      checkArgument(i != null, "No component named " + component);
+      return i;
+    }
+
+    Object create(Object[] values) {
+      try {
+        return (Object)constructor.invokeExact(values);
+      } catch (Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw unchecked(t);
+      }
+    }
+
+    Object get(int component, Object record) {
+      try {
+        return (Object)accessors[component].invokeExact(record);
+      } catch (Error e) {
+        throw e;
+      } catch (Throwable t) {
+        throw unchecked(t);
+      }
+    }
+
+    /**
+     * The names of the components in declaration order.
+     */
+    final String[] names;
+    final List<String> componentNames;
+
+    /**
+     * The types of the components and their wrapper types for primitive components.
+     */
+    final Class<?>[] types;
+    final Class<?>[] boxedTypes;
+
+    /**
+     * The default values of the components when missing (zero for primitives).
+     */
+    final Object[] defaults;
+
+    /**
+     * Handles of type (Object)Object to the accessor of each component.
+     */
+    final MethodHandle[] accessors;
+
+    /**
+     * Handle of type (Object[])Object to the canonical constructor.
+     */
+    final MethodHandle constructor;
+
+    /**
+     * The position of each component by name.
+     */
+    private final Map<String, Integer> indices;
+  }
+}
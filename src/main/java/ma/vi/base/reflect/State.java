@@ -4,10 +4,8 @@
 
 package ma.vi.base.reflect;
 
-import ma.vi.base.lang.NotFoundException;
-import ma.vi.base.tuple.T2;
-
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Reflectively read and write an object state.
@@ -15,42 +13,51 @@ import java.util.Optional;
  * @author Vikash Madhow (vikash.madhow@gmail.com)
  */
 public class State {
+  /**
+   * Returns the value of the property referenced by the dot-separated path in
+   * the object, or null if some intermediate property in the path is null.
+   */
   public static Object get(Object object, String path) {
-    T2<Object, Property> p = property(object, path);
-    return p == null ? null : p.b.get(p.a);
+    return compile(object.getClass(), path).get(object);
   }
 
+  /**
+   * Sets the value of the property referenced by the dot-separated path in the
+   * object, throwing a {@link NullPointerException} if some intermediate property
+   * in the path is null.
+   */
   public static void set(Object object, String path, Object value) {
-    T2<Object, Property> p = property(object, path);
-    if (p == null) {
-      throw new NullPointerException("Could not set the value of the property referenced by path " + path +
-          " in " + object + " to " + value + " as some intermediate part" +
-          " of the path is null");
-    } else {
-      p.b.set(p.a, value);
-    }
+    compile(object.getClass(), path).set(object, value);
   }
 
-  private static T2<Object, Property> property(Object object, String path) {
-    int pos = path.indexOf('.');
-    String member = pos == -1 ? path : path.substring(0, pos);
-    String rest = pos == -1 ? null : path.substring(pos + 1);
-
-    Class<?> cls = object.getClass();
-    Optional<Property> p = Dissector.property(cls, member);
-    if (p.isPresent()) {
-      Property property = p.get();
-      if (rest == null) {
-        return T2.of(object, property);
-      } else {
-        Object value = property.get(object);
-        if (value == null) {
-          return null;
-        } else {
-          return property(value, rest);
-        }
+  /**
+   * Returns the compiled form of the dot-separated property path for objects of
+   * the class, which can be reused to read and write the referenced property
+   * without resolving the path again. Compiled paths are cached per class.
+   *
+   * @throws ma.vi.base.lang.NotFoundException if the first property in the path
+   *         is not a property of the class.
+   */
+  public static PropertyPath compile(Class<?> cls, String path) {
+    Map<String, PropertyPath> paths = compiledPaths.get(cls);
+    PropertyPath compiled = paths.get(path);
+    if (compiled == null) {
+      compiled = new PropertyPath(cls, path);
+      PropertyPath existing = paths.putIfAbsent(path, compiled);
+      if (existing != null) {
+        compiled = existing;
       }
     }
-    throw new NotFoundException("Property " + member + " could not be found in " + cls);
+    return compiled;
   }
-}
\ No newline at end of file
+
+  /**
+   * The compiled paths for each class, keyed by their text.
+   */
+  private static final ClassValue<Map<String, PropertyPath>> compiledPaths = new ClassValue<>() {
+    @Override
+    protected Map<String, PropertyPath> computeValue(Class<?> type) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+}
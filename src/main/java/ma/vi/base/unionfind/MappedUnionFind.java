@@ -0,0 +1,392 @@
+package ma.vi.base.unionfind;
+
+import ma.vi.base.io.NoMoreSpaceException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static ma.vi.base.lang.Errors.checkArgument;
+import static ma.vi.base.lang.UnsafeLoader.unsafe;
+
+/**
+ * A persistent union-find structure over long elements (e.g. record ids) whose
+ * state is kept in memory-mapped files instead of the heap, so that graphs with
+ * billions of elements can be processed on a single node with the OS page cache
+ * holding the working set.
+ * <p>
+ * Three files are kept in the directory supplied on creation:
+ * <ul>
+ *   <li><b>keys</b>: a header followed by an open-addressing hash table mapping
+ *       each element to its slot. This is the dictionary from elements to the
+ *       dense indices used in the other two files;</li>
+ *   <li><b>parents</b>: the parent slot of each slot (stored as slot + 1 so that
+ *       the zero-filled content of a new file means that the slot is free);</li>
+ *   <li><b>ranks</b>: the rank (one byte) of each slot, used for union-by-rank.</li>
+ * </ul>
+ * The capacity (maximum number of elements) is fixed on creation. Opening a
+ * directory containing the files of a previous structure, with the same capacity,
+ * continues from where that structure was left: as all changes, including the
+ * counts of elements and components in the header, are made to the mapped files,
+ * they are kept by the OS if the process dies without closing the structure;
+ * {@link #flush()} forces them to the storage device.
+ * <p>
+ * All public methods are synchronized as mapped buffers do not support atomic
+ * updates; {@link UnionFind} should be used for concurrent in-memory processing.
+ * Once closed, the files are unmapped and all operations, except {@link #close()}
+ * and {@link #capacity()}, throw an {@link IllegalStateException}.
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class MappedUnionFind implements AutoCloseable {
+  /**
+   * Opens (or creates if it does not exist) the structure in the specified
+   * directory with space for the specified number of elements.
+   *
+   * @throws IllegalArgumentException if the directory contains a structure
+   *         created with a different capacity.
+   */
+  public MappedUnionFind(File directory, long capacity) {
+    checkArgument(directory != null, "Directory cannot be null");
+    checkArgument(capacity > 0, "Capacity must be positive");
+    this.capacity = capacity;
+    this.tableSize = Long.highestOneBit(Math.max(16, capacity + capacity / 3) - 1) << 1;
+    this.mask = tableSize - 1;
+    try {
+      if (!directory.exists() && !directory.mkdirs()) {
+        throw new IOException("Could not create directory " + directory);
+      }
+      keysFile    = new RandomAccessFile(new File(directory, "keys"),    "rw");
+      parentsFile = new RandomAccessFile(new File(directory, "parents"), "rw");
+      ranksFile   = new RandomAccessFile(new File(directory, "ranks"),   "rw");
+
+      boolean existing = keysFile.length() > 0;
+      header = keysFile.getChannel().map(READ_WRITE, 0, HEADER_SIZE * Long.BYTES);
+      if (existing) {
+        // checked before mapping the rest, which would extend the files to the wrong size
+        checkArgument(header.getLong(CAPACITY) == capacity, "The union-find structure in " + directory +
+            " was created with a different capacity (" + header.getLong(CAPACITY) + ')');
+        checkArgument(header.getLong(TABLE_SIZE) == tableSize, "The union-find structure in " + directory +
+            " has an invalid table size (" + header.getLong(TABLE_SIZE) + ')');
+        elementCount = header.getLong(ELEMENT_COUNT);
+        componentCount = header.getLong(COMPONENT_COUNT);
+      } else {
+        header.putLong(TABLE_SIZE, tableSize);
+        header.putLong(CAPACITY, capacity);
+      }
+      keys    = new Longs(keysFile.getChannel(), HEADER_SIZE * Long.BYTES, tableSize);
+      parents = new Longs(parentsFile.getChannel(), 0, tableSize);
+      ranks   = new Bytes(ranksFile.getChannel(), tableSize);
+    } catch (IOException e) {
+      throw new RuntimeException("Could not open union-find structure in " + directory, e);
+    }
+  }
+
+  /**
+   * Returns the representative of the component that the given element
+   * belongs to. If this is the first time that this element is seen, it
+   * is added into a new component which contains only itself. Path-halving
+   * is performed on every call to reduce the depth of the union-find tree.
+   */
+  public synchronized long find(long element) {
+    checkOpen();
+    return keys.get(root(slot(element)));
+  }
+
+  /**
+   * Put the two elements in the same component returning the representative
+   * of the merged component. Components are linked by rank.
+   */
+  public synchronized long union(long element1, long element2) {
+    checkOpen();
+    long root1 = root(slot(element1));
+    long root2 = root(slot(element2));
+    if (root1 != root2) {
+      byte rank1 = ranks.get(root1);
+      byte rank2 = ranks.get(root2);
+      if (rank1 > rank2) {
+        long t = root1;
+        root1 = root2;
+        root2 = t;
+      } else if (rank1 == rank2) {
+        ranks.put(root2, (byte)(rank2 + 1));
+      }
+      parents.put(root1, root2 + 1);
+      header.putLong(COMPONENT_COUNT, --componentCount);
+    }
+    return keys.get(root2);
+  }
+
+  /**
+   * Returns true if the element has been added to this structure.
+   */
+  public synchronized boolean contains(long element) {
+    checkOpen();
+    long s = hash(element);
+    for (; parents.get(s) != 0; s = (s + 1) & mask) {
+      if (keys.get(s) == element) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The number of elements added to this structure.
+   */
+  public synchronized long elementCount() {
+    checkOpen();
+    return elementCount;
+  }
+
+  /**
+   * The number of components in this structure.
+   */
+  public synchronized long componentCount() {
+    checkOpen();
+    return componentCount;
+  }
+
+  /**
+   * The maximum number of elements that this structure can hold.
+   */
+  public long capacity() {
+    return capacity;
+  }
+
+  /**
+   * Forces all changes to the files to the storage device.
+   */
+  public synchronized void flush() {
+    checkOpen();
+    header.force();
+    keys.force();
+    parents.force();
+    ranks.force();
+  }
+
+  /**
+   * Flushes and closes the files of this structure. The structure
+   * cannot be used once closed; closing it again has no effect.
+   */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    flush();
+    // no access to the unmapped buffers must be possible from here on
+    closed = true;
+    unmap(header);
+    keys.unmap();
+    parents.unmap();
+    ranks.unmap();
+    try {
+      keysFile.close();
+      parentsFile.close();
+      ranksFile.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("Union-find structure has been closed");
+    }
+  }
+
+  /**
+   * Returns the slot of the element in the hash table, adding the element
+   * as a new single-element component if not already present.
+   */
+  private long slot(long element) {
+    long s = hash(element);
+    while (true) {
+      long parent = parents.get(s);
+      if (parent == 0) {
+        if (elementCount >= capacity) {
+          throw new NoMoreSpaceException("Union-find structure is full (capacity is " + capacity + ')');
+        }
+        keys.put(s, element);
+        parents.put(s, s + 1);
+        header.putLong(ELEMENT_COUNT, ++elementCount);
+        header.putLong(COMPONENT_COUNT, ++componentCount);
+        return s;
+
+      } else if (keys.get(s) == element) {
+        return s;
+      }
+      s = (s + 1) & mask;
+    }
+  }
+
+  /**
+   * Finds the root slot of the tree containing the slot, halving the path
+   * along the way (every slot on the path is made to point to its grand-parent).
+   */
+  private long root(long s) {
+    while (true) {
+      long parent = parents.get(s) - 1;
+      if (parent == s) {
+        return s;
+      }
+      long grandParent = parents.get(parent) - 1;
+      parents.put(s, grandParent + 1);
+      s = grandParent;
+    }
+  }
+
+  /**
+   * The starting slot of an element in the hash table.
+   */
+  private long hash(long element) {
+    long z = element * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return (z ^ (z >>> 31)) & mask;
+  }
+
+  private static void unmap(MappedByteBuffer buffer) {
+    unsafe().invokeCleaner(buffer);
+  }
+
+  /**
+   * An array of longs mapped to a file as a sequence of segments, as a single
+   * mapping cannot be larger than 2GB.
+   */
+  private static class Longs {
+    Longs(FileChannel channel, long offset, long length) throws IOException {
+      int count = (int)((length + SEGMENT_LONGS - 1) >>> SEGMENT_SHIFT);
+      mapped = new MappedByteBuffer[count];
+      segments = new LongBuffer[count];
+      for (int i = 0; i < count; i++) {
+        long start = (long)i << SEGMENT_SHIFT;
+        long size = Math.min(SEGMENT_LONGS, length - start);
+        mapped[i] = channel.map(READ_WRITE, offset + start * Long.BYTES, size * Long.BYTES);
+        segments[i] = mapped[i].asLongBuffer();
+      }
+    }
+
+    long get(long i) {
+      return segments[(int)(i >>> SEGMENT_SHIFT)].get((int)(i & SEGMENT_MASK));
+    }
+
+    void put(long i, long value) {
+      segments[(int)(i >>> SEGMENT_SHIFT)].put((int)(i & SEGMENT_MASK), value);
+    }
+
+    void force() {
+      for (MappedByteBuffer m: mapped) m.force();
+    }
+
+    void unmap() {
+      for (MappedByteBuffer m: mapped) MappedUnionFind.unmap(m);
+    }
+
+    private final MappedByteBuffer[] mapped;
+    private final LongBuffer[] segments;
+
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_LONGS = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_LONGS - 1;
+  }
+
+  /**
+   * An array of bytes mapped to a file as a sequence of segments.
+   */
+  private static class Bytes {
+    Bytes(FileChannel channel, long length) throws IOException {
+      int count = (int)((length + SEGMENT_BYTES - 1) >>> SEGMENT_SHIFT);
+      segments = new MappedByteBuffer[count];
+      for (int i = 0; i < count; i++) {
+        long start = (long)i << SEGMENT_SHIFT;
+        segments[i] = channel.map(READ_WRITE, start, Math.min(SEGMENT_BYTES, length - start));
+      }
+    }
+
+    byte get(long i) {
+      return segments[(int)(i >>> SEGMENT_SHIFT)].get((int)(i & SEGMENT_MASK));
+    }
+
+    void put(long i, byte value) {
+      segments[(int)(i >>> SEGMENT_SHIFT)].put((int)(i & SEGMENT_MASK), value);
+    }
+
+    void force() {
+      for (MappedByteBuffer m: segments) m.force();
+    }
+
+    void unmap() {
+      for (MappedByteBuffer m: segments) MappedUnionFind.unmap(m);
+    }
+
+    private final MappedByteBuffer[] segments;
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_BYTES = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_BYTES - 1;
+  }
+
+  /**
+   * The maximum number of elements in this structure.
+   */
+  private final long capacity;
+
+  /**
+   * The number of slots in the hash table (a power of 2 keeping
+   * the load factor at or below 0.75 at full capacity).
+   */
+  private final long tableSize;
+
+  /**
+   * Mask to reduce hashes to slots in the table.
+   */
+  private final long mask;
+
+  /**
+   * Number of elements added, also kept in the header.
+   */
+  private long elementCount;
+
+  /**
+   * Current number of components, also kept in the header.
+   */
+  private long componentCount;
+
+  /**
+   * Set when closed, after which the mapped buffers must not be accessed
+   * (reading or writing unmapped memory crashes the JVM). Guarded by the
+   * lock of this structure, like all other state.
+   */
+  private boolean closed;
+
+  private final RandomAccessFile keysFile;
+  private final RandomAccessFile parentsFile;
+  private final RandomAccessFile ranksFile;
+
+  /**
+   * Header of the keys file holding the table size, the capacity, the element
+   * count and the component count, at the offsets below. The counts are written
+   * on every change.
+   */
+  private final MappedByteBuffer header;
+
+  private final Longs keys;
+  private final Longs parents;
+  private final Bytes ranks;
+
+  /**
+   * Number of longs in the header of the keys file.
+   */
+  private static final int HEADER_SIZE = 4;
+
+  private static final int TABLE_SIZE = 0;
+  private static final int CAPACITY = Long.BYTES;
+  private static final int ELEMENT_COUNT = 2 * Long.BYTES;
+  private static final int COMPONENT_COUNT = 3 * Long.BYTES;
+}
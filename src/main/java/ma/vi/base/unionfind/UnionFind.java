@@ -1,44 +1,65 @@
 package ma.vi.base.unionfind;
 
-import java.util.HashSet;
+import ma.vi.base.tuple.T2;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toSet;
+import static ma.vi.base.lang.Errors.checkArgument;
 
 /**
  * Union-find structure to hold and find information on connected components
  * in amortized constant time.
+ * <p>
+ * This structure is lock-free and can be safely shared between threads, e.g.
+ * to process the edges of a graph in parallel on a {@link java.util.concurrent.ForkJoinPool}.
+ * Each element is a node in a forest whose parent link is only ever changed
+ * through compare-and-set. Roots are linked using randomized linking (the root
+ * with the lower random priority is always linked under the other one) which
+ * keeps the trees shallow in expectation without having to maintain ranks, while
+ * finds perform path-halving to further reduce the depth of the trees.
+ * <p>
+ * The number of components and the size of each component are maintained
+ * incrementally and can be queried in constant time. Binding elements to
+ * components (through {@link #add(Object, Object)}) can be turned off when
+ * only the counts and representatives of the components are needed, in which
+ * case no per-component set is kept.
  *
  * @author Vikash Madhow (vikash.madhow@gmail.com)
  */
 public class UnionFind<T, E> {
+  /**
+   * Creates a union-find structure which keeps the elements bound to each component.
+   */
+  public UnionFind() {
+    this(true);
+  }
+
+  /**
+   * Creates a union-find structure, keeping the elements bound to each component
+   * only if trackElements is true. When false, {@link #add(Object, Object)} and
+   * {@link #elements(Object)} are not supported.
+   */
+  public UnionFind(boolean trackElements) {
+    this.trackElements = trackElements;
+  }
+
   /**
    * Returns the connected component that the given element belongs to.
    * If this is the first time that this element is seen it is added into
    * a new component which contains only itself. This function also performs
-   * single-pass path-compression every time it is called to reduce the depth
-   * of the union-find tree.
+   * single-pass path-compression (path-halving) every time it is called to
+   * reduce the depth of the union-find tree.
    */
   public T find(T element) {
-    if (!components.containsKey(element)) {
-      /*
-       * A new element is treated as part of its own component
-       * and added to the components map.
-       */
-      components.put(element, element);
-      elements.put(element, new HashSet<>());
-      return element;
-
-    } else if (components.get(element).equals(element)) {
-      return element;
-
-    } else {
-      /*
-       * path compression: a -> b -> c becomes a -> c
-       */
-      components.put(element, components.get(components.get(element)));
-      return find(components.get(element));
-    }
+    return root(node(element)).element;
   }
 
   /**
@@ -47,44 +68,284 @@ public class UnionFind<T, E> {
    * merged all the elements bound to them are also merged.
    */
   public T union(T element1, T element2) {
-    T component1 = find(element1);
-    T component2 = find(element2);
-    if (!component1.equals(component2)) {
-      components.put(component1, component2);
+    Node<T, E> node1 = node(element1);
+    Node<T, E> node2 = node(element2);
+    while (true) {
+      Node<T, E> root1 = root(node1);
+      Node<T, E> root2 = root(node2);
+      if (root1 == root2) {
+        return root1.element;
+      }
 
       /*
-       * Move all elements bound to component1 to component2
-       * as the latter is the new root.
+       * Randomized linking: the root with the lower priority
+       * becomes a child of the root with the higher priority.
        */
-      elements.get(component2).addAll(elements.get(component1));
-      elements.remove(component1);
+      Node<T, E> child  = root1.priority < root2.priority ? root1 : root2;
+      Node<T, E> parent = child == root1 ? root2 : root1;
+      if (PARENT.compareAndSet(child, child, parent)) {
+        componentCount.decrementAndGet();
+        moveSize(child, parent);
+        if (trackElements) {
+          moveElements(child, parent);
+        }
+        return parent.element;
+      }
+      // another thread linked one of the roots first: retry with the new roots
     }
-    return component2;
+  }
+
+  /**
+   * Puts elements1[i] and elements2[i] in the same component, for all i. The
+   * pairs are processed in parallel as the structure supports concurrent unions.
+   */
+  public void unionAll(T[] elements1, T[] elements2) {
+    checkArgument(elements1.length == elements2.length,
+                  "Both arrays of elements must have the same length");
+    IntStream.range(0, elements1.length)
+             .parallel()
+             .forEach(i -> union(elements1[i], elements2[i]));
+  }
+
+  /**
+   * Puts the two elements of each pair in the stream in the same component. The
+   * stream is processed in parallel if it is a parallel stream.
+   */
+  public void unionAll(Stream<T2<T, T>> pairs) {
+    pairs.forEach(p -> union(p.a, p.b));
+  }
+
+  /**
+   * Returns the number of components in this structure in constant time.
+   */
+  public long componentCount() {
+    return componentCount.get();
+  }
+
+  /**
+   * Returns the number of elements in the component of the given element in
+   * constant time. While unions are being performed concurrently, the returned
+   * size may not reflect the latest unions yet.
+   */
+  public long componentSize(T element) {
+    return root(node(element)).size;
   }
 
   /**
    * Adds the item to the root component of the given element.
    */
   public void add(T element, E item) {
-    T root = find(element);
-    elements.get(root).add(item);
+    checkElementsTracked();
+    Node<T, E> node = node(element);
+    while (true) {
+      Node<T, E> root = root(node);
+      Set<E> items = root.elements;
+      if (items != null) {
+        items.add(item);
+        if (root.parent == root) {
+          /*
+           * The root was not linked under another one while the item was
+           * being added: when it will be, the item will be moved with the
+           * rest of the elements bound to it.
+           */
+          return;
+        }
+      }
+      // the root was merged into another component: add to the new root
+    }
   }
 
   /**
    * Returns all the elements previously added to the component.
    */
   public Set<E> elements(T component) {
-    return elements.get(find(component));
+    checkElementsTracked();
+    Node<T, E> root = root(node(component));
+    Set<E> items = root.elements;
+    return items != null ? items : elements(root.parent.element);
   }
 
   /**
-   * Return the set of all components added to this structure.
+   * Return a snapshot of the set of all components added to this structure.
+   * The snapshot is computed in parallel over all the elements seen so far.
    */
   public Set<T> components() {
-    return elements.keySet();
+    return nodes.values()
+                .parallelStream()
+                .filter(n -> n.parent == n)
+                .map(n -> n.element)
+                .collect(toSet());
   }
 
-  private final Map<T, T> components = new ConcurrentHashMap<>();
+  /**
+   * Returns the node for the element, creating a new single-element
+   * component for it if the element has not been seen before.
+   */
+  private Node<T, E> node(T element) {
+    Node<T, E> node = nodes.get(element);
+    return node != null ? node : nodes.computeIfAbsent(element, e -> {
+      componentCount.incrementAndGet();
+      return new Node<>(e, nextPriority(), trackElements);
+    });
+  }
+
+  private void checkElementsTracked() {
+    if (!trackElements) {
+      throw new UnsupportedOperationException("Elements are not tracked in this union-find structure");
+    }
+  }
+
+  /**
+   * Finds the root of the tree containing the node, halving the path from
+   * the node to the root along the way (every node on the path is made to
+   * point to its grand-parent).
+   */
+  private static <T, E> Node<T, E> root(Node<T, E> node) {
+    while (true) {
+      Node<T, E> parent = node.parent;
+      if (parent == node) {
+        return node;
+      }
+      Node<T, E> grandParent = parent.parent;
+      if (parent != grandParent) {
+        /*
+         * The grand-parent is always an ancestor of node, so failing this
+         * CAS only means that another thread has already shortened the path.
+         */
+        PARENT.compareAndSet(node, parent, grandParent);
+      }
+      node = grandParent;
+    }
+  }
 
-  private final Map<T, Set<E>> elements = new ConcurrentHashMap<>();
-}
\ No newline at end of file
+  /**
+   * Adds the size of the child component to the parent component to which
+   * it has just been linked. Sizes are moved up with an atomic get-and-set
+   * so that a size added to a node which is concurrently linked under another
+   * one is moved exactly once, either by the linker or by the adder.
+   */
+  private static <T, E> void moveSize(Node<T, E> child, Node<T, E> parent) {
+    long size = (long)SIZE.getAndSet(child, 0L);
+    while (size != 0) {
+      SIZE.getAndAdd(parent, size);
+      if (parent.parent == parent) {
+        break;
+      }
+      size = (long)SIZE.getAndSet(parent, 0L);
+      parent = root(parent);
+    }
+  }
+
+  /**
+   * Move all elements bound to the child component to the parent component
+   * to which it has just been linked. If the parent is, in turn, linked under
+   * another component concurrently, the elements are moved up to the new root.
+   */
+  private static <T, E> void moveElements(Node<T, E> child, Node<T, E> parent) {
+    Set<E> moving = child.elements;
+    while (true) {
+      Set<E> target = parent.elements;
+      if (target != null) {
+        target.addAll(moving);
+      }
+      Node<T, E> root = root(parent);
+      if (root == parent) {
+        break;
+      }
+      parent = root;
+    }
+    child.elements = null;
+  }
+
+  /**
+   * Returns a new unique priority for a node. The priorities are distinct
+   * (the mixing function is a bijection) but appear random, which is
+   * what randomized linking needs.
+   */
+  private long nextPriority() {
+    long z = sequence.getAndIncrement() * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * A node in the union-find forest.
+   */
+  private static class Node<T, E> {
+    Node(T element, long priority, boolean trackElements) {
+      this.element = element;
+      this.priority = priority;
+      this.parent = this;
+      this.elements = trackElements ? ConcurrentHashMap.newKeySet() : null;
+    }
+
+    /**
+     * The element that this node is for.
+     */
+    final T element;
+
+    /**
+     * The random priority used for linking roots.
+     */
+    final long priority;
+
+    /**
+     * The parent of this node; a node is a root when it is its own parent.
+     * Only changed through {@link #PARENT}.
+     */
+    volatile Node<T, E> parent;
+
+    /**
+     * The number of elements in the component while this node is a root.
+     * Only changed through {@link #SIZE}.
+     */
+    volatile long size = 1;
+
+    /**
+     * The elements bound to this node while it is a root; set to null once
+     * the node has been linked under another root and its elements moved.
+     */
+    volatile Set<E> elements;
+  }
+
+  /**
+   * Nodes for all elements seen by this structure.
+   */
+  private final Map<T, Node<T, E>> nodes = new ConcurrentHashMap<>();
+
+  /**
+   * Whether the elements bound to each component are kept.
+   */
+  private final boolean trackElements;
+
+  /**
+   * The current number of components.
+   */
+  private final AtomicLong componentCount = new AtomicLong();
+
+  /**
+   * Sequence from which the node priorities are derived.
+   */
+  private final AtomicLong sequence = new AtomicLong();
+
+  /**
+   * Handle for compare-and-set of the parent link of nodes.
+   */
+  private static final VarHandle PARENT;
+
+  /**
+   * Handle for atomic updates of the size of nodes.
+   */
+  private static final VarHandle SIZE;
+
+  static {
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      PARENT = lookup.findVarHandle(Node.class, "parent", Node.class);
+      SIZE = lookup.findVarHandle(Node.class, "size", long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+}
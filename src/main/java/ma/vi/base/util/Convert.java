@@ -5,20 +5,16 @@
 package ma.vi.base.util;
 
 import ma.vi.base.string.Escape;
-import ma.vi.base.tuple.T2;
 
 import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.text.Format;
 import java.text.SimpleDateFormat;
 import java.time.*;
-import java.time.format.DateTimeFormatter;
-import java.util.Date;
 import java.util.UUID;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static java.lang.Integer.parseInt;
+import static ma.vi.base.reflect.Classes.instanceFactory;
 
 /**
  * Utilities for converting values for one type to another.
@@ -76,81 +72,66 @@ public class Convert {
         return null;
 
       } else if (Number.class.isAssignableFrom(type)) {
+        int end = text.length();
         if (Numbers.isIntegral(type)) {
           /*
-           * Remove fractional part which will be ignored.
+           * Ignore the fractional part.
            */
           int pos = text.indexOf('.');
           if (pos != -1) {
-            text = text.substring(0, pos);
-            if (text.length() == 0) {
+            end = pos;
+            if (end == 0) {
               text = "0";
+              end = 1;
             }
           }
         }
-        return type.getConstructor(String.class).newInstance(text);
+        if      (type == Integer.class) { return Numbers.parseInt   (text, 0, end); }
+        else if (type == Long   .class) { return Numbers.parseLong  (text, 0, end); }
+        else if (type == Double .class) { return Numbers.parseDouble(text, 0, end); }
+        else if (type == Short  .class) { return Numbers.parseShort (text, 0, end); }
+        else if (type == Byte   .class) { return Numbers.parseByte  (text, 0, end); }
+        else if (type == Float  .class) { return Numbers.parseFloat (text, 0, end); }
+        else {
+          String number = end == text.length() ? text : text.substring(0, end);
+          return (Object)instanceFactory(type, String.class).invokeExact(number);
+        }
       }
-      else if (Boolean  .class.isAssignableFrom(type)) { return type.getConstructor(String.class).newInstance(text); }
+      else if (Boolean  .class.isAssignableFrom(type)) { return parseBoolean(text, 0, text.length()); }
       else if (String   .class.isAssignableFrom(type)) { return text; }
       else if (Character.class.isAssignableFrom(type)) { return text.charAt(0); }
       else if (LocalDate.class.isAssignableFrom(type)) { return convertDate(text); }
       else if (UUID     .class.isAssignableFrom(type)) { return UUID.fromString(text); }
-    } catch (Exception e) {
-      throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new RuntimeException(e);
     }
     throw new RuntimeException(type + " is not supported");
   }
 
+  /**
+   * Parses the characters from start (inclusive) to end (exclusive) of the text as
+   * a boolean, as by {@link Boolean#parseBoolean(String)}: true if they are equal,
+   * ignoring case, to "true", false otherwise.
+   */
+  public static boolean parseBoolean(CharSequence text, int start, int end) {
+    if (end - start != 4) {
+      return false;
+    }
+    for (int i = 0; i < 4; i++) {
+      if (Character.toLowerCase(text.charAt(start + i)) != "true".charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Converts text value to the specified Esql type.
    */
   public static Object toType(Object value, String type) {
-    if (type == null
-     || value == null
-     || type.equals("variable")) {
-      return value;
-
-    } else if (type.equals("date")) {
-      return value instanceof Number n ? LocalDate.ofEpochDay(Duration.ofMillis(n.longValue()).toDays())
-           : value instanceof String s ? convertDate(s)
-           : value instanceof Date   d ? d.toInstant().atZone(ZoneId.systemDefault()).toLocalDate()
-           : value;
-
-    } else if (type.equals("time")) {
-      return value instanceof Number n ? LocalDateTime.ofEpochSecond(Duration.ofMillis(n.longValue()).toSeconds(),
-                                                                     Duration.ofMillis(n.longValue()).toNanosPart(),
-                                                                     ZoneOffset.of(ZoneId.systemDefault().getId()))
-                                                      .toLocalTime()
-           : value instanceof String s ? DateTimeFormatter.ISO_LOCAL_TIME.parse(s)
-           : value instanceof Date   d ? d.toInstant().atZone(ZoneId.systemDefault()).toLocalTime()
-           : value;
-
-    } else if (type.equals("datetime")) {
-      return value instanceof Number n ? LocalDateTime.ofEpochSecond(Duration.ofMillis(n.longValue()).toSeconds(),
-                                                                     Duration.ofMillis(n.longValue()).toNanosPart(),
-                                                                     ZoneOffset.of(ZoneId.systemDefault().getId()))
-           : value instanceof String s ? DateTimeFormatter.ISO_LOCAL_DATE_TIME.parse(s)
-           : value instanceof Date   d ? d.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime()
-           : value;
-
-    } else {
-      String s = value.toString().trim().toLowerCase();
-      return switch(type) {
-        case "bool"   -> value instanceof String   ? s.equals("1") || s.startsWith("t") || s.startsWith("y")
-                       : value instanceof Number n ? n.intValue() != 0
-                       : true;
-        case "byte"   -> Byte   .valueOf(s);
-        case "short"  -> Short  .valueOf(s);
-        case "int"    -> Integer.valueOf(s);
-        case "long"   -> Long   .valueOf(s);
-        case "float"  -> Float  .valueOf(s);
-        case "double" -> Double .valueOf(s);
-        case "string",
-             "text"   -> value.toString();
-        case "uuid"   -> UUID.fromString(s);
-        default       -> value;
-      };
-    }
+    return type == null || value == null ? value : Converter.of(value.getClass(), type).convert(value);
   }
 
   /**
@@ -169,129 +150,37 @@ public class Convert {
   }
 
   /**
-   * Attempts to convert the value using most common formats.
+   * Attempts to convert the value using most common formats (see {@link DateDetector}).
+   * Ambiguous numeric dates are read day first; use a {@link DateDetector} per
+   * column or source of data to read them in the order of the other values.
    *
    * @param date The value to convert.
    * @return The converted value or null if the value was null.
    * @throws IllegalArgumentException If the value could not be converted to a date.
    */
   public static LocalDate convertDate(String date) throws IllegalArgumentException {
-    T2<LocalDate, Boolean> converted = convertInternal(date);
-    if (converted.b) return converted.a;
-    else             throw new IllegalArgumentException("'" + date + "' could not be converted to a date");
+    return DATE_DETECTOR.parse(date);
   }
 
   /**
    * Returns true if the provided date in string format can be converted to a valid date.
    */
   public static boolean canConvert(String date) {
-    return date == null || convertInternal(date).b;
+    return DATE_DETECTOR.canParse(date);
   }
 
   /**
-   * Converts the string value to a date. Return a pair, where the first value is
-   * the converted date if successfully converted (or null otherwise), and the second
-   * value is true when the conversion is successful, or false otherwise.
+   * Detector used to convert dates, reading ambiguous dates day first.
    */
-  private static T2<LocalDate, Boolean> convertInternal(String value) {
-    if (value != null) {
-      /*
-       * Remove all unnecessary characters prior to conversion.
-       */
-      boolean yearFound = false;
-      boolean monthFound = false;
-      boolean dayFound = false;
-
-      int probableMonthStart = -1;
-      int probableMonthEnd = -1;
-
-      StringBuilder compressed = new StringBuilder();
-      Matcher matcher = WORDS_NUMBERS.matcher(value);
-      while (matcher.find()) {
-        String token = value.substring(matcher.start(), matcher.end());
-        if (YEAR_PATTERN.matcher(token).matches()) {
-          yearFound = true;
-          compressed.insert(0, token + " ");
-
-          /*
-           * Push probable month position correspondingly.
-           */
-          if (probableMonthStart != -1) {
-            probableMonthStart += token.length() + 1;
-            probableMonthEnd += token.length() + 1;
-          }
-        } else {
-          if (MONTH_PATTERN.matcher(token).matches()) {
-            monthFound = true;
-          } else if (DAY_OR_MONTH_PATTERN.matcher(token).matches()) {
-            /*
-             * If we have already seen a month.
-             */
-            if (monthFound) {
-              dayFound = true;
-            } else {
-              int number = parseInt(token);
-              if ((dayFound || yearFound) && probableMonthStart == -1 && number > 0 && number <= 12) {
-                /*
-                 * Since we have already seen the year, this is a probable month.
-                 */
-                probableMonthStart = compressed.length();
-                probableMonthEnd = probableMonthStart + token.length();
-              } else {
-                dayFound = true;
-              }
-            }
-          }
-          compressed.append(token).append(' ');
-        }
-      }
-
-      if (!monthFound && probableMonthStart != -1) {
-        int month = parseInt(compressed.substring(probableMonthStart, probableMonthEnd));
-        compressed.delete(probableMonthStart, probableMonthEnd);
-        compressed.insert(probableMonthStart, Month.get(month).name);
-      }
-
-      String reformatted = compressed.toString().trim();
-      DateFormat[] formats = yearFound ? DATE_FORMATS_WITH_FOUR_DIGITS_YEAR : DATE_FORMATS_WITH_TWO_DIGITS_YEAR;
-      for (DateFormat formatter : formats) {
-        try {
-          LocalDate date = formatter.parse(reformatted).toInstant()
-                                    .atZone(ZoneId.systemDefault())
-                                    .toLocalDate();
-          return new T2<>(date, Boolean.TRUE);
-        } catch (Exception ignore) {
-        }
-      }
-      if (reformatted.length() == 8) {
-        try {
-          int year = parseInt(reformatted.substring(0, 4));
-          int month = parseInt(reformatted.substring(4, 6));
-
-          DateFormat formatter;
-          if (year >= 1900 && year <= 2100 && month >= 1 && month <= 12) {
-            formatter = yyyyMMdd;
-          } else {
-            formatter = ddMMyyyy;
-          }
-          LocalDate date = formatter.parse(reformatted).toInstant()
-                                    .atZone(ZoneId.systemDefault())
-                                    .toLocalDate();
-          return new T2<>(date, Boolean.TRUE);
-        } catch (Exception ignore) {
-        }
-      }
-      return new T2<>(null, Boolean.FALSE);
-    }
-    return new T2<>(null, Boolean.TRUE);
-  }
-
-  private static final DateFormat yyyyMMdd = new SimpleDateFormat("yyyyMMdd");
-  private static final DateFormat ddMMyyyy = new SimpleDateFormat("ddMMyyyy");
+  private static final DateDetector DATE_DETECTOR = new DateDetector(false);
 
   /**
    * Common date formats used for 4-digit years.
+   *
+   * @deprecated Not used for converting dates anymore (see {@link DateDetector})
+   *             and not thread-safe.
    */
+  @Deprecated
   public static final DateFormat[] DATE_FORMATS_WITH_FOUR_DIGITS_YEAR = {
       // date and time in 24-hour with seconds and time zone
       new SimpleDateFormat("yyyy MMM d HH mm ss z"),
@@ -324,7 +213,11 @@ public class Convert {
 
   /**
    * Common date formats used for 2-digits years.
+   *
+   * @deprecated Not used for converting dates anymore (see {@link DateDetector})
+   *             and not thread-safe.
    */
+  @Deprecated
   public static final DateFormat[] DATE_FORMATS_WITH_TWO_DIGITS_YEAR =
       {
           // date and time in 24-hour with seconds and time zone
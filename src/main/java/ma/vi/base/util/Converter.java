@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.util;
+
+import java.lang.reflect.Array;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static ma.vi.base.lang.Errors.checkArgument;
+
+/**
+ * <p>
+ * Converts values of a source class to an Esql type (<code>bool</code>, <code>int</code>,
+ * <code>date</code>, etc.), as {@link Convert#toType(Object, String)} does, with the
+ * conversion resolved once for the pair of source class and type instead of for every
+ * value. Converters are cached and thread-safe.
+ * </p>
+ *
+ * <p>
+ * Converters also convert columns of values in batch, to primitive arrays (without
+ * boxing) or typed arrays. Instead of throwing, null values and values which cannot be
+ * converted are recorded as invalid in a validity bitmap, where the bit for the value
+ * at index <code>i</code> is bit <code>i % 64</code> of <code>validity[i / 64]</code>.
+ * Invalid values are left as zero (or null) in the result. Large batches are converted
+ * in parallel.
+ * </p>
+ *
+ * <pre>
+ *    String[] column = ...;
+ *    long[] validity = Converter.validity(column.length);
+ *    int[] ints = Converter.of(String.class, "int").toInts(column, validity);
+ *    if (Converter.isValid(validity, 3)) { ... ints[3] ... }
+ * </pre>
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public final class Converter {
+  /**
+   * Returns the converter of values of the source class to the Esql type. Unknown
+   * types (including <code>variable</code>) return values unchanged.
+   */
+  public static Converter of(Class<?> source, String type) {
+    checkArgument(source != null, "Source class must not be null");
+    checkArgument(type != null, "Type must not be null");
+    Target target = Target.byName.get(type);
+    return target == null ? IDENTITY : of(source, target);
+  }
+
+  private static Converter of(Class<?> source, Target target) {
+    Converter[] cache = converters.get(source);
+    Converter converter = cache[target.ordinal()];
+    if (converter == null) {
+      // converters are immutable: concurrent creation of the same one is harmless
+      converter = new Converter(source, target);
+      cache[target.ordinal()] = converter;
+    }
+    return converter;
+  }
+
+  private Converter(Class<?> source, Target target) {
+    this.source = source;
+    this.target = target;
+    this.function = target == null ? v -> v : function(source, target);
+  }
+
+  /**
+   * Converts the value, returning null for null.
+   */
+  public Object convert(Object value) {
+    return value == null || target == null ? value
+         : value.getClass() == source ? function.apply(value)
+         : of(value.getClass(), target).function.apply(value);
+  }
+
+  /**
+   * Converts the values, which must be of a <code>byte</code>, <code>short</code>
+   * or <code>int</code> type, to an array of ints, recording the valid values in the
+   * validity bitmap.
+   */
+  public int[] toInts(List<?> values, long[] validity) {
+    checkTarget(target == Target.BYTE || target == Target.SHORT || target == Target.INT, "ints");
+    int[] result = new int[values.size()];
+    convert(values, validity, (v, i) -> result[i] = intValue(v));
+    return result;
+  }
+
+  public int[] toInts(Object[] values, long[] validity) {
+    return toInts(Arrays.asList(values), validity);
+  }
+
+  /**
+   * Converts the values, which must be of an integral type, to an array of longs,
+   * recording the valid values in the validity bitmap.
+   */
+  public long[] toLongs(List<?> values, long[] validity) {
+    checkTarget(target == Target.LONG || target == Target.BYTE
+             || target == Target.SHORT || target == Target.INT, "longs");
+    long[] result = new long[values.size()];
+    convert(values, validity, (v, i) -> result[i] = longValue(v));
+    return result;
+  }
+
+  public long[] toLongs(Object[] values, long[] validity) {
+    return toLongs(Arrays.asList(values), validity);
+  }
+
+  /**
+   * Converts the values, which must be of a numeric type, to an array of doubles,
+   * recording the valid values in the validity bitmap.
+   */
+  public double[] toDoubles(List<?> values, long[] validity) {
+    checkTarget(target != null && target.numeric, "doubles");
+    double[] result = new double[values.size()];
+    convert(values, validity, (v, i) -> result[i] = doubleValue(v));
+    return result;
+  }
+
+  public double[] toDoubles(Object[] values, long[] validity) {
+    return toDoubles(Arrays.asList(values), validity);
+  }
+
+  /**
+   * Converts the values to an array of the component type, recording the valid
+   * values in the validity bitmap. Values which cannot be converted are recorded as
+   * invalid, but converted values which cannot be stored in the array are not: the
+   * component type is then wrong for the conversion and the call fails.
+   *
+   * @throws ArrayStoreException if a converted value is not an instance of the
+   *                             component type.
+   */
+  public <T> T[] toArray(List<?> values, Class<T> componentType, long[] validity) {
+    checkArgument(componentType != null && !componentType.isPrimitive(),
+                  "Component type must be a reference type");
+    T[] result = (T[])Array.newInstance(componentType, values.size());
+    Object[] store = result;
+    convert(values, validity, (v, i) -> store[i] = convert(v));
+    return result;
+  }
+
+  public <T> T[] toArray(Object[] values, Class<T> componentType, long[] validity) {
+    return toArray(Arrays.asList(values), componentType, validity);
+  }
+
+  /**
+   * Returns a validity bitmap for the number of values.
+   */
+  public static long[] validity(int size) {
+    return new long[(size + 63) >>> 6];
+  }
+
+  /**
+   * Returns true if the value at the index is valid in the bitmap.
+   */
+  public static boolean isValid(long[] validity, int index) {
+    return (validity[index >>> 6] & (1L << index)) != 0;
+  }
+
+  /**
+   * The class of the values converted.
+   */
+  public Class<?> source() {
+    return source;
+  }
+
+  /**
+   * The Esql type that values are converted to, or null if they are not converted.
+   */
+  public String type() {
+    return target == null ? null : target.names[0];
+  }
+
+  @Override
+  public String toString() {
+    return "Converter(" + source.getName() + " -> " + type() + ')';
+  }
+
+  /**
+   * The conversion of a value, at an index of a batch, into the result.
+   */
+  private interface Cell {
+    void convert(Object value, int index);
+  }
+
+  /**
+   * Converts all the values through the cell, in parallel for large batches, and
+   * fills the validity bitmap. Chunks are multiples of 64 values so that each
+   * word of the bitmap is written by a single thread.
+   */
+  private void convert(List<?> values, long[] validity, Cell cell) {
+    int size = values.size();
+    checkArgument(validity != null && validity.length >= (size + 63) >>> 6,
+                  "Validity bitmap must have at least " + ((size + 63) >>> 6) + " words");
+    List<?> cells = values instanceof RandomAccess ? values : Arrays.asList(values.toArray());
+    if (size < PARALLEL_THRESHOLD) {
+      convert(cells, 0, size, validity, cell);
+    } else {
+      int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+      IntStream.range(0, chunks)
+               .parallel()
+               .forEach(c -> convert(cells, c * CHUNK_SIZE, Math.min(size, (c + 1) * CHUNK_SIZE), validity, cell));
+    }
+  }
+
+  private static void convert(List<?> values, int from, int to, long[] validity, Cell cell) {
+    for (int word = from >>> 6; word << 6 < to; word++) {
+      long bits = 0;
+      for (int i = word << 6, end = Math.min(to, i + 64); i < end; i++) {
+        Object value = values.get(i);
+        if (value != null) {
+          try {
+            cell.convert(value, i);
+            bits |= 1L << i;
+          } catch (ArrayStoreException e) {
+            // the result array cannot hold the converted values: not an invalid value
+            throw e;
+          } catch (RuntimeException e) {
+            // invalid value
+          }
+        }
+      }
+      validity[word] = bits;
+    }
+  }
+
+  private void checkTarget(boolean supported, String result) {
+    checkArgument(supported, this + " cannot convert to " + result);
+  }
+
+  private int intValue(Object value) {
+    if (value instanceof String s) {
+      int start = start(s), end = end(s, start);
+      return switch (target) {
+        case BYTE  -> Numbers.parseByte(s, start, end);
+        case SHORT -> Numbers.parseShort(s, start, end);
+        default    -> Numbers.parseInt(s, start, end);
+      };
+    }
+    return ((Number)convert(value)).intValue();
+  }
+
+  private long longValue(Object value) {
+    if (value instanceof String s && target == Target.LONG) {
+      int start = start(s);
+      return Numbers.parseLong(s, start, end(s, start));
+    }
+    return target == Target.LONG ? ((Number)convert(value)).longValue() : intValue(value);
+  }
+
+  private double doubleValue(Object value) {
+    if (value instanceof String s && (target == Target.DOUBLE || target == Target.FLOAT)) {
+      int start = start(s), end = end(s, start);
+      return target == Target.DOUBLE ? Numbers.parseDouble(s, start, end) : Numbers.parseFloat(s, start, end);
+    }
+    return target == Target.LONG ? longValue(value)
+         : target == Target.DOUBLE || target == Target.FLOAT ? ((Number)convert(value)).doubleValue()
+         : intValue(value);
+  }
+
+  /**
+   * The conversion function from the source class to the target type.
+   */
+  private static Function<Object, Object> function(Class<?> source, Target target) {
+    boolean string = source == String.class;
+    boolean number = Number.class.isAssignableFrom(source);
+    boolean date = Date.class.isAssignableFrom(source);
+    boolean integral = source == Integer.class || source == Long.class
+                    || source == Short.class || source == Byte.class;
+    return switch (target) {
+      case BOOL     -> string ? v -> parseBool((String)v)
+                     : number ? v -> ((Number)v).intValue() != 0
+                     : v -> true;
+      case BYTE     -> source == Byte.class ? v -> v
+                     : v -> { String s = v.toString(); int start = start(s);
+                              return Numbers.parseByte(s, start, end(s, start)); };
+      case SHORT    -> source == Short.class ? v -> v
+                     : source == Byte.class ? v -> ((Number)v).shortValue()
+                     : v -> { String s = v.toString(); int start = start(s);
+                              return Numbers.parseShort(s, start, end(s, start)); };
+      case INT      -> source == Integer.class ? v -> v
+                     : source == Short.class || source == Byte.class ? v -> ((Number)v).intValue()
+                     : v -> { String s = v.toString(); int start = start(s);
+                              return Numbers.parseInt(s, start, end(s, start)); };
+      case LONG     -> source == Long.class ? v -> v
+                     : integral ? v -> ((Number)v).longValue()
+                     : v -> { String s = v.toString(); int start = start(s);
+                              return Numbers.parseLong(s, start, end(s, start)); };
+      case FLOAT    -> source == Float.class ? v -> v
+                     : v -> Float.valueOf(v.toString().trim().toLowerCase());
+      case DOUBLE   -> source == Double.class ? v -> v
+                     : integral || source == Float.class ? v -> Double.valueOf(v.toString())
+                     : v -> Double.valueOf(v.toString().trim().toLowerCase());
+      case STRING   -> Object::toString;
+      case UUID     -> v -> java.util.UUID.fromString(v.toString().trim());
+      case DATE     -> string ? v -> Convert.convertDate((String)v)
+                     : number ? v -> LocalDate.ofEpochDay(Duration.ofMillis(((Number)v).longValue()).toDays())
+                     : date   ? v -> ((Date)v).toInstant().atZone(ZoneId.systemDefault()).toLocalDate()
+                     : v -> v;
+      case TIME     -> string ? v -> DateTimeFormatter.ISO_LOCAL_TIME.parse((String)v)
+                     : number ? v -> dateTime((Number)v).toLocalTime()
+                     : date   ? v -> ((Date)v).toInstant().atZone(ZoneId.systemDefault()).toLocalTime()
+                     : v -> v;
+      case DATETIME -> string ? v -> DateTimeFormatter.ISO_LOCAL_DATE_TIME.parse((String)v)
+                     : number ? v -> dateTime((Number)v)
+                     : date   ? v -> ((Date)v).toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime()
+                     : v -> v;
+    };
+  }
+
+  private static LocalDateTime dateTime(Number millis) {
+    Duration d = Duration.ofMillis(millis.longValue());
+    return LocalDateTime.ofEpochSecond(d.toSeconds(), d.toNanosPart(), ZoneOffset.of(ZoneId.systemDefault().getId()));
+  }
+
+  /**
+   * True for "1" and text starting with "t" or "y", ignoring case and surrounding spaces.
+   */
+  private static boolean parseBool(String s) {
+    int start = start(s), end = end(s, start);
+    if (start == end) {
+      return false;
+    }
+    char c = Character.toLowerCase(s.charAt(start));
+    return c == 't' || c == 'y' || (c == '1' && end - start == 1);
+  }
+
+  /**
+   * The start of the text without leading spaces, as by {@link String#trim()}.
+   */
+  private static int start(String s) {
+    int start = 0;
+    while (start < s.length() && s.charAt(start) <= ' ') {
+      start++;
+    }
+    return start;
+  }
+
+  /**
+   * The end of the text without trailing spaces, as by {@link String#trim()}.
+   */
+  private static int end(String s, int start) {
+    int end = s.length();
+    while (end > start && s.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    return end;
+  }
+
+  /**
+   * The Esql types that values can be converted to.
+   */
+  private enum Target {
+    BOOL(false, "bool"),
+    BYTE(true, "byte"),
+    SHORT(true, "short"),
+    INT(true, "int"),
+    LONG(true, "long"),
+    FLOAT(true, "float"),
+    DOUBLE(true, "double"),
+    STRING(false, "string", "text"),
+    UUID(false, "uuid"),
+    DATE(false, "date"),
+    TIME(false, "time"),
+    DATETIME(false, "datetime");
+
+    Target(boolean numeric, String... names) {
+      this.numeric = numeric;
+      this.names = names;
+    }
+
+    final boolean numeric;
+    final String[] names;
+
+    static final Map<String, Target> byName = new HashMap<>();
+    static {
+      for (Target t: values()) {
+        for (String name: t.names) {
+          byName.put(name, t);
+        }
+      }
+    }
+  }
+
+  /**
+   * The class of the values converted.
+   */
+  private final Class<?> source;
+
+  /**
+   * The type converted to, or null if values are returned unchanged.
+   */
+  private final Target target;
+
+  /**
+   * The conversion of values of the source class.
+   */
+  private final Function<Object, Object> function;
+
+  /**
+   * Batches of at least this number of values are converted in parallel.
+   */
+  private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+  /**
+   * The number of values converted by each parallel task (a multiple of 64).
+   */
+  private static final int CHUNK_SIZE = 1 << 12;
+
+  /**
+   * Converter returning values unchanged, for unknown types.
+   */
+  private static final Converter IDENTITY = new Converter(Object.class, null);
+
+  /**
+   * Converters per source class, indexed by target type.
+   */
+  private static final ClassValue<Converter[]> converters = new ClassValue<>() {
+    @Override
+    protected Converter[] computeValue(Class<?> type) {
+      return new Converter[Target.values().length];
+    }
+  };
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.util;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.time.format.SignStyle;
+import java.time.format.TextStyle;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.time.temporal.ChronoField.*;
+
+/**
+ * <p>
+ * Detects and parses dates written in the most common formats, such as
+ * <code>17-05-1977</code>, <code>17 May 1977</code>, <code>2077-06-30</code>,
+ * <code>Jun 30, 77</code>, <code>20770630</code>, <code>2077/06/30 10:15 PM</code>,
+ * <code>2077-06-30 10:15:30.123</code> or <code>1977-05-17T00:00:00Z</code>. Letters
+ * and digits are the only significant characters: all others (and the <code>T</code>
+ * and <code>Z</code> of ISO timestamps) act as separators. Times following the date,
+ * with optional fractions of seconds, are validated but ignored. Other ISO-8601
+ * date-times (such as those with offsets) are parsed with
+ * {@link DateTimeFormatter#ISO_DATE_TIME}.
+ * </p>
+ *
+ * <p>
+ * The text is scanned once to classify its tokens (one- or two-digit numbers,
+ * years, month names, am/pm markers, time zones, eight-digit dates, fractions of
+ * seconds) into a shape which, together with the order of the day and month implied
+ * by the values of the numbers, selects the single {@link DateTimeFormatter} to parse it with.
+ * Formatters are immutable, created once per shape and shared by all detectors.
+ * </p>
+ *
+ * <p>
+ * Numeric days and months are read day first, unless the value of the first one
+ * is greater than 12 (e.g. <code>05/17/1977</code>). Years come first in dates
+ * starting with a four-digit year. An adaptive detector (the default) instead
+ * reads ambiguous dates, such as <code>05/06/1977</code>, in the order of the last
+ * date of the same shape that it parsed: using one detector per column or source
+ * of data thus parses homogeneous values consistently, as well as skipping the
+ * formatter lookup. Detectors are thread-safe.
+ * </p>
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class DateDetector {
+  /**
+   * Creates an adaptive detector.
+   */
+  public DateDetector() {
+    this(true);
+  }
+
+  /**
+   * Creates a detector, specifying whether ambiguous dates are read in the order
+   * of the last date of the same shape (adaptive) or always day first.
+   */
+  public DateDetector(boolean adaptive) {
+    this.adaptive = adaptive;
+  }
+
+  /**
+   * Parses the text into a date.
+   *
+   * @return The date or null if the text was null.
+   * @throws IllegalArgumentException If the text is not a date in a supported format.
+   */
+  public LocalDate parse(CharSequence text) throws IllegalArgumentException {
+    if (text == null) {
+      return null;
+    }
+    LocalDate date = detect(text);
+    if (date == null) {
+      date = detectIso(text);
+    }
+    if (date == null) {
+      throw new IllegalArgumentException("'" + text + "' could not be converted to a date");
+    }
+    return date;
+  }
+
+  /**
+   * Returns true if the text is null or is a date in a supported format.
+   */
+  public boolean canParse(CharSequence text) {
+    return text == null || detect(text) != null || detectIso(text) != null;
+  }
+
+  /**
+   * Returns the date of an ISO-8601 date-time, such as <code>2077-06-30T10:15:30+01:00</code>,
+   * or null if the text is not one.
+   */
+  private static LocalDate detectIso(CharSequence text) {
+    if (text.length() > 10 && text.charAt(10) == 'T') {
+      try {
+        return DateTimeFormatter.ISO_DATE_TIME.parse(text, LocalDate::from);
+      } catch (DateTimeParseException e) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the date in the text or null if the text is not a date in a supported format.
+   */
+  private LocalDate detect(CharSequence text) {
+    /*
+     * Classify tokens, appending them to the normalized text with single spaces.
+     */
+    int shape = 0;
+    int tokens = 0;
+    int[] numbers = new int[3];
+    StringBuilder normalized = new StringBuilder(text.length());
+    int length = text.length();
+    for (int i = 0; i < length; ) {
+      char c = text.charAt(i);
+      if (isDigit(c) || isLetter(c)) {
+        boolean digits = isDigit(c);
+        int start = i;
+        int value = 0;
+        for (; i < length && (digits ? isDigit(text.charAt(i)) : isLetter(text.charAt(i))); i++) {
+          if (digits && i - start < 9) {
+            value = value * 10 + (text.charAt(i) - '0');
+          }
+        }
+        int size = i - start;
+        if (!digits && size == 1 && start > 0 && isDigit(text.charAt(start - 1))
+         && ((isIsoLetter(c, 'T') && i < length && isDigit(text.charAt(i)))
+          || (isIsoLetter(c, 'Z') && i == length))) {
+          // the date and time separator and UTC designator of ISO timestamps
+          continue;
+        }
+        int kind = digits ? numberKind(size) : wordKind(text, start, i);
+        if (digits && size <= 9 && isFraction(text, start, shape, tokens)) {
+          kind = F;
+        }
+        if (kind == INVALID || tokens == MAX_TOKENS) {
+          return null;
+        }
+        if (tokens < numbers.length) {
+          numbers[tokens] = value;
+        }
+        if (tokens > 0) {
+          normalized.append(' ');
+        }
+        normalized.append(text, start, i);
+        shape = shape << 3 | kind;
+        tokens++;
+      } else {
+        i++;
+      }
+    }
+    if (tokens == 0) {
+      return null;
+    }
+
+    /*
+     * The order of numeric day and month: swapped (month first, or day first when
+     * the date starts with the year) if implied by the values or, for ambiguous
+     * values, by the last format used.
+     */
+    int first = numbers[0], second = numbers[1], third = numbers[2];
+    Boolean swap;
+    if (shape >>> (3 * (tokens - 1)) == D) {
+      int year = first / 10000;
+      int month = first / 100 % 100;
+      swap = !(year >= 1900 && year <= 2100 && month >= 1 && month <= 12);
+    } else {
+      swap = switch (tokens >= 3 ? shape >>> (3 * (tokens - 3)) : shape) {
+        case NNY, NNN -> first > 12 ? Boolean.FALSE : second > 12 ? Boolean.TRUE : null;
+        case YNN      -> second > 12 ? Boolean.TRUE : third > 12 ? Boolean.FALSE : null;
+        default       -> Boolean.FALSE;
+      };
+    }
+    Format last = this.last;
+    if (swap == null) {
+      swap = adaptive && last != null && last.shape == shape && last.swapped;
+    }
+
+    Format format;
+    if (last != null && last.shape == shape && last.swapped == swap) {
+      format = last;
+    } else {
+      format = format(shape, tokens, swap);
+      if (format == null) {
+        return null;
+      }
+    }
+    try {
+      LocalDate date = format.formatter.parse(normalized, LocalDate::from);
+      if (last != format) {
+        this.last = format;
+      }
+      return date;
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the format for the shape and order of day and month, creating and
+   * caching it on first use, or null if there is no date format of that shape.
+   */
+  private static Format format(int shape, int tokens, boolean swap) {
+    int key = shape << 1 | (swap ? 1 : 0);
+    Format format = formats.get(key);
+    if (format == null) {
+      DateTimeFormatter formatter = formatter(shape, tokens, swap);
+      if (formatter == null) {
+        return null;
+      }
+      format = new Format(shape, swap, formatter);
+      Format existing = formats.putIfAbsent(key, format);
+      if (existing != null) {
+        format = existing;
+      }
+    }
+    return format;
+  }
+
+  /**
+   * Builds the formatter for the shape, or returns null if there is no date format
+   * of that shape. The date is made of the first three tokens (or the single token
+   * of an eight-digit date) and is optionally followed by a time.
+   */
+  private static DateTimeFormatter formatter(int shape, int tokens, boolean swap) {
+    DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder().parseCaseInsensitive();
+    int dateTokens;
+    if (shape >>> (3 * (tokens - 1)) == D) {
+      dateTokens = 1;
+      if (swap) {
+        builder.appendValue(DAY_OF_MONTH, 2).appendValue(MONTH_OF_YEAR, 2).appendValue(YEAR, 4);
+      } else {
+        builder.appendValue(YEAR, 4).appendValue(MONTH_OF_YEAR, 2).appendValue(DAY_OF_MONTH, 2);
+      }
+    } else if (tokens >= 3) {
+      dateTokens = 3;
+      String pattern = switch (shape >>> (3 * (tokens - 3))) {
+        case YNN -> swap ? "ydm" : "ymd";
+        case YMN -> "ytd";
+        case YNM -> "ydt";
+        case NMY -> "dty";
+        case MNY -> "tdy";
+        case NNY -> swap ? "mdy" : "dmy";
+        case NMN -> "dtr";
+        case MNN -> "tdr";
+        case NNN -> swap ? "mdr" : "dmr";
+        default  -> null;
+      };
+      if (pattern == null) {
+        return null;
+      }
+      for (int i = 0; i < pattern.length(); i++) {
+        if (i > 0) {
+          builder.appendLiteral(' ');
+        }
+        switch (pattern.charAt(i)) {
+          case 'y' -> builder.appendValue(YEAR, 4);
+          case 'r' -> builder.appendValueReduced(YEAR, 2, 2, TWO_DIGITS_YEAR_BASE);
+          case 'm' -> builder.appendValue(MONTH_OF_YEAR, 1, 2, SignStyle.NOT_NEGATIVE);
+          case 'd' -> builder.appendValue(DAY_OF_MONTH, 1, 2, SignStyle.NOT_NEGATIVE);
+          default  -> builder.optionalStart().appendText(MONTH_OF_YEAR, TextStyle.FULL).optionalEnd()
+                            .optionalStart().appendText(MONTH_OF_YEAR, TextStyle.SHORT).optionalEnd();
+        }
+      }
+    } else {
+      return null;
+    }
+
+    /*
+     * Time: hours and minutes, optionally seconds and a fraction of seconds, then
+     * am/pm or a time zone.
+     */
+    int timeTokens = tokens - dateTokens;
+    if (timeTokens > 0) {
+      int time = shape & ((1 << 3 * timeTokens) - 1);
+      int suffix = time & 7;
+      if (suffix == A || suffix == Z) {
+        time >>>= 3;
+      } else {
+        suffix = 0;
+      }
+      boolean fraction = (time & 7) == F;
+      if (fraction) {
+        time >>>= 3;
+      }
+      boolean seconds = time == (N << 6 | N << 3 | N);
+      if (!seconds && (fraction || time != (N << 3 | N))) {
+        return null;
+      }
+      builder.appendLiteral(' ').appendValue(suffix == A ? CLOCK_HOUR_OF_AMPM : HOUR_OF_DAY, 1, 2, SignStyle.NOT_NEGATIVE)
+             .appendLiteral(' ').appendValue(MINUTE_OF_HOUR, 1, 2, SignStyle.NOT_NEGATIVE);
+      if (seconds) {
+        builder.appendLiteral(' ').appendValue(SECOND_OF_MINUTE, 1, 2, SignStyle.NOT_NEGATIVE);
+      }
+      if (fraction) {
+        builder.appendLiteral(' ').appendFraction(NANO_OF_SECOND, 1, 9, false);
+      }
+      if (suffix == A) {
+        builder.appendLiteral(' ').appendText(AMPM_OF_DAY);
+      } else if (suffix == Z) {
+        builder.appendLiteral(' ').appendZoneText(TextStyle.SHORT);
+      }
+    }
+    return builder.toFormatter(Locale.ENGLISH).withResolverStyle(ResolverStyle.STRICT);
+  }
+
+  /**
+   * Returns true if the digits starting at the position are a fraction of seconds:
+   * they follow a decimal point (or comma) directly after the seconds of the time
+   * following a date of three tokens or an eight-digit date.
+   */
+  private static boolean isFraction(CharSequence text, int start, int shape, int tokens) {
+    if (start < 2 || !isDigit(text.charAt(start - 2))) {
+      return false;
+    }
+    char point = text.charAt(start - 1);
+    return (point == '.' || point == ',')
+        && (shape & 0777) == (N << 6 | N << 3 | N)
+        && (tokens == 6 || (tokens == 4 && shape >>> 9 == D));
+  }
+
+  private static boolean isIsoLetter(char c, char letter) {
+    return c == letter || c == Character.toLowerCase(letter);
+  }
+
+  private static int numberKind(int digits) {
+    return switch (digits) {
+      case 1, 2 -> N;
+      case 4    -> Y;
+      case 8    -> D;
+      default   -> INVALID;
+    };
+  }
+
+  private static int wordKind(CharSequence text, int start, int end) {
+    int size = end - start;
+    if (size == 2) {
+      char c = Character.toLowerCase(text.charAt(start));
+      if ((c == 'a' || c == 'p') && Character.toLowerCase(text.charAt(start + 1)) == 'm') {
+        return A;
+      }
+    }
+    for (Month month: MONTHS) {
+      if (regionMatches(text, start, size, month.shortName) || regionMatches(text, start, size, month.name)) {
+        return M;
+      }
+    }
+    return Z;
+  }
+
+  private static boolean regionMatches(CharSequence text, int start, int size, String s) {
+    if (s.length() != size) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (Character.toLowerCase(text.charAt(start + i)) != Character.toLowerCase(s.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  /**
+   * A formatter for a shape and order of day and month.
+   */
+  private record Format(int shape, boolean swapped, DateTimeFormatter formatter) {}
+
+  /**
+   * Whether ambiguous dates are read in the order of the last date of the same shape.
+   */
+  private final boolean adaptive;
+
+  /**
+   * The format of the last date parsed successfully.
+   */
+  private volatile Format last;
+
+  /**
+   * Token kinds: one- or two-digit number, four-digit year, month name, am/pm
+   * marker, other word (a time zone), eight-digit date, fraction of seconds.
+   */
+  private static final int INVALID = 0, N = 1, Y = 2, M = 3, A = 4, Z = 5, D = 6, F = 7;
+
+  /**
+   * Shapes of the supported dates.
+   */
+  private static final int YNN = Y << 6 | N << 3 | N,
+                           YMN = Y << 6 | M << 3 | N,
+                           YNM = Y << 6 | N << 3 | M,
+                           NMY = N << 6 | M << 3 | Y,
+                           MNY = M << 6 | N << 3 | Y,
+                           NNY = N << 6 | N << 3 | Y,
+                           NMN = N << 6 | M << 3 | N,
+                           MNN = M << 6 | N << 3 | N,
+                           NNN = N << 6 | N << 3 | N;
+
+  /**
+   * The maximum number of tokens: a date of three tokens followed by hours,
+   * minutes, seconds, a fraction of seconds and am/pm or a time zone.
+   */
+  private static final int MAX_TOKENS = 8;
+
+  /**
+   * Two-digit years are within 80 years before and 20 years after now.
+   */
+  private static final LocalDate TWO_DIGITS_YEAR_BASE = LocalDate.now().minusYears(80);
+
+  /**
+   * The months of the year (excluding the thirteenth).
+   */
+  private static final Month[] MONTHS = Arrays.copyOf(Month.values(), 12);
+
+  /**
+   * Formats created so far, keyed by shape and order of day and month.
+   */
+  private static final ConcurrentMap<Integer, Format> formats = new ConcurrentHashMap<>();
+}
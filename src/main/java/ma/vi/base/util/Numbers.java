@@ -306,6 +306,171 @@ public class Numbers {
     }
   }
 
+  /**
+   * Parses the characters from start (inclusive) to end (exclusive) of the text as
+   * an int, as by {@link Integer#parseInt(String)} but without creating a string.
+   */
+  public static int parseInt(CharSequence text, int start, int end) throws NumberFormatException {
+    return Integer.parseInt(text, start, end, 10);
+  }
+
+  /**
+   * Parses the characters from start (inclusive) to end (exclusive) of the text as
+   * a long, as by {@link Long#parseLong(String)} but without creating a string.
+   */
+  public static long parseLong(CharSequence text, int start, int end) throws NumberFormatException {
+    return Long.parseLong(text, start, end, 10);
+  }
+
+  /**
+   * Parses the characters from start (inclusive) to end (exclusive) of the text as
+   * a short, as by {@link Short#parseShort(String)} but without creating a string.
+   */
+  public static short parseShort(CharSequence text, int start, int end) throws NumberFormatException {
+    int value = Integer.parseInt(text, start, end, 10);
+    if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+      throw new NumberFormatException("Value out of range. Value:\"" + text.subSequence(start, end) + "\" Radix:10");
+    }
+    return (short)value;
+  }
+
+  /**
+   * Parses the characters from start (inclusive) to end (exclusive) of the text as
+   * a byte, as by {@link Byte#parseByte(String)} but without creating a string.
+   */
+  public static byte parseByte(CharSequence text, int start, int end) throws NumberFormatException {
+    int value = Integer.parseInt(text, start, end, 10);
+    if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+      throw new NumberFormatException("Value out of range. Value:\"" + text.subSequence(start, end) + "\" Radix:10");
+    }
+    return (byte)value;
+  }
+
+  /**
+   * <p>
+   * Parses the characters from start (inclusive) to end (exclusive) of the text as
+   * a double, as by {@link Double#parseDouble(String)}.
+   * </p>
+   *
+   * <p>
+   * Plain decimal numbers (an optional sign, digits with an optional fraction and an
+   * optional exponent) with up to 15 significant digits and a small enough exponent
+   * are computed directly, and exactly, from their digits (there is then a single
+   * rounding, as the significand and the power of ten are exactly representable).
+   * Others (e.g. with more digits, surrounding spaces, "NaN" or hexadecimal notation)
+   * fall back to {@link Double#parseDouble(String)}.
+   * </p>
+   */
+  public static double parseDouble(CharSequence text, int start, int end) throws NumberFormatException {
+    long digits = parseDecimal(text, start, end, 15, DOUBLE_POWERS_OF_10.length - 1);
+    if (digits != NOT_DECIMAL) {
+      double value = (double)(digits >>> 9);
+      int exponent = (byte)(digits >>> 1);
+      value = exponent >= 0 ? value * DOUBLE_POWERS_OF_10[exponent]
+                            : value / DOUBLE_POWERS_OF_10[-exponent];
+      return (digits & 1) != 0 ? -value : value;
+    }
+    return Double.parseDouble(text.subSequence(start, end).toString());
+  }
+
+  /**
+   * Parses the characters from start (inclusive) to end (exclusive) of the text as
+   * a float, as by {@link Float#parseFloat(String)}. Plain decimal numbers with up
+   * to 7 significant digits and a small enough exponent are computed directly from
+   * their digits, as for {@link #parseDouble(CharSequence, int, int)}.
+   */
+  public static float parseFloat(CharSequence text, int start, int end) throws NumberFormatException {
+    long digits = parseDecimal(text, start, end, 7, FLOAT_POWERS_OF_10.length - 1);
+    if (digits != NOT_DECIMAL) {
+      float value = (float)(digits >>> 9);
+      int exponent = (byte)(digits >>> 1);
+      value = exponent >= 0 ? value * FLOAT_POWERS_OF_10[exponent]
+                            : value / FLOAT_POWERS_OF_10[-exponent];
+      return (digits & 1) != 0 ? -value : value;
+    }
+    return Float.parseFloat(text.subSequence(start, end).toString());
+  }
+
+  /**
+   * Scans a plain decimal number (<code>[+-]digits[.digits][(e|E)[+-]digits]</code>)
+   * with at most maxDigits significant digits and whose power of ten, once the
+   * significand is made integral, is within [-maxExponent, maxExponent]. Returns the
+   * significand in the upper bits, the power of ten in the next 8 bits and the sign
+   * in the lowest bit, or {@link #NOT_DECIMAL} if the text is not such a number.
+   */
+  private static long parseDecimal(CharSequence text, int start, int end, int maxDigits, int maxExponent) {
+    int i = start;
+    if (i >= end) {
+      return NOT_DECIMAL;
+    }
+    boolean negative = false;
+    char c = text.charAt(i);
+    if (c == '-' || c == '+') {
+      negative = c == '-';
+      i++;
+    }
+    long significand = 0;
+    int significantDigits = 0;
+    int fractionDigits = 0;
+    int digits = 0;
+    boolean fraction = false;
+    for (; i < end; i++) {
+      c = text.charAt(i);
+      if (c >= '0' && c <= '9') {
+        digits++;
+        if (significand != 0 || c != '0') {
+          if (++significantDigits > maxDigits) {
+            return NOT_DECIMAL;
+          }
+          significand = significand * 10 + (c - '0');
+        }
+        if (fraction) {
+          fractionDigits++;
+        }
+      } else if (c == '.' && !fraction) {
+        fraction = true;
+      } else {
+        break;
+      }
+    }
+    if (digits == 0) {
+      return NOT_DECIMAL;
+    }
+    int exponent = 0;
+    if (i < end) {
+      c = text.charAt(i);
+      if (c != 'e' && c != 'E') {
+        return NOT_DECIMAL;
+      }
+      i++;
+      boolean negativeExponent = false;
+      if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+        negativeExponent = text.charAt(i) == '-';
+        i++;
+      }
+      if (i == end) {
+        return NOT_DECIMAL;
+      }
+      for (; i < end; i++) {
+        c = text.charAt(i);
+        if (c < '0' || c > '9' || exponent > 1000) {
+          return NOT_DECIMAL;
+        }
+        exponent = exponent * 10 + (c - '0');
+      }
+      if (negativeExponent) {
+        exponent = -exponent;
+      }
+    }
+    exponent -= fractionDigits;
+    if (significand == 0) {
+      exponent = 0;
+    } else if (exponent < -maxExponent || exponent > maxExponent) {
+      return NOT_DECIMAL;
+    }
+    return significand << 9 | (exponent & 0xFF) << 1 | (negative ? 1 : 0);
+  }
+
   public static double round(double value) {
     return round(value, 0);
   }
@@ -322,6 +487,27 @@ public class Numbers {
 
   private Numbers() {}
 
+  /**
+   * Returned by parseDecimal when the text is not a plain decimal number which
+   * can be converted exactly.
+   */
+  private static final long NOT_DECIMAL = -1;
+
+  /**
+   * The powers of ten which are exactly representable as doubles.
+   */
+  private static final double[] DOUBLE_POWERS_OF_10 = {
+      1e0,  1e1,  1e2,  1e3,  1e4,  1e5,  1e6,  1e7,  1e8,  1e9,  1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  /**
+   * The powers of ten which are exactly representable as floats.
+   */
+  private static final float[] FLOAT_POWERS_OF_10 = {
+      1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+  };
+
   public static final DecimalFormat MONEY_FORMAT;
   public static final DecimalFormat INTEGER_FORMAT;
 
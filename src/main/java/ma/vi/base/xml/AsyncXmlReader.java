@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.xml;
+
+import com.fasterxml.aalto.AsyncByteBufferFeeder;
+import com.fasterxml.aalto.AsyncXMLStreamReader;
+import com.fasterxml.aalto.stax.InputFactoryImpl;
+
+import javax.xml.stream.XMLStreamException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import static java.util.Collections.emptyMap;
+import static javax.xml.stream.XMLStreamConstants.*;
+import static ma.vi.base.lang.Errors.checkArgument;
+import static ma.vi.base.lang.Errors.unchecked;
+import static ma.vi.base.xml.Fragment.Type.*;
+
+/**
+ * <p>
+ * A non-blocking XML reader to which the bytes of a document are pushed, in chunks
+ * as they arrive (e.g. from a socket channel), and from which fragments are pulled
+ * as soon as they are complete. Instead of blocking when it runs out of input,
+ * {@link #next()} returns null and {@link #needsInput()} becomes true, so that a
+ * single thread (such as an event loop) can parse many documents concurrently.
+ * The parsing is done by the asynchronous parser of Aalto.
+ * </p>
+ *
+ * <p>
+ * Only documents encoded in UTF-8 (or its US-ASCII subset) can be read: the
+ * asynchronous parser does not support other encodings. A document declaring any
+ * other encoding is rejected with an {@link IllegalArgumentException} as soon as
+ * its XML declaration is read, before any fragment is returned.
+ * </p>
+ *
+ * <p>
+ * Fragments are produced as by {@link XmlReader} with its default settings: contiguous
+ * text is coalesced (whatever the chunks it was split into), comments are discarded
+ * unless requested otherwise, as are spaces between elements if that is all there
+ * is between them.
+ * </p>
+ *
+ * <pre>
+ *    AsyncXmlReader xml = new AsyncXmlReader();
+ *    // when a chunk of bytes arrives:
+ *    xml.feed(chunk);
+ *    for (Fragment f = xml.next(); f != null; f = xml.next()) {
+ *      // process fragment
+ *    }
+ *    // when the stream is closed:
+ *    xml.endOfInput();
+ *    // ... and process the remaining fragments
+ * </pre>
+ *
+ * <p>
+ * Chunks are not copied: a buffer passed to {@link #feed(ByteBuffer)} must not be
+ * changed until it has been consumed, which is the case when {@link #needsInput()}
+ * returns true. This class is not thread-safe.
+ * </p>
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class AsyncXmlReader implements AutoCloseable {
+  /**
+   * Creates a reader discarding comments and spaces between elements.
+   */
+  public AsyncXmlReader() {
+    this(true, true);
+  }
+
+  /**
+   * Creates a reader, specifying whether comments and spaces between elements
+   * are discarded.
+   */
+  public AsyncXmlReader(boolean discardComments, boolean discardInterElementSpaces) {
+    this.discardComments = discardComments;
+    this.discardInterElementSpaces = discardInterElementSpaces;
+    this.xml = new InputFactoryImpl().createAsyncForByteBuffer();
+  }
+
+  /**
+   * Pushes the next chunk of the document, which must be encoded in UTF-8 or
+   * US-ASCII, to the reader; the fragments that it completes can then be read
+   * with {@link #next()}.
+   */
+  public void feed(ByteBuffer chunk) {
+    checkArgument(chunk != null, "Chunk cannot be null");
+    if (endOfInput) {
+      throw new IllegalStateException("Input cannot be fed after its end has been signalled");
+    }
+    if (chunk.hasRemaining()) {
+      chunks.add(chunk);
+    }
+  }
+
+  /**
+   * Signals that there is no more input; the remaining fragments of the
+   * document can then be read.
+   */
+  public void endOfInput() {
+    endOfInput = true;
+  }
+
+  /**
+   * Returns the next fragment of the document, or null if more input is needed
+   * to complete the next fragment (in which case {@link #needsInput()} returns true)
+   * or if the end of the document has been reached ({@link #isFinished()} is true).
+   * Never blocks.
+   *
+   * @throws IllegalArgumentException if the XML declaration of the document is
+   *                                  invalid or declares an encoding other than
+   *                                  UTF-8 or US-ASCII.
+   */
+  public Fragment next() {
+    if (ready != null) {
+      return emit(takeReady());
+    }
+    try {
+      while (!finished) {
+        int tag = xml.next();
+        switch (tag) {
+          case AsyncXMLStreamReader.EVENT_INCOMPLETE -> {
+            ByteBuffer chunk = chunks.poll();
+            if (chunk != null) {
+              xml.getInputFeeder().feedInput(chunk);
+            } else if (endOfInput && !endOfInputFed) {
+              xml.getInputFeeder().endOfInput();
+              endOfInputFed = true;
+            } else {
+              return null;
+            }
+          }
+          case CHARACTERS, CDATA, SPACE -> {
+            text.append(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+            hasText = true;
+          }
+          case COMMENT -> {
+            if (!discardComments) {
+              return emitAfterText(XmlReader.fragment(xml, tag, symbols));
+            }
+          }
+          case START_ELEMENT, END_ELEMENT, PROCESSING_INSTRUCTION -> {
+            return emitAfterText(XmlReader.fragment(xml, tag, symbols));
+          }
+          case START_DOCUMENT -> started = true;
+          case END_DOCUMENT -> {
+            finished = true;
+            return emitAfterText(new Fragment(T_END_DOCUMENT, null, emptyMap()));
+          }
+          default -> {
+            // start of document, DTD and entity events are not reported
+          }
+        }
+      }
+      return null;
+    } catch (XMLStreamException e) {
+      if (!started) {
+        // the parser reports the start of the document once it has read the XML declaration
+        throw new IllegalArgumentException(
+            "Invalid XML declaration (only documents encoded in UTF-8 or US-ASCII can be "
+          + "read asynchronously): " + e.getMessage(), e);
+      }
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Returns true if the reader has consumed all its input and needs more to produce
+   * the next fragment.
+   */
+  public boolean needsInput() {
+    return !finished && !endOfInput && ready == null && chunks.isEmpty()
+        && xml.getInputFeeder().needMoreInput();
+  }
+
+  /**
+   * Returns true once the end of the document has been read.
+   */
+  public boolean isFinished() {
+    return finished && ready == null;
+  }
+
+  /**
+   * The table of the canonical instances of the element and attribute names read.
+   */
+  public SymbolTable symbols() {
+    return symbols;
+  }
+
+  /**
+   * Closes the underlying parser, releasing its buffers.
+   */
+  @Override
+  public void close() {
+    chunks.clear();
+    unchecked(xml::close);
+  }
+
+  /**
+   * Returns the text accumulated before the fragment, if it is to be kept, deferring
+   * the fragment to the next call to {@link #next()}; otherwise returns the fragment.
+   */
+  private Fragment emitAfterText(Fragment fragment) {
+    if (hasText) {
+      String t = text.toString();
+      text.setLength(0);
+      hasText = false;
+      if (!discardInterElementSpaces
+       || !isBlank(t)
+       || (last == T_START_ELEMENT && fragment.type == T_END_ELEMENT)) {
+        ready = fragment;
+        return emit(new Fragment(T_TEXT, t, emptyMap()));
+      }
+    }
+    return emit(fragment);
+  }
+
+  private Fragment emit(Fragment fragment) {
+    last = fragment.type;
+    return fragment;
+  }
+
+  private Fragment takeReady() {
+    Fragment f = ready;
+    ready = null;
+    return f;
+  }
+
+  private static boolean isBlank(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) > ' ') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Whether to ignore comments or not.
+   */
+  private final boolean discardComments;
+
+  /**
+   * Whether to discard space between elements if that is all there is between them.
+   */
+  private final boolean discardInterElementSpaces;
+
+  /**
+   * The asynchronous parser.
+   */
+  private final AsyncXMLStreamReader<AsyncByteBufferFeeder> xml;
+
+  /**
+   * Chunks fed but not passed to the parser yet (the parser only accepts
+   * a new chunk once it has consumed the previous one).
+   */
+  private final Queue<ByteBuffer> chunks = new ArrayDeque<>();
+
+  /**
+   * Text accumulated, across chunks, until the next non-text event.
+   */
+  private final StringBuilder text = new StringBuilder();
+
+  private boolean hasText;
+
+  /**
+   * A fragment read after text and returned after it.
+   */
+  private Fragment ready;
+
+  /**
+   * The type of the last fragment returned.
+   */
+  private Fragment.Type last;
+
+  /**
+   * Whether the end of input has been signalled by the caller.
+   */
+  private boolean endOfInput;
+
+  /**
+   * Whether the end of input has been signalled to the parser.
+   */
+  private boolean endOfInputFed;
+
+  /**
+   * Whether the parser has read the XML declaration and started the document.
+   */
+  private boolean started;
+
+  /**
+   * Whether the end of the document has been reached.
+   */
+  private boolean finished;
+
+  private final SymbolTable symbols = new SymbolTable();
+}
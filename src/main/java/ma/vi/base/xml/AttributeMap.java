@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.xml;
+
+import java.util.*;
+
+/**
+ * A compact immutable map of the attributes of a start element, kept as a flat
+ * array of alternating names and values. Lookups scan the array, comparing names
+ * by identity first (the names are canonical instances from the {@link SymbolTable}
+ * of the reader), which is faster than hashing for the few attributes that elements
+ * normally have. Equality and hash code are those of {@link Map}.
+ * <p>
+ * Attributes are keyed by local name, as in the maps of attributes created before
+ * this class: when several attributes have the same local name (in different
+ * namespaces, e.g. <code>a:id</code> and <code>b:id</code>), only the last one is kept.
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+final class AttributeMap extends AbstractMap<String, String> {
+  /**
+   * Creates the map over the array of alternating names and values, which is
+   * not copied (unless it contains duplicate names) and must not be changed
+   * afterwards. Of attributes with the same name, the last one is kept.
+   */
+  AttributeMap(String[] namesAndValues) {
+    this.namesAndValues = distinct(namesAndValues);
+  }
+
+  @Override
+  public int size() {
+    return namesAndValues.length / 2;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) != -1;
+  }
+
+  @Override
+  public String get(Object key) {
+    int i = indexOf(key);
+    return i == -1 ? null : namesAndValues[i + 1];
+  }
+
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public int size() {
+        return AttributeMap.this.size();
+      }
+
+      @Override
+      public Iterator<Entry<String, String>> iterator() {
+        return new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            return i < namesAndValues.length;
+          }
+
+          @Override
+          public Entry<String, String> next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            Entry<String, String> e = new SimpleImmutableEntry<>(namesAndValues[i], namesAndValues[i + 1]);
+            i += 2;
+            return e;
+          }
+
+          private int i;
+        };
+      }
+    };
+  }
+
+  /**
+   * Returns the names and values without duplicate names, keeping the value of the
+   * last occurrence of each name at the position of the first. Returns the array
+   * itself when there are no duplicates, which is the norm.
+   */
+  private static String[] distinct(String[] namesAndValues) {
+    int duplicates = 0;
+    for (int i = 2; i < namesAndValues.length; i += 2) {
+      for (int j = 0; j < i; j += 2) {
+        if (namesAndValues[i].equals(namesAndValues[j])) {
+          duplicates++;
+          break;
+        }
+      }
+    }
+    if (duplicates == 0) {
+      return namesAndValues;
+    }
+    String[] distinct = new String[namesAndValues.length - 2 * duplicates];
+    int size = 0;
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      int j = 0;
+      while (j < size && !distinct[j].equals(namesAndValues[i])) {
+        j += 2;
+      }
+      if (j == size) {
+        distinct[size] = namesAndValues[i];
+        size += 2;
+      }
+      distinct[j + 1] = namesAndValues[i + 1];
+    }
+    return distinct;
+  }
+
+  private int indexOf(Object key) {
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      if (namesAndValues[i] == key) {
+        return i;
+      }
+    }
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      if (namesAndValues[i].equals(key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Alternating names and values of the attributes.
+   */
+  private final String[] namesAndValues;
+
+  /**
+   * The map with no attributes.
+   */
+  static final AttributeMap EMPTY = new AttributeMap(new String[0]);
+}
@@ -28,7 +28,8 @@ public class Fragment {
 
   /**
    * The attributes attached to the fragment. This is only applicable to XML
-   * start elements (type {@link Type#T_START_ELEMENT}).
+   * start elements (type {@link Type#T_START_ELEMENT}). The attributes of the
+   * fragments produced by {@link XmlReader} are immutable.
    */
   public final Map<String, String> attributes;
 
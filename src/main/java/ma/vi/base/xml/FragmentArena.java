@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.xml;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.*;
+import static java.util.Collections.emptyMap;
+
+/**
+ * An append-only store of fragments used by {@link XmlReader} to keep the fragments
+ * read since a mark. Instead of keeping the fragment objects, each fragment is encoded
+ * as a run of characters in a growing character array (its type, its text and its
+ * attributes, each string prefixed by its length) with the start of each run kept in
+ * an array of offsets. Fragments are decoded back into objects when read.
+ * <p>
+ * When a spill threshold is set and the characters kept in memory would exceed it,
+ * the content of the memory is appended to a temporary file and the memory reused;
+ * fragments stored in the file are then read back from it on request. The file is
+ * deleted when the arena is cleared or closed.
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+class FragmentArena implements AutoCloseable {
+  /**
+   * Creates an arena spilling to disk when more than spillThreshold characters
+   * are in memory; a threshold of 0 or less keeps everything in memory. Names
+   * are canonicalized through the symbol table when the fragments are decoded.
+   */
+  FragmentArena(int spillThreshold, SymbolTable symbols) {
+    this.spillThreshold = spillThreshold;
+    this.symbols = symbols;
+  }
+
+  /**
+   * Appends the fragment to the arena.
+   */
+  void add(Fragment fragment) {
+    int size = 1 + encodedSize(fragment.text);
+    for (Map.Entry<String, String> e: fragment.attributes.entrySet()) {
+      size += encodedSize(e.getKey()) + encodedSize(e.getValue());
+    }
+    size += 2;
+    if (spillThreshold > 0 && used > 0 && used + size > spillThreshold) {
+      spill();
+    }
+    if (used + size > chars.length) {
+      chars = Arrays.copyOf(chars, Math.max(used + size, chars.length * 2));
+    }
+    if (count == offsets.length) {
+      offsets = Arrays.copyOf(offsets, count * 2);
+    }
+    offsets[count++] = spilled + used;
+
+    chars[used++] = (char)fragment.type.ordinal();
+    putString(fragment.text);
+    putInt(fragment.attributes.size());
+    for (Map.Entry<String, String> e: fragment.attributes.entrySet()) {
+      putString(e.getKey());
+      putString(e.getValue());
+    }
+  }
+
+  /**
+   * Decodes and returns the fragment at the specified index.
+   */
+  Fragment get(int index) {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for length " + count);
+    }
+    long offset = offsets[index];
+    if (offset >= spilled) {
+      return decode(chars, (int)(offset - spilled));
+    } else {
+      long end = index + 1 < count ? offsets[index + 1] : spilled + used;
+      return decode(readSpilled(offset, (int)(end - offset)), 0);
+    }
+  }
+
+  /**
+   * The number of fragments in the arena.
+   */
+  int size() {
+    return count;
+  }
+
+  /**
+   * Removes all fragments from the arena, deleting the spill file if any.
+   */
+  void clear() {
+    count = 0;
+    used = 0;
+    spilled = 0;
+    close();
+  }
+
+  /**
+   * Closes and deletes the spill file if one was created.
+   */
+  @Override
+  public void close() {
+    if (spillFile != null) {
+      try {
+        spillChannel.close();
+        Files.deleteIfExists(spillFile);
+      } catch (IOException e) {
+        throw new RuntimeException("Could not delete spill file " + spillFile, e);
+      } finally {
+        spillChannel = null;
+        spillFile = null;
+        spilled = 0;
+      }
+    }
+  }
+
+  /**
+   * Appends the characters in memory to the spill file and empties the memory.
+   */
+  private void spill() {
+    try {
+      if (spillFile == null) {
+        spillFile = Files.createTempFile("xml-fragments", ".arena");
+        spillChannel = FileChannel.open(spillFile, READ, WRITE, DELETE_ON_CLOSE);
+      }
+      ByteBuffer bytes = ByteBuffer.allocate(used * 2);
+      bytes.asCharBuffer().put(chars, 0, used);
+      long position = spilled * 2;
+      while (bytes.hasRemaining()) {
+        position += spillChannel.write(bytes, position);
+      }
+      spilled += used;
+      used = 0;
+    } catch (IOException e) {
+      throw new RuntimeException("Could not spill fragments to disk", e);
+    }
+  }
+
+  /**
+   * Reads length characters from the spill file starting at the offset.
+   */
+  private char[] readSpilled(long offset, int length) {
+    try {
+      ByteBuffer bytes = ByteBuffer.allocate(length * 2);
+      long position = offset * 2;
+      while (bytes.hasRemaining()) {
+        int read = spillChannel.read(bytes, position);
+        if (read == -1) {
+          throw new IOException("Unexpected end of spill file");
+        }
+        position += read;
+      }
+      bytes.flip();
+      char[] run = new char[length];
+      bytes.asCharBuffer().get(run);
+      return run;
+    } catch (IOException e) {
+      throw new RuntimeException("Could not read spilled fragments", e);
+    }
+  }
+
+  private Fragment decode(char[] chars, int pos) {
+    Fragment.Type type = TYPES[chars[pos++]];
+    boolean element = type == Fragment.Type.T_START_ELEMENT || type == Fragment.Type.T_END_ELEMENT;
+    int length = getInt(chars, pos) - 1;
+    pos += 2;
+    String text = length == -1 ? null
+                : element      ? symbols.of(chars, pos, length)
+                :                new String(chars, pos, length);
+    pos += Math.max(length, 0);
+
+    int attributeCount = getInt(chars, pos);
+    pos += 2;
+    Map<String, String> attributes;
+    if (attributeCount == 0) {
+      attributes = type == Fragment.Type.T_START_ELEMENT ? AttributeMap.EMPTY : emptyMap();
+    } else {
+      String[] namesAndValues = new String[attributeCount * 2];
+      for (int i = 0; i < namesAndValues.length; i += 2) {
+        int nameLength = getInt(chars, pos) - 1;
+        pos += 2;
+        namesAndValues[i] = symbols.of(chars, pos, nameLength);
+        pos += nameLength;
+        int valueLength = getInt(chars, pos) - 1;
+        pos += 2;
+        namesAndValues[i + 1] = valueLength == -1 ? null : new String(chars, pos, valueLength);
+        pos += Math.max(valueLength, 0);
+      }
+      attributes = new AttributeMap(namesAndValues);
+    }
+    return new Fragment(type, text, attributes);
+  }
+
+  /**
+   * Strings are encoded as their length + 1 (0 for null) in two characters
+   * followed by their characters.
+   */
+  private static int encodedSize(String s) {
+    return 2 + (s == null ? 0 : s.length());
+  }
+
+  private void putString(String s) {
+    if (s == null) {
+      putInt(0);
+    } else {
+      putInt(s.length() + 1);
+      s.getChars(0, s.length(), chars, used);
+      used += s.length();
+    }
+  }
+
+  private void putInt(int value) {
+    chars[used++] = (char)(value >>> 16);
+    chars[used++] = (char)value;
+  }
+
+  private static int getInt(char[] chars, int pos) {
+    return chars[pos] << 16 | chars[pos + 1];
+  }
+
+  /**
+   * The maximum number of characters kept in memory before spilling to disk,
+   * or 0 or less if the arena never spills.
+   */
+  private final int spillThreshold;
+
+  /**
+   * Canonical instances of the names of the decoded fragments.
+   */
+  private final SymbolTable symbols;
+
+  /**
+   * The encoded fragments which have not been spilled to disk.
+   */
+  private char[] chars = new char[1024];
+
+  /**
+   * The number of characters used in {@link #chars}.
+   */
+  private int used;
+
+  /**
+   * The offset of each fragment in the arena (counting the spilled characters).
+   */
+  private long[] offsets = new long[64];
+
+  /**
+   * The number of fragments in the arena.
+   */
+  private int count;
+
+  /**
+   * The number of characters spilled to disk.
+   */
+  private long spilled;
+
+  private Path spillFile;
+
+  private FileChannel spillChannel;
+
+  private static final Fragment.Type[] TYPES = Fragment.Type.values();
+}
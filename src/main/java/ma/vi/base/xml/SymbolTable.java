@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.xml;
+
+/**
+ * A table of canonical instances of names (element and attribute names) used by an
+ * {@link XmlReader} so that the same name is always represented by the same string
+ * instance in the fragments it produces. Names can then be compared by identity
+ * (after getting the canonical instance of the name to compare with from the
+ * table) and the fragments kept by the reader share their names.
+ * <p>
+ * The table is an open-addressing hash table of strings which can be probed with
+ * a string or with a range of characters, the latter without creating a string
+ * unless the name is new. It is not thread-safe and is normally used by a single
+ * reader.
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class SymbolTable {
+  /**
+   * Returns the canonical instance of the name, adding it to the table if it
+   * is not already there. The lookup is cheap when the name is already the
+   * canonical instance (as the hash code of strings is cached, and identity
+   * is checked first).
+   */
+  public String of(String name) {
+    if (name == null) {
+      return null;
+    }
+    int h = name.hashCode();
+    for (int i = h & mask; ; i = (i + 1) & mask) {
+      String s = symbols[i];
+      if (s == null) {
+        return add(i, name);
+      } else if (s == name || (s.hashCode() == h && s.equals(name))) {
+        return s;
+      }
+    }
+  }
+
+  /**
+   * Returns the canonical instance of the name in the range of the array,
+   * adding it to the table if it is not already there. A string is only
+   * created if the name is not in the table.
+   */
+  public String of(char[] chars, int start, int length) {
+    int h = 0;
+    for (int i = start, end = start + length; i < end; i++) {
+      h = 31 * h + chars[i];
+    }
+    for (int i = h & mask; ; i = (i + 1) & mask) {
+      String s = symbols[i];
+      if (s == null) {
+        return add(i, new String(chars, start, length));
+      } else if (s.hashCode() == h && matches(s, chars, start, length)) {
+        return s;
+      }
+    }
+  }
+
+  /**
+   * The number of names in the table.
+   */
+  public int size() {
+    return size;
+  }
+
+  private static boolean matches(String s, char[] chars, int start, int length) {
+    if (s.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (s.charAt(i) != chars[start + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String add(int slot, String name) {
+    symbols[slot] = name;
+    if (++size * 2 > symbols.length) {
+      // keep the load factor at or below 0.5
+      String[] old = symbols;
+      symbols = new String[old.length * 2];
+      mask = symbols.length - 1;
+      for (String s: old) {
+        if (s != null) {
+          int i = s.hashCode() & mask;
+          while (symbols[i] != null) {
+            i = (i + 1) & mask;
+          }
+          symbols[i] = s;
+        }
+      }
+    }
+    return name;
+  }
+
+  /**
+   * The hash table of names (its length is a power of 2).
+   */
+  private String[] symbols = new String[64];
+
+  private int mask = symbols.length - 1;
+
+  /**
+   * Number of names in the table.
+   */
+  private int size;
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.xml;
+
+import ma.vi.base.lang.Literal;
+import ma.vi.base.reflect.Dissector;
+import ma.vi.base.reflect.Property;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.function.Function;
+
+import static java.lang.invoke.MethodType.methodType;
+import static ma.vi.base.lang.Errors.checkArgument;
+import static ma.vi.base.lang.Errors.unchecked;
+import static ma.vi.base.xml.Fragment.Type.*;
+
+/**
+ * <p>
+ * Binds XML elements read by an {@link XmlReader} (used as a cursor) to objects of
+ * a class. The attributes and child elements of an element are bound to the writable
+ * properties of the class (as found by {@link Dissector#properties(Class)}) with the
+ * same name: properties of a literal type (see {@link Literal}) are set to the value
+ * of the attribute or the text of the child element converted to that type, while
+ * properties of other types having a no-argument constructor are bound to the child
+ * element recursively. Attributes and elements without a corresponding property are
+ * ignored, their content being skipped by the parser.
+ * </p>
+ *
+ * <p>
+ * The mapping from names to properties is compiled once per class, with a method
+ * handle setting each property and the literal converting the text for it, so that
+ * binding does not go through reflection or per-field map lookups (names are matched
+ * by identity as the parser interns them, falling back to equality otherwise).
+ * Binders are thread-safe and cached:
+ * </p>
+ *
+ * <pre>
+ *    XmlReader xml = new XmlReader(reader);
+ *    for (Item item: xml.objects(XmlPath.compile("/feed/item"), XmlBinder.of(Item.class))) {
+ *      ...
+ *    }
+ * </pre>
+ *
+ * @param <T> The type of objects bound.
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class XmlBinder<T> {
+  /**
+   * Returns the binder for the class, compiling it on first request.
+   */
+  public static <T> XmlBinder<T> of(Class<T> cls) {
+    checkArgument(cls != null, "Class cannot be null");
+    return (XmlBinder<T>)binders.get(cls);
+  }
+
+  /**
+   * Binds the element at the cursor of the reader to a new object, leaving the cursor
+   * on the end of the element. If the cursor is not on a start element, it is first
+   * advanced to the next one. Returns null if the end of the document is reached
+   * before a start element.
+   */
+  public T bind(XmlReader xml) {
+    checkArgument(xml != null, "Reader cannot be null");
+    while (xml.type() != T_START_ELEMENT) {
+      if (xml.advance() == null) {
+        return null;
+      }
+    }
+    return bindElement(xml);
+  }
+
+  /**
+   * The class of the objects bound.
+   */
+  public Class<T> type() {
+    return cls;
+  }
+
+  private XmlBinder(Class<T> cls) {
+    this.cls = cls;
+    Optional<Constructor<T>> ctor = Dissector.constructor(cls);
+    checkArgument(!Modifier.isAbstract(cls.getModifiers()) && ctor.isPresent(),
+                  cls + " cannot be bound to XML as it is abstract or has no no-argument constructor");
+    this.constructor = unchecked(() -> {
+      ctor.get().trySetAccessible();
+      return MethodHandles.lookup().unreflectConstructor(ctor.get())
+                                   .asType(methodType(Object.class));
+    });
+
+    List<Binding> bindings = new ArrayList<>();
+    for (Property property: Dissector.properties(cls).values()) {
+      if (property.isWritable()) {
+        Binding binding = binding(property);
+        if (binding != null) {
+          bindings.add(binding);
+        }
+      }
+    }
+    this.bindings = bindings.toArray(new Binding[0]);
+    this.names = new String[this.bindings.length];
+    this.byName = new HashMap<>();
+    for (int i = 0; i < this.bindings.length; i++) {
+      names[i] = this.bindings[i].name;
+      byName.put(names[i], this.bindings[i]);
+    }
+  }
+
+  /**
+   * Compiles the binding of a property, returning null if the property
+   * cannot be bound.
+   */
+  private static Binding binding(Property property) {
+    Class<?> type = property.type();
+    Function<String, Object> converter = null;
+    if (type == String.class) {
+      converter = text -> text;
+    } else if (Literal.isLiteral(type)) {
+      Literal<Object> literal = (Literal<Object>)Literal.literal(type);
+      if (literal == null) {
+        return null;
+      }
+      converter = text -> literal.toValue(text.trim());
+    } else if (type.isArray()
+            || type.isInterface()
+            || Modifier.isAbstract(type.getModifiers())
+            || Dissector.constructor(type).isEmpty()) {
+      return null;
+    }
+    try {
+      return new Binding(property.name().intern(), type, property.setterHandle(), converter);
+    } catch (RuntimeException e) {
+      // the property cannot be set through a method handle (e.g. inaccessible)
+      return null;
+    }
+  }
+
+  private T bindElement(XmlReader xml) {
+    Object object;
+    try {
+      object = constructor.invokeExact();
+    } catch (Throwable t) {
+      throw unchecked(t);
+    }
+    for (int i = 0, count = xml.attributeCount(); i < count; i++) {
+      Binding binding = binding(xml.attributeName(i));
+      if (binding != null && binding.converter != null) {
+        binding.set(object, binding.converter.apply(xml.attributeValue(i)));
+      }
+    }
+    for (Fragment.Type type = xml.advance(); type != T_END_ELEMENT; type = xml.advance()) {
+      if (type == null) {
+        throw new IllegalArgumentException("Unexpected end of document while binding " + cls.getName());
+      } else if (type == T_START_ELEMENT) {
+        Binding binding = binding(xml.name());
+        if (binding == null) {
+          xml.skip();
+        } else if (binding.converter != null) {
+          binding.set(object, binding.converter.apply(text(xml)));
+        } else {
+          binding.set(object, binding.binder().bindElement(xml));
+        }
+      }
+    }
+    return (T)object;
+  }
+
+  /**
+   * Returns the binding for the name or null if there is none.
+   */
+  private Binding binding(String name) {
+    for (int i = 0; i < names.length; i++) {
+      if (names[i] == name) {
+        return bindings[i];
+      }
+    }
+    // names not interned by the parser
+    return byName.get(name);
+  }
+
+  /**
+   * Reads the text content of the element at the cursor (including the
+   * text of its descendants), leaving the cursor on its end element.
+   */
+  private static String text(XmlReader xml) {
+    String first = null;
+    StringBuilder text = null;
+    for (int level = 1; level > 0; ) {
+      Fragment.Type type = xml.advance();
+      if (type == null) {
+        throw new IllegalArgumentException("Unexpected end of document while reading element text");
+      } else if (type == T_START_ELEMENT) {
+        level++;
+      } else if (type == T_END_ELEMENT) {
+        level--;
+      } else if (type == T_TEXT) {
+        if (first == null) {
+          first = xml.text().toString();
+        } else {
+          if (text == null) {
+            text = new StringBuilder(first);
+          }
+          text.append(xml.text());
+        }
+      }
+    }
+    return text != null ? text.toString() : first != null ? first : "";
+  }
+
+  /**
+   * The binding of a name to a property.
+   */
+  private static class Binding {
+    Binding(String name, Class<?> type, MethodHandle setter, Function<String, Object> converter) {
+      this.name = name;
+      this.type = type;
+      this.setter = setter;
+      this.converter = converter;
+    }
+
+    void set(Object object, Object value) {
+      try {
+        setter.invokeExact(object, value);
+      } catch (Throwable t) {
+        throw unchecked(t);
+      }
+    }
+
+    /**
+     * The binder of the nested type of the property, resolved on first use
+     * to allow for recursive types.
+     */
+    XmlBinder<?> binder() {
+      XmlBinder<?> b = binder;
+      if (b == null) {
+        b = binder = XmlBinder.of(type);
+      }
+      return b;
+    }
+
+    /**
+     * The interned name of the property.
+     */
+    final String name;
+
+    final Class<?> type;
+
+    /**
+     * Handle of type (Object, Object)void setting the property.
+     */
+    final MethodHandle setter;
+
+    /**
+     * Converts text to the value of the property, or null if the
+     * property is bound to child elements.
+     */
+    final Function<String, Object> converter;
+
+    private volatile XmlBinder<?> binder;
+  }
+
+  private final Class<T> cls;
+
+  /**
+   * Handle of type ()Object creating new instances of the class.
+   */
+  private final MethodHandle constructor;
+
+  private final Binding[] bindings;
+
+  /**
+   * Names of the bindings, in the same order, matched by identity.
+   */
+  private final String[] names;
+
+  /**
+   * Bindings by name for names which are not interned.
+   */
+  private final Map<String, Binding> byName;
+
+  /**
+   * Cache of binders. Being held by a {@link ClassValue}, a binder does not
+   * prevent its class (and class loader) from being unloaded.
+   */
+  private static final ClassValue<XmlBinder<?>> binders = new ClassValue<>() {
+    @Override
+    protected XmlBinder<?> computeValue(Class<?> type) {
+      return new XmlBinder<>(type);
+    }
+  };
+}
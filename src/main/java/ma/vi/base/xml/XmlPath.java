@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.xml;
+
+import javax.xml.stream.XMLStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ma.vi.base.lang.Errors.checkArgument;
+
+/**
+ * <p>
+ * A compiled path for selecting elements (or attributes) from an XML document
+ * while it is being read by {@link XmlReader#values(XmlPath)} or
+ * {@link XmlReader#fragments(XmlPath)}. The path supports a small subset
+ * of XPath:
+ * </p>
+ * <ul>
+ *   <li><code>/name</code> selects child elements with the specified local name;</li>
+ *   <li><code>//name</code> selects descendant elements with the specified local name;</li>
+ *   <li><code>*</code> matches elements with any name;</li>
+ *   <li><code>[@attr]</code> and <code>[@attr='value']</code> restrict a step to elements
+ *       having the attribute, or the attribute with the specified value, respectively.
+ *       Several such predicates can be applied to the same step;</li>
+ *   <li><code>/@attr</code>, as the last step, selects the attribute of the elements
+ *       matched by the path.</li>
+ * </ul>
+ * <p>
+ * For example: <code>/feed/entry/id</code>, <code>//item[@type='x']/price</code>
+ * or <code>//entry/link/@href</code>.
+ * </p>
+ * <p>
+ * The path is matched as a small non-deterministic automaton whose states at each
+ * level of the document are kept as a bit set: the reader can then skip the whole
+ * subtree of any element from which no match is possible without looking at it.
+ * </p>
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class XmlPath {
+  /**
+   * Compiles the path, throwing {@link IllegalArgumentException} if it is not valid.
+   */
+  public static XmlPath compile(String path) {
+    checkArgument(path != null && path.startsWith("/"), "Path must start with '/' or '//': " + path);
+    List<Step> steps = new ArrayList<>();
+    String attribute = null;
+    int length = path.length();
+    int i = 0;
+    while (i < length) {
+      checkArgument(attribute == null, "An attribute can only be selected by the last step of the path: " + path);
+      boolean descendant = path.startsWith("//", i);
+      i += descendant ? 2 : 1;
+
+      if (i < length && path.charAt(i) == '@') {
+        checkArgument(!descendant, "Attributes can only be selected on the matched elements: " + path);
+        int end = nameEnd(path, ++i);
+        checkArgument(end > i, "Missing attribute name at position " + i + " in " + path);
+        attribute = path.substring(i, end);
+        i = end;
+
+      } else {
+        int end = nameEnd(path, i);
+        checkArgument(end > i, "Missing element name at position " + i + " in " + path);
+        String name = path.substring(i, end);
+        i = end;
+
+        List<String> attributes = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        while (i < length && path.charAt(i) == '[') {
+          checkArgument(i + 1 < length && path.charAt(i + 1) == '@',
+                        "Only attribute predicates are supported at position " + i + " in " + path);
+          i += 2;
+          end = nameEnd(path, i);
+          checkArgument(end > i, "Missing attribute name at position " + i + " in " + path);
+          attributes.add(path.substring(i, end));
+          i = end;
+          if (i < length && path.charAt(i) == '=') {
+            i++;
+            checkArgument(i < length && (path.charAt(i) == '\'' || path.charAt(i) == '"'),
+                          "Attribute value must be quoted at position " + i + " in " + path);
+            char quote = path.charAt(i++);
+            end = path.indexOf(quote, i);
+            checkArgument(end != -1, "Unterminated attribute value at position " + i + " in " + path);
+            values.add(path.substring(i, end));
+            i = end + 1;
+          } else {
+            values.add(null);
+          }
+          checkArgument(i < length && path.charAt(i) == ']', "Missing ']' at position " + i + " in " + path);
+          i++;
+        }
+        checkArgument(i == length || path.charAt(i) == '/', "Unexpected character at position " + i + " in " + path);
+        steps.add(new Step(descendant,
+                           name.equals("*") ? null : name.intern(),
+                           attributes.toArray(new String[0]),
+                           values.toArray(new String[0])));
+      }
+    }
+    checkArgument(!steps.isEmpty(), "Path must select at least one element: " + path);
+    checkArgument(steps.size() < Long.SIZE - 1, "Path has too many steps: " + path);
+    return new XmlPath(path, steps.toArray(new Step[0]), attribute);
+  }
+
+  /**
+   * The attribute selected by the path or null if the path selects elements.
+   */
+  public String attribute() {
+    return attribute;
+  }
+
+  @Override
+  public String toString() {
+    return path;
+  }
+
+  /**
+   * The state of the path matching before the root element of a document:
+   * no steps have been matched yet.
+   */
+  static final long START = 1L;
+
+  /**
+   * Returns the state of the matching after entering the current start element
+   * of the parser, given the state in its parent. Bit i of the state is set when
+   * i steps of the path have been matched. A state of zero means that the path
+   * cannot match the element or any of its descendants.
+   */
+  long enter(long parentState, XMLStreamReader xml) {
+    long state = 0;
+    for (long remaining = parentState & ~matchedBit; remaining != 0; remaining &= remaining - 1) {
+      int i = Long.numberOfTrailingZeros(remaining);
+      Step step = steps[i];
+      if (step.descendant) {
+        state |= 1L << i;
+      }
+      if (step.matches(xml)) {
+        state |= 1L << (i + 1);
+      }
+    }
+    return state;
+  }
+
+  /**
+   * Returns true if all the element steps of the path have been matched in the state.
+   */
+  boolean matched(long state) {
+    return (state & matchedBit) != 0;
+  }
+
+  private XmlPath(String path, Step[] steps, String attribute) {
+    this.path = path;
+    this.steps = steps;
+    this.attribute = attribute;
+    this.matchedBit = 1L << steps.length;
+  }
+
+  private static int nameEnd(String path, int start) {
+    int i = start;
+    while (i < path.length() && "/[]=@".indexOf(path.charAt(i)) == -1) i++;
+    return i;
+  }
+
+  /**
+   * A step of the path matching an element.
+   */
+  private record Step(boolean descendant, String name, String[] attributes, String[] values) {
+    boolean matches(XMLStreamReader xml) {
+      if (name != null && !name.equals(xml.getLocalName())) {
+        return false;
+      }
+      for (int i = 0; i < attributes.length; i++) {
+        String value = xml.getAttributeValue(null, attributes[i]);
+        if (value == null || (values[i] != null && !values[i].equals(value))) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * The source of the path.
+   */
+  private final String path;
+
+  /**
+   * The element steps of the path.
+   */
+  private final Step[] steps;
+
+  /**
+   * The attribute selected by the path or null if the path selects elements.
+   */
+  private final String attribute;
+
+  /**
+   * The bit in the state which is set when all element steps have been matched.
+   */
+  private final long matchedBit;
+}
@@ -7,11 +7,11 @@ package ma.vi.base.xml;
 import org.codehaus.stax2.XMLInputFactory2;
 import org.codehaus.stax2.XMLStreamReader2;
 
+import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.Reader;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.*;
 import java.util.function.Predicate;
 
 import static java.util.Collections.emptyMap;
@@ -24,6 +24,27 @@ import static ma.vi.base.xml.Fragment.Type.*;
  * An XML reader providing a simplified iterator interface to a streaming XML parser
  * with support for backtracking to an arbitrary number of steps, specified in the
  * constructor or, better, through {@link XmlReaderBuilder}.
+ * <p>
+ * Lookahead of unknown length is supported through {@link #mark()} and {@link #reset()}:
+ * all fragments read after a mark are kept, however many there are, and the reader
+ * can be reset to the mark to read them again. The kept fragments are encoded compactly
+ * in an arena (see {@link XmlReaderBuilder#spillThreshold(int)}) which can be spilled
+ * to a temporary file to bound the memory used.
+ * <p>
+ * For large documents, the reader can also be used as a cursor which does not
+ * allocate a {@link Fragment} (and its attributes map) per event: {@link #advance()}
+ * moves to the next event whose type, name, text and attributes can then be read
+ * directly from the underlying parser's buffers through {@link #type()},
+ * {@link #name()}, {@link #text()}, {@link #attribute(String)}, etc. A fragment is
+ * only created for the current event when requested through {@link #fragment()}.
+ * The cursor interface cannot be mixed with the iterator interface on the same reader.
+ * <p>
+ * When only a few parts of a document are needed, {@link #values(XmlPath)} and
+ * {@link #fragments(XmlPath)} read only the elements selected by a compiled
+ * {@link XmlPath}, skipping over the subtrees which cannot contain a match.
+ * <p>
+ * Element and attribute names are canonicalized through the {@link #symbols() symbol table}
+ * of the reader and the attributes of start elements are kept in compact immutable maps.
  *
  * @author Vikash Madhow (vikash.madhow@gmail.com)
  */
@@ -37,7 +58,12 @@ public class XmlReader implements Iterable<Fragment>, Iterator<Fragment>, AutoCl
     checkArgument(in != null, "Reader cannot be null");
     checkArgument(backtracking >= 2, "Backtracking length must be 2 or more");
     try {
-      xml = (XMLStreamReader2) XMLInputFactory2.newInstance().createXMLStreamReader(in);
+      XMLInputFactory factory = XMLInputFactory2.newInstance();
+      if (factory.isPropertySupported(XMLInputFactory2.P_INTERN_NAMES)) {
+        // names are then canonical in the parser already and found by identity in the symbol table
+        factory.setProperty(XMLInputFactory2.P_INTERN_NAMES, true);
+      }
+      xml = (XMLStreamReader2) factory.createXMLStreamReader(in);
       buffer = new Fragment[backtracking];
     } catch (XMLStreamException e) {
       throw new RuntimeException("Could not open xml for stream reading", e);
@@ -62,14 +88,20 @@ public class XmlReader implements Iterable<Fragment>, Iterator<Fragment>, AutoCl
    */
   @Override
   public Fragment next() {
+    if (cursor) {
+      throw new IllegalStateException("Reader is being used as a cursor and cannot be iterated");
+    }
     if (readPos > bufferPos) {
       Fragment de = _next();
       bufferPos++;
       readPos++;
       buffer[bufferPos % buffer.length] = de;
+      if (marked != null) {
+        marked.add(de);
+      }
       return de;
     } else {
-      return buffer[readPos++ % buffer.length];
+      return retained(readPos++);
     }
   }
 
@@ -87,16 +119,58 @@ public class XmlReader implements Iterable<Fragment>, Iterator<Fragment>, AutoCl
   /**
    * Rewind the buffer by the specified number of positions. That many elements must have
    * been read already and this number cannot be greater than the rewind capacity of the
-   * reader.
+   * reader, unless the reader is not rewound before its mark.
    */
   public void rewind(int positions) {
-    checkArgument(positions > 0 && positions <= buffer.length,
+    checkArgument(positions > 0 && (positions <= buffer.length || isRetained(readPos - positions)),
         "Number of positions to rewind must be greater than 0 and <= " + buffer.length);
     checkArgument(readPos - positions >= 0, "Reader cannot be rewound by " + positions +
         " elements as that many elements have not been read yet");
     readPos -= positions;
   }
 
+  /**
+   * Marks the current position of the reader: all fragments read from this point
+   * on are kept until the mark is removed (with {@link #unmark()}) or moved (by
+   * calling this method again) so that the reader can be reset to this position
+   * with {@link #reset()}, whatever the number of fragments read in between.
+   */
+  public void mark() {
+    if (cursor) {
+      throw new IllegalStateException("Reader is being used as a cursor and cannot be marked");
+    }
+    FragmentArena arena = new FragmentArena(spillThreshold, symbols);
+    for (int pos = readPos; pos <= bufferPos; pos++) {
+      // fragments already read ahead of the new mark (after a rewind or reset)
+      arena.add(retained(pos));
+    }
+    unmark();
+    marked = arena;
+    markPos = readPos;
+  }
+
+  /**
+   * Moves the reader back to the last mark; the fragments read since the
+   * mark will be returned again. The mark is kept and the reader can be
+   * reset to it any number of times.
+   */
+  public void reset() {
+    if (marked == null) {
+      throw new IllegalStateException("Reader has not been marked");
+    }
+    readPos = markPos;
+  }
+
+  /**
+   * Removes the mark, if any, releasing the fragments kept since the mark.
+   */
+  public void unmark() {
+    if (marked != null) {
+      marked.close();
+      marked = null;
+    }
+  }
+
   /**
    * Returns the element that was returned by the last call to next().
    */
@@ -110,11 +184,11 @@ public class XmlReader implements Iterable<Fragment>, Iterator<Fragment>, AutoCl
    * returned by the call to next() before that, and so on.
    */
   public Fragment previous(int positions) {
-    checkArgument(positions > 0 && positions <= buffer.length,
+    checkArgument(positions > 0 && (positions <= buffer.length || isRetained(readPos - positions)),
         "Number of positions to look back at must be greater than 0 and <= " + buffer.length);
     checkArgument(readPos - positions >= 0, "Cannot look back " + positions + " positions as " +
         "that many elements have not been read yet");
-    return buffer[(readPos - positions) % buffer.length];
+    return retained(readPos - positions);
   }
 
   public Fragment previousOrNull() {
@@ -122,18 +196,248 @@ public class XmlReader implements Iterable<Fragment>, Iterator<Fragment>, AutoCl
   }
 
   public Fragment previousOrNull(int positions) {
-    if (positions > 0 && positions <= buffer.length && readPos - positions >= 0) {
-      return buffer[(readPos - positions) % buffer.length];
+    if (positions > 0 && readPos - positions >= 0
+        && (positions <= buffer.length || isRetained(readPos - positions))) {
+      return retained(readPos - positions);
     }
     return null;
   }
 
+  /**
+   * Moves the cursor to the next event of the document and returns its type,
+   * or null if the end of the document has been reached. Text is returned as
+   * delivered by the parser (it is not coalesced and may contain only spaces,
+   * see {@link #isWhitespace()}). Comments are skipped if the reader discards
+   * comments, as are document type declarations and entity events.
+   */
+  public Fragment.Type advance() {
+    useAsCursor();
+    try {
+      while (xml.hasNext()) {
+        int tag = xml.next();
+        switch (tag) {
+          case START_ELEMENT, END_ELEMENT, CHARACTERS, CDATA, SPACE,
+               PROCESSING_INSTRUCTION, END_DOCUMENT -> {
+            return cursorType = Fragment.Type.of(tag);
+          }
+          case COMMENT -> {
+            if (!discardComments) {
+              return cursorType = T_COMMENT;
+            }
+          }
+          default -> {}
+        }
+      }
+      return cursorType = null;
+    } catch (XMLStreamException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * The type of the event that the cursor is on, or null if the cursor has
+   * not been advanced yet or the end of the document has been reached.
+   */
+  public Fragment.Type type() {
+    return cursorType;
+  }
+
+  /**
+   * The local name of the current element (start or end) or the target of
+   * the current processing instruction; null for the other event types. The
+   * name is returned as kept by the parser, without copying.
+   */
+  public String name() {
+    return cursorType == T_START_ELEMENT || cursorType == T_END_ELEMENT ? symbols.of(xml.getLocalName())
+         : cursorType == T_PROCESSING_INSTRUCTION                       ? xml.getPITarget()
+         : null;
+  }
+
+  /**
+   * A view over the text of the current text or comment event in the buffer
+   * of the parser, or null for the other event types. The view is only valid
+   * until the cursor is advanced; use {@link CharSequence#toString()} to keep
+   * a copy of the text.
+   */
+  public CharSequence text() {
+    if (cursorType == T_TEXT || cursorType == T_COMMENT) {
+      return textView.of(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+    } else if (cursorType == T_PROCESSING_INSTRUCTION) {
+      return xml.getPIData();
+    }
+    return null;
+  }
+
+  /**
+   * Returns true if the current event is a text consisting only of spaces.
+   */
+  public boolean isWhitespace() {
+    return cursorType == T_TEXT && xml.isWhiteSpace();
+  }
+
+  /**
+   * The number of attributes of the current start element.
+   */
+  public int attributeCount() {
+    return cursorType == T_START_ELEMENT ? xml.getAttributeCount() : 0;
+  }
+
+  /**
+   * The local name of the attribute at the specified index in the current start element.
+   */
+  public String attributeName(int index) {
+    return symbols.of(xml.getAttributeLocalName(index));
+  }
+
+  /**
+   * The value of the attribute at the specified index in the current start element.
+   */
+  public String attributeValue(int index) {
+    return xml.getAttributeValue(index);
+  }
+
+  /**
+   * Returns the value of the attribute with the specified local name in the
+   * current start element, or null if there is no such attribute. The lookup
+   * is done by the parser without creating a map of the attributes.
+   */
+  public String attribute(String name) {
+    return cursorType == T_START_ELEMENT ? xml.getAttributeValue(null, name) : null;
+  }
+
+  /**
+   * The table of the canonical instances of the element and attribute names read
+   * by this reader. The names in the fragments produced by the reader and those
+   * returned by the cursor are canonical, so that they can be compared by identity
+   * with names obtained from this table, e.g. <code>fragment.text == item</code>
+   * where <code>item = xml.symbols().of("item")</code>.
+   */
+  public SymbolTable symbols() {
+    return symbols;
+  }
+
+  /**
+   * Skips the content of the current start element, moving the cursor to its
+   * end element without reporting the events in between.
+   */
+  public void skip() {
+    checkArgument(cursorType == T_START_ELEMENT, "Cursor is not on a start element");
+    unchecked(xml::skipElement);
+    cursorType = T_END_ELEMENT;
+  }
+
+  /**
+   * Creates and returns a fragment for the current event of the cursor,
+   * or null if the cursor is not on an event.
+   */
+  public Fragment fragment() {
+    return cursorType == null ? null : fragment(xml.getEventType());
+  }
+
+  /**
+   * Returns the values selected by the path in the rest of the document: the
+   * text content of the selected elements (including the text of their descendants)
+   * or the value of the selected attribute. Subtrees which cannot contain a match
+   * are skipped by the parser. Like the cursor interface, this cannot be mixed with
+   * the iterator interface of the reader.
+   */
+  public Iterable<String> values(XmlPath path) {
+    checkArgument(path != null, "Path cannot be null");
+    useAsCursor();
+    return new PathMatches<>(path) {
+      @Override
+      String match(String attribute) throws XMLStreamException {
+        if (attribute != null) {
+          return attribute;
+        } else {
+          text.setLength(0);
+          for (int level = 1; level > 0; ) {
+            switch (xml.next()) {
+              case START_ELEMENT -> level++;
+              case END_ELEMENT -> level--;
+              case CHARACTERS, CDATA, SPACE -> text.append(xml.getTextCharacters(),
+                                                           xml.getTextStart(),
+                                                           xml.getTextLength());
+              default -> {}
+            }
+          }
+          return text.toString();
+        }
+      }
+
+      private final StringBuilder text = new StringBuilder();
+    };
+  }
+
+  /**
+   * Returns the fragments of the elements selected by the path in the rest of the
+   * document: for each selected element, its start fragment, the fragments of its
+   * content and its end fragment. Text in the selected elements is not coalesced.
+   * Subtrees which cannot contain a match are skipped by the parser. This cannot be
+   * mixed with the iterator interface of the reader.
+   */
+  public Iterable<Fragment> fragments(XmlPath path) {
+    checkArgument(path != null, "Path cannot be null");
+    checkArgument(path.attribute() == null, "Fragments can only be selected by paths to elements: " + path);
+    useAsCursor();
+    return new PathMatches<>(path) {
+      @Override
+      public boolean hasNext() {
+        return !selected.isEmpty() || find() != null;
+      }
+
+      @Override
+      public Fragment next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException("No more fragments matching " + path);
+        }
+        return selected.removeFirst();
+      }
+
+      @Override
+      Fragment match(String attribute) throws XMLStreamException {
+        selected.add(fragment(START_ELEMENT));
+        for (int level = 1; level > 0; ) {
+          int tag = xml.next();
+          if      (tag == START_ELEMENT) level++;
+          else if (tag == END_ELEMENT)   level--;
+          if (tag != COMMENT || !discardComments) {
+            selected.add(fragment(tag));
+          }
+        }
+        return selected.getFirst();
+      }
+
+      private final Deque<Fragment> selected = new ArrayDeque<>();
+    };
+  }
+
+  /**
+   * Returns the objects bound by the binder from the elements selected by the path
+   * in the rest of the document. Subtrees which cannot contain a match are skipped
+   * by the parser. This cannot be mixed with the iterator interface of the reader.
+   */
+  public <T> Iterable<T> objects(XmlPath path, XmlBinder<T> binder) {
+    checkArgument(path != null, "Path cannot be null");
+    checkArgument(binder != null, "Binder cannot be null");
+    checkArgument(path.attribute() == null, "Objects can only be bound from paths to elements: " + path);
+    useAsCursor();
+    return new PathMatches<>(path) {
+      @Override
+      T match(String attribute) {
+        cursorType = T_START_ELEMENT;
+        return binder.bind(XmlReader.this);
+      }
+    };
+  }
+
   /**
    * Close the underlying stream parser; does not close the reader from which the
    * XML data was being read from.
    */
   @Override
   public void close() {
+    unmark();
     unchecked(xml::close);
   }
 
@@ -146,7 +450,7 @@ public class XmlReader implements Iterable<Fragment>, Iterator<Fragment>, AutoCl
     } else try {
       int tag = xml.next();
       if (discardComments && tag == COMMENT) {
-        return next();
+        return _next();
       } else {
         return element(previousOrNull(), tag);
       }
@@ -158,16 +462,6 @@ public class XmlReader implements Iterable<Fragment>, Iterator<Fragment>, AutoCl
 
   private Fragment element(Fragment before, int tag) throws XMLStreamException {
     switch (tag) {
-      case END_ELEMENT:
-        return new Fragment(T_END_ELEMENT, xml.getLocalName(), emptyMap());
-
-      case START_ELEMENT:
-        Map<String, String> attributes = new HashMap<>();
-        for (int i = 0; i < xml.getAttributeCount(); i++) {
-          attributes.put(xml.getAttributeLocalName(i), xml.getAttributeValue(i));
-        }
-        return new Fragment(T_START_ELEMENT, xml.getLocalName(), attributes);
-
       case CDATA:
       case CHARACTERS:
       case SPACE:
@@ -201,6 +495,162 @@ public class XmlReader implements Iterable<Fragment>, Iterator<Fragment>, AutoCl
           return de;
         }
 
+      default:
+        return fragment(tag);
+    }
+  }
+
+  /**
+   * Returns true if the fragment at the position (counted from the start of
+   * the document) is still kept, in the rewind buffer or since the mark.
+   */
+  private boolean isRetained(int pos) {
+    return pos >= 0 && pos <= bufferPos
+        && (pos > bufferPos - buffer.length || (marked != null && pos >= markPos));
+  }
+
+  /**
+   * Returns the fragment at the position, which must have been retained. Fragments
+   * are read from the rewind buffer when possible, or decoded from the arena.
+   */
+  private Fragment retained(int pos) {
+    return pos > bufferPos - buffer.length || marked == null || pos < markPos
+         ? buffer[pos % buffer.length]
+         : marked.get(pos - markPos);
+  }
+
+  private void useAsCursor() {
+    if (bufferPos != -1) {
+      throw new IllegalStateException("Reader has already been iterated and cannot be used as a cursor");
+    }
+    cursor = true;
+  }
+
+  /**
+   * Iterates over the matches of a path, reading the document from the current
+   * position of the parser and skipping subtrees where there cannot be a match.
+   */
+  private abstract class PathMatches<T> implements Iterable<T>, Iterator<T> {
+    PathMatches(XmlPath path) {
+      this.path = path;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (nextMatch == null) {
+        nextMatch = find();
+      }
+      return nextMatch != null;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException("No more matches for " + path);
+      }
+      T match = nextMatch;
+      nextMatch = null;
+      return match;
+    }
+
+    /**
+     * Called when the current start element of the parser is matched by the
+     * path, with the value of the selected attribute if the path selects one,
+     * to produce the value to return. When the path selects elements, this
+     * method must consume the element up to its end element.
+     */
+    abstract T match(String attribute) throws XMLStreamException;
+
+    /**
+     * Reads up to the next match of the path and returns its value, or null
+     * if the end of the document has been reached.
+     */
+    T find() {
+      try {
+        while (xml.hasNext()) {
+          int tag = xml.next();
+          if (tag == START_ELEMENT) {
+            long state = path.enter(states[depth], xml);
+            if (state == 0) {
+              xml.skipElement();
+
+            } else if (path.matched(state) && path.attribute() == null) {
+              return match(null);
+
+            } else {
+              if (++depth == states.length) {
+                states = Arrays.copyOf(states, depth * 2);
+              }
+              states[depth] = state;
+              if (path.matched(state)) {
+                String value = xml.getAttributeValue(null, path.attribute());
+                if (value != null) {
+                  return match(value);
+                }
+              }
+            }
+          } else if (tag == END_ELEMENT) {
+            depth--;
+          }
+        }
+        return null;
+      } catch (XMLStreamException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    private final XmlPath path;
+
+    /**
+     * The matching states of the path in the elements enclosing the current
+     * position of the parser, with the state before the root at position 0.
+     */
+    private long[] states = new long[]{XmlPath.START, 0, 0, 0, 0, 0, 0, 0};
+
+    private int depth;
+
+    private T nextMatch;
+  }
+
+  /**
+   * Creates a fragment for the current event of the parser (with
+   * no coalescing of text).
+   */
+  private Fragment fragment(int tag) {
+    return fragment(xml, tag, symbols);
+  }
+
+  /**
+   * Creates a fragment for the current event of the parser, canonicalizing
+   * names through the symbol table.
+   */
+  static Fragment fragment(XMLStreamReader xml, int tag, SymbolTable symbols) {
+    switch (tag) {
+      case END_ELEMENT:
+        return new Fragment(T_END_ELEMENT, symbols.of(xml.getLocalName()), emptyMap());
+
+      case START_ELEMENT:
+        int count = xml.getAttributeCount();
+        if (count == 0) {
+          return new Fragment(T_START_ELEMENT, symbols.of(xml.getLocalName()), AttributeMap.EMPTY);
+        }
+        String[] attributes = new String[count * 2];
+        for (int i = 0; i < count; i++) {
+          attributes[2 * i] = symbols.of(xml.getAttributeLocalName(i));
+          attributes[2 * i + 1] = xml.getAttributeValue(i);
+        }
+        return new Fragment(T_START_ELEMENT, symbols.of(xml.getLocalName()), new AttributeMap(attributes));
+
+      case CDATA:
+      case CHARACTERS:
+      case SPACE:
+        return new Fragment(T_TEXT, xml.getText(), emptyMap());
+
       case COMMENT:
         return new Fragment(T_COMMENT, xml.getText(), emptyMap());
 
@@ -213,6 +663,49 @@ public class XmlReader implements Iterable<Fragment>, Iterator<Fragment>, AutoCl
     }
   }
 
+  /**
+   * A reusable character sequence over a region of a character array,
+   * used to expose the text of the parser without copying it.
+   */
+  private static class TextView implements CharSequence {
+    TextView of(char[] chars, int start, int length) {
+      this.chars = chars;
+      this.start = start;
+      this.length = length;
+      return this;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for length " + length);
+      }
+      return chars[start + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+      if (from < 0 || to > length || from > to) {
+        throw new IndexOutOfBoundsException("Invalid range [" + from + ", " + to + ") for length " + length);
+      }
+      return new String(chars, start + from, to - from);
+    }
+
+    @Override
+    public String toString() {
+      return new String(chars, start, length);
+    }
+
+    private char[] chars;
+    private int start;
+    private int length;
+  }
+
   /**
    * Whether to discard space between elements if that is all there is between them.
    * This eliminates much redundant space such as those between an element and its
@@ -248,11 +741,47 @@ public class XmlReader implements Iterable<Fragment>, Iterator<Fragment>, AutoCl
    */
   private int readPos = 0;
 
+  /**
+   * The maximum number of characters of marked fragments kept in memory before
+   * they are spilled to disk; 0 or less (the default) keeps them all in memory.
+   */
+  int spillThreshold = 0;
+
+  /**
+   * The fragments read since the mark, or null if the reader is not marked.
+   */
+  private FragmentArena marked;
+
+  /**
+   * The position of the mark.
+   */
+  private int markPos;
+
   /**
    * A one-item look-ahead used in text coalescing.
    */
   private Fragment lookAhead;
 
+  /**
+   * Whether the reader is being used as a cursor.
+   */
+  private boolean cursor;
+
+  /**
+   * The type of the current event when the reader is used as a cursor.
+   */
+  private Fragment.Type cursorType;
+
+  /**
+   * The view over the text of the current event returned by {@link #text()}.
+   */
+  private final TextView textView = new TextView();
+
+  /**
+   * Canonical instances of the names read.
+   */
+  private final SymbolTable symbols = new SymbolTable();
+
   /**
    * The underlying streaming parser.
    */
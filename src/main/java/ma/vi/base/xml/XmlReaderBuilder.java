@@ -22,6 +22,7 @@ import static ma.vi.base.lang.Errors.checkArgument;
  *            .discardInterElementSpaces(false)   // do not discard spaces between elements
  *            .discardComments(false)             // do not discard comments
  *            .rewindCapacity(10)                 // allow rewinding up to 10 positions back
+ *            .spillThreshold(1 &lt;&lt; 20)         // spill marked fragments beyond 1M chars to disk
  *            .build();
  *  </pre>
  *
@@ -71,12 +72,24 @@ public class XmlReaderBuilder implements Builder<XmlReader> {
     return this;
   }
 
+  /**
+   * Changes the maximum number of characters of the fragments read since a mark
+   * (see {@link XmlReader#mark()}) kept in memory, beyond which they are spilled
+   * to a temporary file; default is 0 which keeps all marked fragments in memory.
+   */
+  public XmlReaderBuilder spillThreshold(int spillThreshold) {
+    checkArgument(spillThreshold >= 0, "Spill threshold cannot be negative");
+    this.spillThreshold = spillThreshold;
+    return this;
+  }
+
   @Override
   public XmlReader build() {
     XmlReader xml = new XmlReader(reader, rewindCapacity);
     xml.discardInterElementSpaces = discardInterElementSpaces;
     xml.discardComments = discardComments;
     xml.coalesceText = coalesceText;
+    xml.spillThreshold = spillThreshold;
     return xml;
   }
 
@@ -107,4 +120,10 @@ public class XmlReaderBuilder implements Builder<XmlReader> {
    * Whether to coalesce contiguous text or not; default is true.
    */
   private boolean coalesceText = true;
+
+  /**
+   * The number of characters of marked fragments kept in memory before spilling
+   * them to disk; default is 0 (never spill).
+   */
+  private int spillThreshold = 0;
 }
\ No newline at end of file
@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static ma.vi.base.lang.Errors.checkArgument;
+import static ma.vi.base.lang.Errors.unchecked;
+
+/**
+ * <p>
+ * Reads a feed of repeated record elements (e.g. millions of <code>&lt;record&gt;</code>
+ * elements under a root element) in parallel. The bytes of the feed are read from a
+ * channel and scanned for the boundaries of the records, without parsing the XML.
+ * Batches of records are then handed to an executor where each record is parsed by
+ * its own {@link XmlReader} and converted to an object by the supplied function.
+ * The objects are returned by this iterator in the order of the records in the feed,
+ * with at most a fixed number of batches being processed ahead of the consumer.
+ * </p>
+ *
+ * <p>
+ * The boundaries of the records are found by looking for the start and end tags of
+ * the record element. The encoding of the feed must therefore be compatible with
+ * ASCII (e.g. UTF-8 or ISO-8859-1) and the record tags must not appear in comments
+ * or CDATA sections. Each record is parsed as a separate document, so the records
+ * must not depend on namespace prefixes or entities declared outside of them.
+ * Record elements nested inside records are part of the enclosing record.
+ * </p>
+ *
+ * <pre>
+ *    try (XmlRecordReader&lt;String&gt; records =
+ *             new XmlRecordReader&lt;&gt;(channel, "record", xml -&gt; parseRecord(xml))) {
+ *      for (String record: records) {
+ *        // records are returned in order
+ *      }
+ *    }
+ * </pre>
+ *
+ * @param <T> The type of objects produced from the records.
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class XmlRecordReader<T> implements Iterable<T>, Iterator<T>, AutoCloseable {
+  /**
+   * Creates a reader for the UTF-8 feed in the channel, processing records on the
+   * common fork-join pool with up to twice as many batches in progress as there are
+   * processors.
+   */
+  public XmlRecordReader(ReadableByteChannel in,
+                         String recordElement,
+                         Function<XmlReader, T> parser) {
+    this(in, StandardCharsets.UTF_8, recordElement, parser, ForkJoinPool.commonPool(),
+         2 * Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Creates a reader for the feed in the channel.
+   *
+   * @param in            The channel to read the feed from.
+   * @param charset       The encoding of the feed which must be compatible with ASCII.
+   * @param recordElement The name of the record element.
+   * @param parser        Function converting each record, supplied as an XmlReader
+   *                      over the record, to the object to return.
+   * @param executor      The executor processing the batches of records.
+   * @param maxPending    The maximum number of batches processed ahead of the consumer.
+   * @param batchSize     The approximate size in bytes of a batch of records.
+   */
+  public XmlRecordReader(ReadableByteChannel in,
+                         Charset charset,
+                         String recordElement,
+                         Function<XmlReader, T> parser,
+                         ExecutorService executor,
+                         int maxPending,
+                         int batchSize) {
+    checkArgument(in != null, "Channel cannot be null");
+    checkArgument(recordElement != null && !recordElement.isEmpty(), "Record element name cannot be empty");
+    checkArgument(parser != null, "Parser cannot be null");
+    checkArgument(executor != null, "Executor cannot be null");
+    checkArgument(maxPending > 0, "Maximum number of pending batches must be positive");
+    checkArgument(batchSize > 0, "Batch size must be positive");
+    this.in = in;
+    this.charset = charset;
+    this.name = recordElement.getBytes(charset);
+    this.parser = parser;
+    this.executor = executor;
+    this.maxPending = maxPending;
+    this.batchSize = batchSize;
+    this.data = new byte[Math.max(2 * batchSize, 8192)];
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return this;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!current.hasNext()) {
+      submitBatches();
+      Future<List<T>> batch = pending.poll();
+      if (batch == null) {
+        return false;
+      }
+      try {
+        current = batch.get().iterator();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while waiting for records", e);
+      } catch (ExecutionException e) {
+        throw unchecked(e.getCause());
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException("No more records");
+    }
+    return current.next();
+  }
+
+  /**
+   * Cancels any batch still being processed and closes the channel.
+   */
+  @Override
+  public void close() {
+    for (Future<List<T>> batch: pending) {
+      batch.cancel(true);
+    }
+    pending.clear();
+    unchecked(in::close);
+  }
+
+  /**
+   * Splits the feed into batches, submitting them for processing, until the
+   * maximum number of pending batches is reached or the feed is exhausted.
+   */
+  private void submitBatches() {
+    while (!endOfFeed && pending.size() < maxPending) {
+      byte[] batch = null;
+      int[] bounds = new int[16];
+      int records = 0;
+      try {
+        while (records == 0 || recordEnd - keep < batchSize) {
+          if (!nextRecord()) {
+            endOfFeed = true;
+            break;
+          }
+          if (keep == -1) {
+            keep = recordStart;
+          }
+          if (2 * records + 2 > bounds.length) {
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+          }
+          bounds[2 * records] = recordStart - keep;
+          bounds[2 * records + 1] = recordEnd - keep;
+          records++;
+        }
+        if (records > 0) {
+          batch = Arrays.copyOfRange(data, keep, recordEnd);
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("Could not read XML feed", e);
+      } finally {
+        keep = -1;
+      }
+      if (batch != null) {
+        byte[] bytes = batch;
+        int[] recordBounds = bounds;
+        int count = records;
+        pending.add(executor.submit(() -> parse(bytes, recordBounds, count)));
+      }
+    }
+  }
+
+  /**
+   * Parses the records in a batch.
+   */
+  private List<T> parse(byte[] batch, int[] bounds, int count) {
+    List<T> results = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int start = bounds[2 * i];
+      int end = bounds[2 * i + 1];
+      try (XmlReader xml = new XmlReader(new InputStreamReader(
+          new ByteArrayInputStream(batch, start, end - start), charset))) {
+        results.add(parser.apply(xml));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Finds the next record in the feed, setting {@link #recordStart} and
+   * {@link #recordEnd} to its position in the buffer. Returns false if there
+   * are no more records.
+   */
+  private boolean nextRecord() throws IOException {
+    int from = recordEnd;
+    while (true) {
+      int start = findStart(from);
+      if (start >= 0) {
+        int end = findEnd(start);
+        if (end >= 0) {
+          recordStart = start;
+          recordEnd = end;
+          return true;
+        }
+        from = start;
+      } else {
+        // keep the tail which could be the beginning of the start tag
+        from = Math.max(from, limit - name.length - 1);
+      }
+      int shift = fill(from);
+      if (shift < 0) {
+        if (start >= 0) {
+          throw new IllegalArgumentException("Unterminated " + new String(name, charset) + " record at the end of the feed");
+        }
+        return false;
+      }
+      from -= shift;
+    }
+  }
+
+  /**
+   * Reads more data into the buffer, first discarding the content before the
+   * specified position (or the batch being assembled) and growing the buffer
+   * if it is full. Returns the number of bytes by which the content of the
+   * buffer was shifted, or -1 if the end of the feed has been reached.
+   */
+  private int fill(int from) throws IOException {
+    int discard = keep == -1 ? from : Math.min(from, keep);
+    if (discard > 0) {
+      System.arraycopy(data, discard, data, 0, limit - discard);
+      limit -= discard;
+      recordStart -= discard;
+      recordEnd -= discard;
+      if (keep != -1) {
+        keep -= discard;
+      }
+    }
+    if (limit == data.length) {
+      data = Arrays.copyOf(data, data.length * 2);
+    }
+    int read = in.read(ByteBuffer.wrap(data, limit, data.length - limit));
+    if (read == -1) {
+      return -1;
+    }
+    limit += read;
+    return discard;
+  }
+
+  /**
+   * Returns the position of the next start tag of the record element
+   * from the specified position, or -1 if there is none in the buffer.
+   */
+  private int findStart(int from) {
+    for (int i = from; i < limit; i++) {
+      if (data[i] == '<' && isName(i + 1) == 1) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the position just after the end of the record starting at the
+   * specified position or -1 if the end of the record is not in the buffer.
+   */
+  private int findEnd(int start) {
+    int depth = 0;
+    for (int i = start; i < limit; i++) {
+      if (data[i] == '<') {
+        int startTag = isName(i + 1);
+        int endTag = i + 1 < limit && data[i + 1] == '/' ? isName(i + 2) : 0;
+        if (startTag == -1 || endTag == -1) {
+          return -1;
+        }
+        if (startTag == 1 || endTag == 1) {
+          int tagEnd = tagEnd(i + 1);
+          if (tagEnd == -1) {
+            return -1;
+          }
+          if (endTag == 1) {
+            depth--;
+          } else if (data[tagEnd - 1] != '/') {
+            depth++;
+          }
+          if (depth == 0) {
+            return tagEnd + 1;
+          }
+          i = tagEnd;
+        }
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns 1 if the record element name, followed by the end of the name,
+   * is at the specified position, 0 if it is not, or -1 if the buffer does
+   * not contain enough bytes to determine it.
+   */
+  private int isName(int pos) {
+    if (pos + name.length >= limit) {
+      return -1;
+    }
+    for (int i = 0; i < name.length; i++) {
+      if (data[pos + i] != name[i]) {
+        return 0;
+      }
+    }
+    byte after = data[pos + name.length];
+    return after == '>' || after == '/' || after == ' ' || after == '\t' || after == '\n' || after == '\r' ? 1 : 0;
+  }
+
+  /**
+   * Returns the position of the '>' closing the tag from the specified position,
+   * skipping quoted attribute values, or -1 if it is not in the buffer.
+   */
+  private int tagEnd(int pos) {
+    byte quote = 0;
+    for (int i = pos; i < limit; i++) {
+      byte b = data[i];
+      if (quote != 0) {
+        if (b == quote) quote = 0;
+      } else if (b == '"' || b == '\'') {
+        quote = b;
+      } else if (b == '>') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private final ReadableByteChannel in;
+
+  private final Charset charset;
+
+  /**
+   * The encoded name of the record element.
+   */
+  private final byte[] name;
+
+  private final Function<XmlReader, T> parser;
+
+  private final ExecutorService executor;
+
+  private final int maxPending;
+
+  private final int batchSize;
+
+  /**
+   * Batches being processed, in the order of the feed.
+   */
+  private final Queue<Future<List<T>>> pending = new ArrayDeque<>();
+
+  /**
+   * Results of the batch being consumed.
+   */
+  private Iterator<T> current = Collections.emptyIterator();
+
+  /**
+   * Buffer holding the part of the feed being split.
+   */
+  private byte[] data;
+
+  /**
+   * The end of the data in the buffer.
+   */
+  private int limit;
+
+  /**
+   * Position in the buffer of the last record found.
+   */
+  private int recordStart, recordEnd;
+
+  /**
+   * Position in the buffer of the start of the batch being assembled (which
+   * must not be discarded when reading more data), or -1 if none.
+   */
+  private int keep = -1;
+
+  private boolean endOfFeed;
+
+  /**
+   * Default batch size in bytes.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 256 * 1024;
+}
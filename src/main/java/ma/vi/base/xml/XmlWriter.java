@@ -0,0 +1,538 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.xml;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ma.vi.base.lang.Errors.checkArgument;
+
+/**
+ * <p>
+ * A streaming XML writer, the counterpart of {@link XmlReader}: elements, attributes,
+ * text, comments and processing instructions are written into an internal character
+ * buffer, escaped on the way through lookup tables (runs of characters which do not
+ * need escaping are copied in bulk), and the buffer is flushed to the underlying
+ * {@link Writer} or {@link WritableByteChannel} in large blocks. Apart from the element
+ * names kept to close the open elements, nothing is allocated per element written.
+ * The character buffer (and, for channels, the byte buffer used for encoding) are taken
+ * from a shared pool and returned to it when the writer is closed.
+ * </p>
+ *
+ * <p>
+ * Fragments read by an {@link XmlReader} can be written back with {@link #write(Fragment)}:
+ * </p>
+ *
+ * <pre>
+ *    try (XmlReader in = new XmlReader(reader);
+ *         XmlWriter out = new XmlWriter(writer)) {
+ *      for (Fragment fragment: in) {
+ *        out.write(fragment);
+ *      }
+ *    }
+ * </pre>
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class XmlWriter implements Flushable, AutoCloseable {
+  /**
+   * Creates a writer writing to the character stream.
+   */
+  public XmlWriter(Writer out) {
+    checkArgument(out != null, "Writer cannot be null");
+    this.writer = out;
+    this.channel = null;
+    this.encoder = null;
+    this.bytes = null;
+    this.buffer = takeChars();
+  }
+
+  /**
+   * Creates a writer writing to the channel, encoding the characters
+   * with the specified character set.
+   */
+  public XmlWriter(WritableByteChannel out, Charset charset) {
+    checkArgument(out != null, "Channel cannot be null");
+    checkArgument(charset != null, "Charset cannot be null");
+    this.writer = null;
+    this.channel = out;
+    this.encoder = charset.newEncoder()
+                          .onMalformedInput(CodingErrorAction.REPLACE)
+                          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.bytes = takeBytes();
+    this.buffer = takeChars();
+  }
+
+  /**
+   * Writes the XML declaration, with the encoding if the writer is writing
+   * to a channel.
+   */
+  public XmlWriter startDocument() {
+    raw("<?xml version=\"1.0\"");
+    if (encoder != null) {
+      raw(" encoding=\"");
+      raw(encoder.charset().name());
+      raw("\"");
+    }
+    return raw("?>");
+  }
+
+  /**
+   * Ends the document, closing all elements still open.
+   */
+  public XmlWriter endDocument() {
+    while (depth > 0) {
+      end();
+    }
+    return this;
+  }
+
+  /**
+   * Starts an element: attributes can be written with {@link #attribute(String, CharSequence)}
+   * until the content of the element or its end is written.
+   */
+  public XmlWriter start(String name) {
+    checkArgument(name != null && !name.isEmpty(), "Element name cannot be empty");
+    closeStartTag();
+    if (depth == open.length) {
+      open = Arrays.copyOf(open, depth * 2);
+    }
+    open[depth++] = name;
+    put('<');
+    raw(name);
+    startTagOpen = true;
+    return this;
+  }
+
+  /**
+   * Writes an attribute of the element just started.
+   */
+  public XmlWriter attribute(String name, CharSequence value) {
+    if (!startTagOpen) {
+      throw new IllegalStateException("Attributes can only be written just after the start of an element");
+    }
+    put(' ');
+    raw(name);
+    put('=');
+    put('"');
+    escape(value, ATTRIBUTE_ESCAPES);
+    put('"');
+    return this;
+  }
+
+  /**
+   * Ends the last element started, as an empty element tag if it has no content.
+   */
+  public XmlWriter end() {
+    if (depth == 0) {
+      throw new IllegalStateException("There is no open element to end");
+    }
+    String name = open[--depth];
+    open[depth] = null;
+    if (startTagOpen) {
+      startTagOpen = false;
+      put('/');
+      put('>');
+    } else {
+      put('<');
+      put('/');
+      raw(name);
+      put('>');
+    }
+    return this;
+  }
+
+  /**
+   * Writes the text, escaped, as content of the current element.
+   */
+  public XmlWriter text(CharSequence text) {
+    closeStartTag();
+    escape(text, TEXT_ESCAPES);
+    return this;
+  }
+
+  /**
+   * Writes the characters in the range of the array, escaped, as content
+   * of the current element.
+   */
+  public XmlWriter text(char[] text, int start, int length) {
+    closeStartTag();
+    int end = start + length;
+    int run = start;
+    for (int i = start; i < end; i++) {
+      char c = text[i];
+      if (c < ESCAPE_LIMIT && TEXT_ESCAPES[c] != null) {
+        put(text, run, i - run);
+        raw(TEXT_ESCAPES[c]);
+        run = i + 1;
+      }
+    }
+    put(text, run, end - run);
+    return this;
+  }
+
+  /**
+   * Writes a comment. The text of the comment must not contain "--".
+   */
+  public XmlWriter comment(CharSequence text) {
+    checkArgument(text.toString().indexOf("--") == -1, "Comments cannot contain '--'");
+    closeStartTag();
+    raw("<!--");
+    raw(text);
+    return raw("-->");
+  }
+
+  /**
+   * Writes a processing instruction.
+   */
+  public XmlWriter processingInstruction(String target, CharSequence data) {
+    checkArgument(target != null && !target.isEmpty(), "Processing instruction target cannot be empty");
+    closeStartTag();
+    raw("<?");
+    raw(target);
+    if (data != null && data.length() > 0) {
+      put(' ');
+      raw(data);
+    }
+    return raw("?>");
+  }
+
+  /**
+   * Writes the fragment, as read by an {@link XmlReader}. End element fragments
+   * end the last element started.
+   */
+  public XmlWriter write(Fragment fragment) {
+    switch (fragment.type) {
+      case T_START_DOCUMENT -> startDocument();
+      case T_END_DOCUMENT -> endDocument();
+      case T_START_ELEMENT -> {
+        start(fragment.text);
+        for (Map.Entry<String, String> e: fragment.attributes.entrySet()) {
+          attribute(e.getKey(), e.getValue());
+        }
+      }
+      case T_END_ELEMENT -> end();
+      case T_TEXT -> text(fragment.text);
+      case T_COMMENT -> comment(fragment.text);
+      case T_PROCESSING_INSTRUCTION -> processingInstruction(fragment.attributes.get("PITarget"),
+                                                             fragment.attributes.get("PIData"));
+    }
+    return this;
+  }
+
+  /**
+   * Writes all the fragments.
+   */
+  public XmlWriter writeAll(Iterable<Fragment> fragments) {
+    for (Fragment fragment: fragments) {
+      write(fragment);
+    }
+    return this;
+  }
+
+  /**
+   * Writes the buffered content to the underlying writer or channel and flushes
+   * the writer.
+   */
+  @Override
+  public void flush() {
+    drain();
+    if (writer != null) {
+      try {
+        writer.flush();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Flushes the buffered content and returns the buffers of this writer to the
+   * pool; does not close the writer or channel to which the XML was written, nor
+   * the elements still open.
+   */
+  @Override
+  public void close() {
+    if (buffer != null) {
+      try {
+        flush();
+        if (encoder != null) {
+          // encode any trailing unpaired surrogate and the final state of the encoder
+          encoder.encode(CharBuffer.wrap(buffer, 0, pos), bytes, true);
+          encoder.flush(bytes);
+          writeBytes();
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        giveChars(buffer);
+        buffer = null;
+        if (bytes != null) {
+          giveBytes(bytes);
+          bytes = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the closing '&gt;' of the start tag of the current element, if still open.
+   */
+  private void closeStartTag() {
+    if (startTagOpen) {
+      startTagOpen = false;
+      put('>');
+    }
+  }
+
+  /**
+   * Writes the text escaping the characters which have an entry in the escapes table,
+   * copying the runs of characters in between in bulk.
+   */
+  private void escape(CharSequence text, char[][] escapes) {
+    int length = text.length();
+    int run = 0;
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c < ESCAPE_LIMIT && escapes[c] != null) {
+        put(text, run, i);
+        raw(escapes[c]);
+        run = i + 1;
+      }
+    }
+    put(text, run, length);
+  }
+
+  /**
+   * Writes the text without escaping.
+   */
+  private XmlWriter raw(CharSequence text) {
+    put(text, 0, text.length());
+    return this;
+  }
+
+  private void raw(char[] text) {
+    put(text, 0, text.length);
+  }
+
+  private void put(char c) {
+    if (pos == buffer.length) {
+      drain();
+    }
+    buffer[pos++] = c;
+  }
+
+  private void put(CharSequence text, int start, int end) {
+    while (start < end) {
+      if (pos == buffer.length) {
+        drain();
+      }
+      int n = Math.min(end - start, buffer.length - pos);
+      if (text instanceof String s) {
+        s.getChars(start, start + n, buffer, pos);
+      } else {
+        for (int i = 0; i < n; i++) {
+          buffer[pos + i] = text.charAt(start + i);
+        }
+      }
+      pos += n;
+      start += n;
+    }
+  }
+
+  private void put(char[] text, int start, int length) {
+    while (length > 0) {
+      if (pos == buffer.length) {
+        drain();
+      }
+      int n = Math.min(length, buffer.length - pos);
+      System.arraycopy(text, start, buffer, pos, n);
+      pos += n;
+      start += n;
+      length -= n;
+    }
+  }
+
+  /**
+   * Writes the content of the character buffer to the writer or, encoded,
+   * to the channel. A high surrogate at the end of the buffer whose low
+   * surrogate has not been written yet is kept in the buffer.
+   */
+  private void drain() {
+    if (buffer == null) {
+      throw new IllegalStateException("XmlWriter has been closed");
+    }
+    try {
+      if (writer != null) {
+        writer.write(buffer, 0, pos);
+        pos = 0;
+      } else {
+        CharBuffer chars = CharBuffer.wrap(buffer, 0, pos);
+        while (true) {
+          CoderResult result = encoder.encode(chars, bytes, false);
+          writeBytes();
+          if (result.isUnderflow()) {
+            break;
+          }
+        }
+        int remaining = chars.remaining();
+        System.arraycopy(buffer, chars.position(), buffer, 0, remaining);
+        pos = remaining;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void writeBytes() throws IOException {
+    bytes.flip();
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+    bytes.clear();
+  }
+
+  private static char[] takeChars() {
+    char[] chars = charPool.poll();
+    if (chars != null) {
+      charPoolSize.decrementAndGet();
+      return chars;
+    }
+    return new char[BUFFER_SIZE];
+  }
+
+  private static void giveChars(char[] chars) {
+    if (charPoolSize.incrementAndGet() <= MAX_POOLED) {
+      charPool.offer(chars);
+    } else {
+      charPoolSize.decrementAndGet();
+    }
+  }
+
+  private static ByteBuffer takeBytes() {
+    ByteBuffer b = bytePool.poll();
+    if (b != null) {
+      bytePoolSize.decrementAndGet();
+      return b;
+    }
+    return ByteBuffer.allocateDirect(BUFFER_SIZE * 2);
+  }
+
+  private static void giveBytes(ByteBuffer b) {
+    b.clear();
+    if (bytePoolSize.incrementAndGet() <= MAX_POOLED) {
+      bytePool.offer(b);
+    } else {
+      bytePoolSize.decrementAndGet();
+    }
+  }
+
+  private static char[][] escapes(String special) {
+    char[][] escapes = new char[ESCAPE_LIMIT][];
+    for (char c: special.toCharArray()) {
+      escapes[c] = switch (c) {
+        case '&' -> "&amp;".toCharArray();
+        case '<' -> "&lt;".toCharArray();
+        case '>' -> "&gt;".toCharArray();
+        case '"' -> "&quot;".toCharArray();
+        default  -> ("&#" + (int)c + ';').toCharArray();
+      };
+    }
+    return escapes;
+  }
+
+  /**
+   * The writer to write to, or null if writing to a channel.
+   */
+  private final Writer writer;
+
+  /**
+   * The channel to write to, or null if writing to a writer.
+   */
+  private final WritableByteChannel channel;
+
+  /**
+   * Encoder of the characters written to the channel.
+   */
+  private final CharsetEncoder encoder;
+
+  /**
+   * Buffer receiving the encoded characters to write to the channel.
+   */
+  private ByteBuffer bytes;
+
+  /**
+   * Buffer receiving the characters written, until flushed.
+   */
+  private char[] buffer;
+
+  /**
+   * The position of the next character in the buffer.
+   */
+  private int pos;
+
+  /**
+   * Names of the elements started and not ended yet.
+   */
+  private String[] open = new String[16];
+
+  /**
+   * The number of open elements.
+   */
+  private int depth;
+
+  /**
+   * Whether the start tag of the last element started has not been closed yet
+   * (by the '&gt;' written when its content is written).
+   */
+  private boolean startTagOpen;
+
+  /**
+   * Size of the character buffers (in characters).
+   */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * The maximum number of buffers of each kind kept in the pools.
+   */
+  private static final int MAX_POOLED = 16;
+
+  /**
+   * Characters lower than this can be escaped (the size of the escape tables).
+   */
+  private static final int ESCAPE_LIMIT = 128;
+
+  /**
+   * Replacements of characters which must be escaped in text (carriage returns
+   * are escaped so that they are not normalized away when read back).
+   */
+  private static final char[][] TEXT_ESCAPES = escapes("&<>\r");
+
+  /**
+   * Replacements of characters which must be escaped in attribute values (line
+   * breaks and tabs are escaped so that they are not normalized to spaces).
+   */
+  private static final char[][] ATTRIBUTE_ESCAPES = escapes("&<\"\n\r\t");
+
+  private static final Queue<char[]> charPool = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger charPoolSize = new AtomicInteger();
+
+  private static final Queue<ByteBuffer> bytePool = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger bytePoolSize = new AtomicInteger();
+}
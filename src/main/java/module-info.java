@@ -3,10 +3,12 @@
  */
 module ma.vi.base {
   requires java.sql;
+  requires static java.compiler;
   requires jdk.unsupported;
 
   requires org.yaml.snakeyaml;
   requires org.codehaus.stax2;
+  requires com.fasterxml.aalto;
   requires org.apache.commons.lang3;
   requires org.bouncycastle.provider;
 
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.lang;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import static ma.vi.base.lang.Literal.binaryLiteral;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test binary literals.
+ *
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class BinaryLiteralTest {
+
+  enum E {a, b, c}
+
+  @Test
+  public void varints() {
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    long[] values = {0, 1, -1, 63, -64, 64, 300, Integer.MIN_VALUE, Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE};
+    for (long value: values) {
+      buffer.clear();
+      BinaryLiteral.writeSignedVarLong(value, buffer);
+      buffer.flip();
+      assertEquals(value, BinaryLiteral.readSignedVarLong(buffer));
+      assertEquals(0, buffer.remaining());
+    }
+    buffer.clear();
+    BinaryLiteral.writeSignedVarLong(-64, buffer);
+    assertEquals(1, buffer.position());
+    BinaryLiteral.writeVarLong(-1, buffer);
+    assertEquals(11, buffer.position());
+  }
+
+  @Test
+  public void roundTrip() {
+    assertRoundTrip(int.class, 0, 1);
+    assertRoundTrip(int.class, -1, 1);
+    assertRoundTrip(int.class, Integer.MIN_VALUE, 5);
+    assertRoundTrip(Integer.class, 150, 3);
+    assertRoundTrip(Integer.class, null, 1);
+    assertRoundTrip(long.class, Long.MAX_VALUE, 10);
+    assertRoundTrip(short.class, (short)-300, 2);
+    assertRoundTrip(byte.class, (byte)-5, 1);
+    assertRoundTrip(char.class, 'x', 1);
+    assertRoundTrip(boolean.class, true, 1);
+    assertRoundTrip(Boolean.class, false, 2);
+    assertRoundTrip(float.class, 1.5f, 4);
+    assertRoundTrip(double.class, Math.PI, 8);
+    assertRoundTrip(Double.class, null, 1);
+
+    assertRoundTrip(String.class, "test", 5);
+    assertRoundTrip(String.class, "", 1);
+    assertRoundTrip(String.class, null, 1);
+    assertRoundTrip(String.class, "caf\u00e9 \u20ac \ud83d\ude00", 15);
+
+    assertRoundTrip(BigInteger.class, new BigInteger("123456789012345678901234567890"), 14);
+    assertRoundTrip(BigDecimal.class, new BigDecimal("-12345.678"), 6);
+    assertRoundTrip(BigDecimal.class, null, 1);
+    assertRoundTrip(Date.class, new Date(1_500_000_000_000L), 7);
+    assertRoundTrip(Date.class, null, 1);
+
+    assertRoundTrip(E.class, E.c, 1);
+    assertRoundTrip(E.class, null, 1);
+  }
+
+  @Test
+  public void stringMatchesUtf8() {
+    String s = "a\u00e9\u20ac\ud83d\ude00\ud800b";
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    binaryLiteral(String.class).write(s, buffer);
+    buffer.flip();
+    byte[] expected = s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+    assertEquals(expected.length + 1, BinaryLiteral.readVarLong(buffer));
+    byte[] actual = new byte[buffer.remaining()];
+    buffer.get(actual);
+    assertArrayEquals(expected, actual);
+
+    // direct buffers are read without access to a backing array
+    ByteBuffer direct = ByteBuffer.allocateDirect(64);
+    binaryLiteral(String.class).write(s, direct);
+    direct.flip();
+    assertEquals(new String(expected, java.nio.charset.StandardCharsets.UTF_8),
+                 binaryLiteral(String.class).read(direct));
+  }
+
+  @Test
+  public void arrays() {
+    ByteBuffer buffer = ByteBuffer.allocate(1024);
+    BinaryLiteral<int[]> ints = binaryLiteral(int[].class);
+    ints.write(new int[]{1, -2, 300}, buffer);
+    ints.write(null, buffer);
+    BinaryLiteral<double[]> doubles = binaryLiteral(double[].class);
+    doubles.write(new double[]{1.5, -2.25}, buffer);
+    BinaryLiteral<byte[]> bytes = binaryLiteral(byte[].class);
+    bytes.write(new byte[]{1, 2, 3}, buffer);
+    BinaryLiteral<String[][]> strings = binaryLiteral(String[][].class);
+    strings.write(new String[][]{{"a", null}, null, {}}, buffer);
+    BinaryLiteral<E[]> enums = binaryLiteral(E[].class);
+    enums.write(new E[]{E.b, null, E.a}, buffer);
+    BinaryLiteral<Integer[]> boxed = binaryLiteral(Integer[].class);
+    boxed.write(new Integer[]{1, null}, buffer);
+    buffer.flip();
+
+    assertArrayEquals(new int[]{1, -2, 300}, ints.read(buffer));
+    assertNull(ints.read(buffer));
+    assertArrayEquals(new double[]{1.5, -2.25}, doubles.read(buffer));
+    assertArrayEquals(new byte[]{1, 2, 3}, bytes.read(buffer));
+    String[][] s = strings.read(buffer);
+    assertEquals(3, s.length);
+    assertArrayEquals(new String[]{"a", null}, s[0]);
+    assertNull(s[1]);
+    assertEquals(0, s[2].length);
+    assertArrayEquals(new E[]{E.b, null, E.a}, enums.read(buffer));
+    assertArrayEquals(new Integer[]{1, null}, boxed.read(buffer));
+    assertEquals(0, buffer.remaining());
+  }
+
+  @Test
+  public void overflow() {
+    ByteBuffer buffer = ByteBuffer.allocate(4);
+    assertThrows(BufferOverflowException.class, () -> binaryLiteral(String.class).write("too long", buffer));
+    assertThrows(BufferOverflowException.class, () -> binaryLiteral(double[].class).write(new double[]{1}, buffer));
+  }
+
+  @Test
+  public void register() {
+    class Point {
+      Point(int x, int y) { this.x = x; this.y = y; }
+      final int x, y;
+    }
+    class PointLiteral extends Literal.NullableLiteral<Point> implements BinaryLiteral<Point> {
+      @Override
+      protected Point toValueNonNull(String repr) {
+        String[] xy = repr.split(":");
+        return new Point(Integer.parseInt(xy[0]), Integer.parseInt(xy[1]));
+      }
+
+      @Override
+      protected String toTextNonNull(Point value) {
+        return value.x + ":" + value.y;
+      }
+
+      @Override
+      public void write(Point value, ByteBuffer out) {
+        BinaryLiteral.writeSignedVarLong(value.x, out);
+        BinaryLiteral.writeSignedVarLong(value.y, out);
+      }
+
+      @Override
+      public Point read(ByteBuffer in) {
+        return new Point((int)BinaryLiteral.readSignedVarLong(in), (int)BinaryLiteral.readSignedVarLong(in));
+      }
+    }
+    assertNull(binaryLiteral(Point.class));
+
+    PointLiteral points = new PointLiteral();
+    Literal.Register.add(Point.class, points);
+    try {
+      assertSame(points, binaryLiteral(Point.class));
+      ByteBuffer buffer = ByteBuffer.allocate(16);
+      binaryLiteral(Point[].class).write(new Point[]{new Point(1, -2)}, buffer);
+      buffer.flip();
+      assertEquals(-2, binaryLiteral(Point[].class).read(buffer)[0].y);
+    } finally {
+      Literal.Register.remove(Point.class);
+    }
+    assertNull(binaryLiteral(Point.class));
+    assertNull(binaryLiteral(StringBuilder.class));
+  }
+
+  private static <T> void assertRoundTrip(Class<T> cls, T value, int size) {
+    BinaryLiteral<T> literal = binaryLiteral(cls);
+    assertNotNull(literal, cls + " has no binary literal");
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    literal.write(value, buffer);
+    assertEquals(size, buffer.position(), "Size of " + value);
+    buffer.flip();
+    assertEquals(value, literal.read(buffer));
+    assertEquals(0, buffer.remaining());
+  }
+}
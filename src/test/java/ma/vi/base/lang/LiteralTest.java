@@ -6,7 +6,9 @@ package ma.vi.base.lang;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.StringWriter;
 import java.util.Date;
+import java.util.Random;
 
 import static ma.vi.base.lang.Literal.*;
 import static ma.vi.base.reflect.Classes.classOf;
@@ -179,6 +181,11 @@ public class LiteralTest {
     assertEquals(toText(E.class, E.a), "a");
     assertEquals(toText(E.class, E.b), "b");
     assertEquals(toText(E.class, E.c), "c");
+
+    assertNull(toValue(E.class, NULL_LITERAL));
+    assertEquals(E.a, toValue(E.class, "a"));
+    assertEquals(E.c, toValue(E.class, "c"));
+    assertThrows(IllegalArgumentException.class, () -> toValue(E.class, "d"));
   }
 
   @Test
@@ -377,4 +384,107 @@ public class LiteralTest {
     assertArrayEquals(toValue(classOf(e), "[[],[]]"), e);
     assertArrayEquals(toValue(classOf(f), "[[[1,2,3],[4]],[[7,8]]]"), f);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void arrayRoundTrip() throws Exception {
+    Random random = new Random(1);
+    int[] ints = random.ints(100_000).toArray();
+    long[] longs = random.longs(1_000).toArray();
+    double[] doubles = random.doubles(1_000).map(d -> d * 1e10 - 5e9).toArray();
+    float[] floats = new float[1_000];
+    short[] shorts = new short[1_000];
+    byte[] bytes = new byte[1_000];
+    boolean[] booleans = new boolean[1_000];
+    for (int i = 0; i < 1_000; i++) {
+      floats[i] = random.nextFloat() * 1000;
+      shorts[i] = (short)random.nextInt();
+      bytes[i] = (byte)random.nextInt();
+      booleans[i] = random.nextBoolean();
+    }
+    assertArrayEquals(ints, toValue(int[].class, toText(int[].class, ints)));
+    assertArrayEquals(longs, toValue(long[].class, toText(long[].class, longs)));
+    assertArrayEquals(doubles, toValue(double[].class, toText(double[].class, doubles)));
+    assertArrayEquals(floats, toValue(float[].class, toText(float[].class, floats)));
+    assertArrayEquals(shorts, toValue(short[].class, toText(short[].class, shorts)));
+    assertArrayEquals(bytes, toValue(byte[].class, toText(byte[].class, bytes)));
+    assertArrayEquals(booleans, toValue(boolean[].class, toText(boolean[].class, booleans)));
+
+    char[] chars = {'a', '[', ',', ']', '\\'};
+    assertEquals("[a,\\[,\\,,\\],\\]", toText(char[].class, chars));
+    assertArrayEquals(new char[]{'a', '[', ',', ']'}, toValue(char[].class, "[a,\\[,\\,,\\]]"));
+    assertThrows(IllegalArgumentException.class, () -> toValue(char[].class, "[a,,b]"));
+    assertThrows(IllegalArgumentException.class, () -> toValue(char[].class, "[a,bc]"));
+
+    String[][] strings = {{"a\\Nb", null, ""}, null, {}, {"x,y", "[z]"}};
+    String text = toText(String[][].class, strings);
+    assertEquals("[[a\\Nb,\\N,],\\N,[],[x\\,y,\\[z\\]]]", text);
+    assertArrayEquals(new String[][]{{"a\\Nb", null}, null, {}, {"x,y", "[z]"}}, toValue(String[][].class, text));
+
+    assertThrows(IllegalArgumentException.class, () -> toValue(int[].class, "[1,\\N]"));
+    assertThrows(IllegalArgumentException.class, () -> toValue(int[][].class, "[[1],[2]"));
+    assertThrows(NumberFormatException.class, () -> toValue(int[].class, "[1, 2]"));
+  }
+
+  @Test
+  public void arrayStreaming() throws Exception {
+    int[][] matrix = new int[200][];
+    for (int i = 0; i < matrix.length; i++) {
+      matrix[i] = new Random(i).ints(i).toArray();
+    }
+    ArrayLiteral<int[][]> literal = (ArrayLiteral<int[][]>)literal(int[][].class);
+    StringWriter out = new StringWriter();
+    literal.toText(matrix, out);
+    assertEquals(toText(int[][].class, matrix), out.toString());
+
+    String text = "values: " + out + ";";
+    assertArrayEquals(matrix, literal.toValue(text, 8, text.length() - 1));
+    assertNull(literal.toValue("x\\Ny", 1, 3));
+
+    StringBuilder nulls = new StringBuilder();
+    literal.toText(null, nulls);
+    assertEquals(NULL_LITERAL, nulls.toString());
+  }
+
+  @Test
+  public void register() throws Exception {
+    class Point {
+      Point(int x, int y) { this.x = x; this.y = y; }
+      final int x, y;
+    }
+    assertFalse(isLiteral(Point.class));
+    assertFalse(isLiteral(Point[].class));
+    assertNull(literal(Point.class));
+
+    Literal<Point> points = new NullableLiteral<>() {
+      @Override
+      protected Point toValueNonNull(String repr) {
+        String[] xy = repr.split(":");
+        return new Point(Integer.parseInt(xy[0]), Integer.parseInt(xy[1]));
+      }
+
+      @Override
+      protected String toTextNonNull(Point value) {
+        return value.x + ":" + value.y;
+      }
+    };
+    Register.add(Point.class, points);
+    try {
+      assertTrue(isLiteral(Point.class));
+      assertTrue(isLiteral(Point[].class));
+      assertSame(points, literal(Point.class));
+      assertEquals("[1:2,3:4]", toText(Point[].class, new Point[]{new Point(1, 2), new Point(3, 4)}));
+      assertEquals(4, toValue(Point[].class, "[1:2,3:4]")[1].y);
+    } finally {
+      Register.remove(Point.class);
+    }
+    assertFalse(isLiteral(Point.class));
+    assertFalse(isLiteral(Point[].class));
+
+    assertTrue(isLiteral(E[][].class));
+    assertSame(literal(E[].class), literal(E[].class));
+    assertFalse(isLiteral(Object.class));
+    assertFalse(isLiteral(void.class));
+    assertThrows(IllegalArgumentException.class, () -> Register.add(Integer.class, literal(Integer.class)));
+    assertThrows(IllegalArgumentException.class, () -> Register.remove(int[].class));
+  }
+}
@@ -13,7 +13,7 @@ import java.util.*;
 
 import static java.util.Collections.singleton;
 import static ma.vi.base.reflect.Dissector.*;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author Vikash Madhow (vikash.madhow@gmail.com)
@@ -244,4 +244,138 @@ public class ClassDissectorTest {
     assertEquals(props.get("a").get(e), "One");
     assertEquals(props.get("b").get(e), 1);
   }
-}
\ No newline at end of file
+
+  static class F {
+    public long getCount() {
+      return count;
+    }
+
+    public void setCount(long count) {
+      this.count = count;
+    }
+
+    private long count;
+    private int size;
+    private Integer boxed;
+    private boolean flag;
+    private String name;
+  }
+
+  @Test
+  public void propertyAccessors() {
+    Map<String, Property> props = Dissector.properties(F.class);
+    F f = new F();
+
+    props.get("count").setLong(f, 42L);
+    assertEquals(42L, f.count);
+    assertEquals(42L, props.get("count").getLong(f));
+    assertEquals(42.0, props.get("count").getDouble(f));
+    props.get("count").setInt(f, 7);
+    assertEquals(7L, props.get("count").get(f));
+
+    props.get("size").setInt(f, 3);
+    assertEquals(3, props.get("size").getInt(f));
+    assertEquals(3L, props.get("size").getLong(f));
+    props.get("size").set(f, 4);
+    assertEquals(4, f.size);
+
+    props.get("boxed").setInt(f, 5);
+    assertEquals(5, props.get("boxed").getInt(f));
+    props.get("boxed").set(f, null);
+    assertThrows(NullPointerException.class, () -> props.get("boxed").getInt(f));
+
+    props.get("flag").setBoolean(f, true);
+    assertTrue(props.get("flag").getBoolean(f));
+    props.get("name").set(f, "x");
+    assertEquals("x", props.get("name").get(f));
+
+    assertThrows(IllegalArgumentException.class, () -> props.get("count").getInt(f));
+    assertThrows(IllegalArgumentException.class, () -> props.get("name").getInt(f));
+    assertThrows(IllegalArgumentException.class, () -> props.get("name").set(f, 1));
+    assertThrows(IllegalArgumentException.class, () -> props.get("size").set(f, null));
+    assertThrows(IllegalArgumentException.class, () -> props.get("size").set(f, "4"));
+    assertThrows(IllegalArgumentException.class, () -> props.get("name").get("f"));
+    assertThrows(IllegalArgumentException.class, () -> props.get("name").set("f", "x"));
+    assertThrows(IllegalArgumentException.class, () -> props.get("size").setInt("f", 1));
+    assertThrows(NullPointerException.class, () -> props.get("name").get(null));
+    assertThrows(IllegalArgumentException.class, () -> Dissector.properties(E.class).get("a").set(new E("a", 1), "b"));
+  }
+
+  static class Failing {
+    public String getChecked() throws java.io.IOException {
+      throw new java.io.IOException("checked");
+    }
+
+    public int getUnchecked() {
+      throw new IllegalStateException("unchecked");
+    }
+
+    public String getCast() {
+      return null;
+    }
+
+    public void setCast(String cast) {
+      throw new ClassCastException("cast");
+    }
+  }
+
+  @Test
+  public void accessorExceptions() {
+    Map<String, Property> props = Dissector.properties(Failing.class);
+    RuntimeException e = assertThrows(RuntimeException.class, () -> props.get("checked").get(new Failing()));
+    assertTrue(e.getCause() instanceof java.io.IOException);
+    assertThrows(IllegalStateException.class, () -> props.get("unchecked").getInt(new Failing()));
+    assertThrows(IllegalStateException.class, () -> props.get("unchecked").get(new Failing()));
+    assertThrows(ClassCastException.class, () -> props.get("cast").set(new Failing(), "x"));
+  }
+
+  @Test
+  public void metadataComputedOnce() throws Exception {
+    class G {
+      private int a;
+      public String getB() { return null; }
+    }
+    int threads = 8;
+    List<Object> results = Collections.synchronizedList(new ArrayList<>());
+    java.util.concurrent.CountDownLatch start = new java.util.concurrent.CountDownLatch(1);
+    List<Thread> workers = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      Thread t = new Thread(() -> {
+        try {
+          start.await();
+          results.add(Dissector.properties(G.class));
+          results.add(componentClasses(G.class));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      workers.add(t);
+      t.start();
+    }
+    start.countDown();
+    for (Thread t: workers) {
+      t.join();
+    }
+    assertEquals(2 * threads, results.size());
+    for (int i = 0; i < results.size(); i += 2) {
+      assertSame(Dissector.properties(G.class), results.get(i));
+      assertSame(componentClasses(G.class), results.get(i + 1));
+    }
+    assertTrue(Dissector.properties(G.class).keySet().containsAll(Set.of("a", "b")));
+    assertThrows(UnsupportedOperationException.class, () -> Dissector.properties(G.class).clear());
+  }
+
+  @Test
+  public void preload() {
+    Dissector.PreloadReport report = Dissector.preload(List.of(A.class, B.class, C.class, D.class, E.class));
+    assertEquals(5, report.classes());
+    assertTrue(report.failures().isEmpty());
+    assertFalse(report.elapsed().isNegative());
+    assertFalse(report.work().isNegative());
+
+    report = Dissector.preload("ma.vi.base.tuple", getClass().getClassLoader());
+    assertTrue(report.classes() >= 7, "Classes preloaded: " + report.classes());
+    assertTrue(report.failures().isEmpty());
+    assertTrue(properties(ma.vi.base.tuple.T2.class).containsKey("a"));
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.reflect;
+
+import ma.vi.base.tuple.T2;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class ClassesTest {
+  static class V {
+    V(int a)              { this.made = "int"; }
+    V(Number a)           { this.made = "Number"; }
+    V(Object a)           { this.made = "Object"; }
+    V(long a, CharSequence b) { this.made = "long,CharSequence"; }
+    final String made;
+  }
+
+  static class W {
+    W(Object a, String b) { this.made = "Object,String"; }
+    W(String a, Object b) { this.made = "String,Object"; }
+    W(int a)              { this.made = "int"; }
+    W(Integer a)          { this.made = "Integer"; }
+    final String made;
+  }
+
+  static abstract class Abstract {
+    Abstract() {}
+  }
+
+  enum Colour { RED, GREEN }
+
+  @Test
+  public void instanceOf() {
+    assertEquals("int",    ((V)Classes.instanceOf(V.class, 1)).made);
+    assertEquals("Number", ((V)Classes.instanceOf(V.class, 1.5)).made);
+    assertEquals("Number", ((V)Classes.instanceOf(V.class, new BigDecimal("2"))).made);
+    assertEquals("Object", ((V)Classes.instanceOf(V.class, "x")).made);
+    assertEquals("Object", ((V)Classes.instanceOf(V.class, (Object)null)).made);
+    assertEquals("long,CharSequence", ((V)Classes.instanceOf(V.class, 2L, new StringBuilder("b"))).made);
+    assertEquals("long,CharSequence", ((V)Classes.instanceOfWithTypes(V.class,
+                                                                       T2.of(3L, long.class),
+                                                                       T2.of("c", String.class))).made);
+
+    assertEquals(42, Classes.instanceOf(int.class, "42"));
+    assertEquals('a', Classes.instanceOf(Character.class, "abc"));
+    assertEquals(Colour.GREEN, Classes.instanceOf(Colour.class, "GREEN"));
+    assertEquals(List.of(), Classes.instanceOf(ArrayList.class));
+
+    assertThrows(IllegalArgumentException.class, () -> Classes.instanceOf(V.class, 1, 2));
+    assertThrows(IllegalArgumentException.class, () -> Classes.instanceOf(Abstract.class));
+    assertThrows(IllegalArgumentException.class, () -> Classes.instanceOf(Colour.class, "BLUE"));
+    assertNull(Classes.instanceOfOrNull(Integer.class, "x"));
+  }
+
+  @Test
+  public void instanceFactory() throws Throwable {
+    MethodHandle factory = Classes.instanceFactory(BigDecimal.class, String.class);
+    assertSame(factory, Classes.instanceFactory(BigDecimal.class, String.class));
+    assertEquals(new BigDecimal("1.25"), (Object)factory.invokeExact("1.25"));
+
+    MethodHandle ints = Classes.instanceFactory(V.class, Integer.class);
+    assertEquals("int", ((V)(Object)ints.invokeExact((Integer)7)).made);
+    assertSame(Classes.instanceFactory(V.class, long.class, String.class),
+               Classes.instanceFactory(V.class, long.class, String.class));
+  }
+
+  @Test
+  public void ambiguousConstructors() {
+    // neither (Object, String) nor (String, Object) is more specific for (String, String)
+    assertThrows(IllegalArgumentException.class, () -> Classes.instanceOf(W.class, "a", "b"));
+    assertThrows(IllegalArgumentException.class, () -> Classes.instanceFactory(W.class, String.class, String.class));
+    assertEquals("Object,String", ((W)Classes.instanceOf(W.class, 1, "b")).made);
+    assertEquals("String,Object", ((W)Classes.instanceOf(W.class, "a", 1)).made);
+
+    // constructors differing only in boxing are not ambiguous
+    assertEquals("int", ((W)Classes.instanceOfWithTypes(W.class, T2.of(1, int.class))).made);
+    assertEquals("Integer", ((W)Classes.instanceOf(W.class, 1)).made);
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.reflect;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class CopierTest {
+  public static class Entity {
+    private int id;
+    private long version;
+    private String name;
+    private Integer count;
+    private double score;
+    private String code;
+    private boolean active;
+
+    public int getId()              { return id; }
+    public void setId(int id)       { this.id = id; }
+    public String getName()         { return name; }
+    public void setName(String n)   { this.name = n; }
+  }
+
+  public static class Dto {
+    public long id;           // widened from int
+    public Long version;      // boxed from long
+    public String name;
+    public int count;         // unboxed from Integer
+    public String score;      // needs conversion
+    public int code;          // needs conversion
+    public boolean active;
+    public String extra;      // not in source
+  }
+
+  public record Point(int x, int y) {}
+
+  public static class MutablePoint {
+    public int x;
+    public int y;
+  }
+
+  @Test
+  public void copyCompatible() {
+    Entity e = entity(1);
+    Copier<Entity, Dto> copier = Copier.of(Entity.class, Dto.class);
+    assertSame(copier, Copier.of(Entity.class, Dto.class));
+    assertEquals(Set.of("id", "version", "name", "count", "active"), copier.properties());
+
+    Dto d = copier.copy(e);
+    assertEquals(1L, d.id);
+    assertEquals(10L, d.version);
+    assertEquals("e1", d.name);
+    assertEquals(2, d.count);
+    assertTrue(d.active);
+    assertNull(d.score);
+    assertEquals(0, d.code);
+
+    e.count = null;
+    assertThrows(NullPointerException.class, () -> copier.copy(e));
+  }
+
+  @Test
+  public void copyWithConversion() {
+    Copier<Entity, Dto> copier = Copier.of(Entity.class, Dto.class, true);
+    assertNotSame(copier, Copier.of(Entity.class, Dto.class));
+    assertEquals(Set.of("id", "version", "name", "count", "score", "code", "active"), copier.properties());
+
+    Dto d = copier.copy(entity(3), new Dto());
+    assertEquals("4.5", d.score);
+    assertEquals(42, d.code);
+
+    Copier<Dto, Entity> back = Copier.of(Dto.class, Entity.class, true);
+    Entity e = back.copy(d);
+    assertEquals(3, e.id);
+    assertEquals(4.5, e.score);
+    assertEquals("42", e.code);
+  }
+
+  @Test
+  public void copyRecordsAndBatches() {
+    Copier<Point, MutablePoint> copier = Copier.of(Point.class, MutablePoint.class);
+    List<MutablePoint> points = copier.copyAll(Arrays.asList(new Point(1, 2), null, new Point(3, 4)));
+    assertEquals(3, points.size());
+    assertEquals(1, points.get(0).x);
+    assertEquals(2, points.get(0).y);
+    assertNull(points.get(1));
+    assertEquals(4, points.get(2).y);
+
+    // records are not writable and have no no-argument constructor
+    Copier<MutablePoint, Point> reverse = Copier.of(MutablePoint.class, Point.class);
+    assertTrue(reverse.properties().isEmpty());
+    assertThrows(IllegalArgumentException.class, () -> reverse.copy(new MutablePoint()));
+  }
+
+  private static Entity entity(int i) {
+    Entity e = new Entity();
+    e.id = i;
+    e.version = 10L * i;
+    e.name = "e" + i;
+    e.count = 2;
+    e.score = 4.5;
+    e.code = "42";
+    e.active = true;
+    return e;
+  }
+}
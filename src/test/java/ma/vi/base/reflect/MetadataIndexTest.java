@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.reflect;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+class MetadataIndexTest {
+  @Test
+  void indexMatchesReflection(@TempDir Path dir) throws Exception {
+    write(dir, "test/Base.java", """
+        package test;
+        public class Base {
+          public int count;
+          private String hidden;
+          public String getLabel() { return null; }
+          public void setLabel(String label) {}
+        }""");
+    write(dir, "test/Person.java", """
+        package test;
+        @ma.vi.base.reflect.Indexed
+        public class Person extends Base implements Named, Comparable<Person> {
+          public Person() {}
+          Person(String name, int[] scores, java.util.List<String>[] tags) {}
+          public void setName(String name) {}
+          public boolean isActive() { return true; }
+          public void setActive(boolean active) {}
+          public void setOnly(long value) {}
+          public String[][] getMatrix() { return null; }
+          public int compareTo(Person o) { return 0; }
+          private String name;
+          private transient java.util.Map<String, Integer> map;
+          public static final int CONSTANT = 1;
+          public static class Inner { public int x; }
+        }""");
+    write(dir, "test/Named.java", """
+        package test;
+        public interface Named {
+          default String getName() { return null; }
+          void setName(String name);
+        }""");
+    write(dir, "test/Point.java", """
+        package test;
+        @ma.vi.base.reflect.Indexed
+        public record Point(int x, int y, String label) {}""");
+
+    write(dir, "test/Item.java", """
+        package test;
+        @ma.vi.base.reflect.Indexed
+        public class Item {
+          public String getCode() { return null; }
+        }""");
+
+    compile(dir, true, "test/Base.java", "test/Named.java", "test/Person.java", "test/Point.java", "test/Item.java");
+    assertTrue(Files.exists(dir.resolve(MetadataIndex.PATH + "test.Person")));
+    assertTrue(Files.exists(dir.resolve(MetadataIndex.PATH + "test.Point")));
+    assertFalse(Files.exists(dir.resolve(MetadataIndex.PATH + "test.Base")));
+
+    try (URLClassLoader loader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, getClass().getClassLoader())) {
+      for (String name: List.of("test.Person", "test.Point", "test.Item")) {
+        Class<?> cls = loader.loadClass(name);
+        assertNotNull(MetadataIndex.read(cls), name);
+
+        ClassInfo reflected = new ClassInfo(cls, false);
+        assertEquals(reflected.properties(), Dissector.properties(cls), name);
+        assertEquals(reflected.constructors(), Dissector.constructors(cls), name);
+      }
+      Class<?> base = loader.loadClass("test.Base");
+      assertNull(MetadataIndex.read(base));
+      assertEquals(new ClassInfo(base, false).properties(), Dissector.properties(base));
+    }
+
+    // an index that does not match the class is ignored
+    Path index = dir.resolve(MetadataIndex.PATH + "test.Point");
+    Files.writeString(index, Files.readString(index).replace("p x int", "p x long"));
+    try (URLClassLoader loader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, getClass().getClassLoader())) {
+      Class<?> cls = loader.loadClass("test.Point");
+      assertNull(MetadataIndex.read(cls));
+      assertEquals(new ClassInfo(cls, false).properties(), Dissector.properties(cls));
+    }
+
+    // as is an index generated against different supertypes, e.g. an older version
+    // of a superclass from another library
+    write(dir, "test/Base.java", """
+        package test;
+        public class Base {
+          public int count;
+          private String hidden;
+          public String getLabel() { return null; }
+          public void setLabel(String label) {}
+          public long getSize() { return 0; }
+        }""");
+    compile(dir, false, "test/Base.java");
+    try (URLClassLoader loader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, getClass().getClassLoader())) {
+      Class<?> cls = loader.loadClass("test.Person");
+      assertNull(MetadataIndex.read(cls));
+      assertTrue(Dissector.properties(cls).containsKey("size"));
+      assertEquals(new ClassInfo(cls, false).properties(), Dissector.properties(cls));
+    }
+
+    // or against a different version of the class itself, recompiled without the processor
+    write(dir, "test/Item.java", """
+        package test;
+        @ma.vi.base.reflect.Indexed
+        public class Item {
+          public String getCode() { return null; }
+          public int getQuantity() { return 0; }
+        }""");
+    compile(dir, false, "test/Item.java");
+    try (URLClassLoader loader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, getClass().getClassLoader())) {
+      Class<?> cls = loader.loadClass("test.Item");
+      assertNull(MetadataIndex.read(cls));
+      assertTrue(Dissector.properties(cls).containsKey("quantity"));
+      assertEquals(new ClassInfo(cls, false).properties(), Dissector.properties(cls));
+    }
+  }
+
+  /**
+   * Compiles the source files in the folder, with or without the metadata index
+   * processor.
+   */
+  private static void compile(Path dir, boolean index, String... files) throws Exception {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+      Iterable<? extends JavaFileObject> sources = fileManager.getJavaFileObjects(
+          Arrays.stream(files).map(f -> dir.resolve(f).toFile()).toArray(File[]::new));
+      String classpath = new File(Indexed.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath()
+                       + File.pathSeparator + dir;
+      JavaCompiler.CompilationTask task = compiler.getTask(
+          null, fileManager, null, List.of("-d", dir.toString(), "-cp", classpath), null, sources);
+      task.setProcessors(index ? List.of(new MetadataIndexProcessor()) : List.of());
+      assertTrue(task.call());
+    }
+  }
+
+  private static void write(Path dir, String file, String content) throws Exception {
+    Path path = dir.resolve(file);
+    Files.createDirectories(path.getParent());
+    Files.writeString(path, content);
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.reflect;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class RecordsTest {
+  record Item(String name, int quantity, double price, Long id) {}
+
+  @Test
+  public void newInstanceAndAccessors() throws Throwable {
+    assertEquals(List.of("name", "quantity", "price", "id"), Records.componentNames(Item.class));
+
+    Item item = Records.newInstance(Item.class, "pen", 3, 1.5, 7L);
+    assertEquals(new Item("pen", 3, 1.5, 7L), item);
+    assertEquals(3, (Object)Records.accessor(Item.class, "quantity").invokeExact((Object)item));
+    assertSame(Records.canonicalConstructor(Item.class), Records.canonicalConstructor(Item.class));
+    assertEquals(item, (Object)Records.canonicalConstructor(Item.class).invokeExact(new Object[]{"pen", 3, 1.5, 7L}));
+
+    assertThrows(IllegalArgumentException.class, () -> Records.newInstance(Item.class, "pen"));
+    assertThrows(IllegalArgumentException.class, () -> Records.accessor(Item.class, "unknown"));
+  }
+
+  @Test
+  public void mapConversions() {
+    Item item = new Item("book", 2, 12.5, null);
+    Map<String, Object> map = Records.toMap(item);
+    assertEquals(List.of("name", "quantity", "price", "id"), List.copyOf(map.keySet()));
+    assertEquals(2, map.get("quantity"));
+    assertEquals(item, Records.fromMap(Item.class, map));
+
+    Map<String, Object> partial = new HashMap<>();
+    partial.put("name", "cup");
+    partial.put("quantity", "4");
+    partial.put("id", 9);
+    assertEquals(new Item("cup", 4, 0.0, 9L), Records.fromMap(Item.class, partial));
+
+    assertThrows(IllegalArgumentException.class, () -> Records.fromMap((Class)String.class, partial));
+  }
+}
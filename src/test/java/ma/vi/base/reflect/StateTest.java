@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.reflect;
+
+import ma.vi.base.lang.NotFoundException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class StateTest {
+  public static class Person {
+    public String name;
+    public Address address;
+    public Object extra;
+  }
+
+  public static class Address {
+    public String city;
+    public Address next;
+  }
+
+  public static class PostalAddress extends Address {
+    public String code;
+  }
+
+  @Test
+  public void getAndSet() {
+    Person p = new Person();
+    assertNull(State.get(p, "address.city"));
+    assertThrows(NullPointerException.class, () -> State.set(p, "address.city", "Paris"));
+
+    State.set(p, "address", new Address());
+    State.set(p, "address.city", "Paris");
+    assertEquals("Paris", p.address.city);
+    assertEquals("Paris", State.get(p, "address.city"));
+    assertNull(State.get(p, "address.next.city"));
+
+    assertThrows(NotFoundException.class, () -> State.get(p, "unknown"));
+    assertThrows(NotFoundException.class, () -> State.get(p, "address.unknown"));
+  }
+
+  @Test
+  public void compiledPath() {
+    PropertyPath city = State.compile(Person.class, "address.next.city");
+    assertSame(city, State.compile(Person.class, "address.next.city"));
+    assertEquals("address.next.city", city.path());
+
+    Person p = new Person();
+    p.address = new Address();
+    assertNull(city.get(p));
+    assertThrows(NullPointerException.class, () -> city.set(p, "Rome"));
+
+    p.address.next = new PostalAddress();
+    city.set(p, "Rome");
+    assertEquals("Rome", city.get(p));
+    p.address.next = new Address();
+    assertNull(city.get(p));
+
+    // properties only found in the runtime class of intermediate values
+    p.extra = new PostalAddress();
+    PropertyPath code = State.compile(Person.class, "extra.code");
+    code.set(p, "75001");
+    assertEquals("75001", code.get(p));
+    p.extra = new Address();
+    assertThrows(NotFoundException.class, () -> code.get(p));
+
+    assertThrows(NotFoundException.class, () -> State.compile(Person.class, "unknown.city"));
+    assertThrows(IllegalArgumentException.class, () -> State.compile(Person.class, "address..city"));
+    assertThrows(IllegalArgumentException.class, () -> State.compile(Person.class, ""));
+  }
+}
@@ -0,0 +1,99 @@
+package ma.vi.base.unionfind;
+
+import ma.vi.base.io.NoMoreSpaceException;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+class MappedUnionFindTest {
+
+  @Test
+  void unionAndReopen() throws Exception {
+    File dir = Files.createTempDirectory("muf").toFile();
+    try (MappedUnionFind uf = new MappedUnionFind(dir, 100_001)) {
+      assertEquals(10L, uf.find(10L));
+      assertEquals(Long.MIN_VALUE, uf.find(Long.MIN_VALUE));
+      assertFalse(uf.contains(11L));
+
+      // link even and odd numbers in two separate components
+      for (long i = 2; i < 100_000; i++) {
+        uf.union(i - 2, i);
+      }
+      assertEquals(100_001, uf.elementCount());
+      assertEquals(3, uf.componentCount());
+      assertEquals(uf.find(0L), uf.find(99_998L));
+      assertEquals(uf.find(1L), uf.find(99_999L));
+      assertNotEquals(uf.find(0L), uf.find(1L));
+      assertThrows(NoMoreSpaceException.class, () -> uf.find(-1L));
+    }
+
+    try (MappedUnionFind uf = new MappedUnionFind(dir, 100_001)) {
+      assertEquals(100_001, uf.elementCount());
+      assertEquals(3, uf.componentCount());
+      assertTrue(uf.contains(Long.MIN_VALUE));
+      assertEquals(uf.find(2L), uf.find(50_000L));
+      assertNotEquals(uf.find(2L), uf.find(50_001L));
+
+      uf.union(0L, 1L);
+      assertEquals(2, uf.componentCount());
+      assertEquals(uf.find(2L), uf.find(50_001L));
+    }
+    for (File f: dir.listFiles()) f.delete();
+    dir.delete();
+  }
+
+  @Test
+  void countsKeptWithoutFlush() throws Exception {
+    File dir = Files.createTempDirectory("muf").toFile();
+    try (MappedUnionFind uf = new MappedUnionFind(dir, 100)) {
+      uf.union(1L, 2L);
+      uf.union(3L, 4L);
+      uf.find(5L);
+
+      // as seen by a process opening the files after this one died without flushing
+      try (MappedUnionFind reopened = new MappedUnionFind(dir, 100)) {
+        assertEquals(5, reopened.elementCount());
+        assertEquals(3, reopened.componentCount());
+      }
+    }
+    for (File f: dir.listFiles()) f.delete();
+    dir.delete();
+  }
+
+  @Test
+  void differentCapacity() throws Exception {
+    File dir = Files.createTempDirectory("muf").toFile();
+    new MappedUnionFind(dir, 100).close();
+    // same table size as for 100 elements
+    assertThrows(IllegalArgumentException.class, () -> new MappedUnionFind(dir, 101));
+    assertThrows(IllegalArgumentException.class, () -> new MappedUnionFind(dir, 1000));
+    assertEquals(256 * Long.BYTES, new File(dir, "parents").length());
+
+    for (File f: dir.listFiles()) f.delete();
+    dir.delete();
+  }
+
+  @Test
+  void useAfterClose() throws Exception {
+    File dir = Files.createTempDirectory("muf").toFile();
+    MappedUnionFind uf = new MappedUnionFind(dir, 100);
+    uf.union(1L, 2L);
+    uf.close();
+    uf.close();
+    assertThrows(IllegalStateException.class, () -> uf.find(1L));
+    assertThrows(IllegalStateException.class, () -> uf.union(1L, 3L));
+    assertThrows(IllegalStateException.class, () -> uf.contains(1L));
+    assertThrows(IllegalStateException.class, uf::flush);
+    assertThrows(IllegalStateException.class, uf::componentCount);
+    assertEquals(100, uf.capacity());
+
+    for (File f: dir.listFiles()) f.delete();
+    dir.delete();
+  }
+}
@@ -1,8 +1,11 @@
 package ma.vi.base.unionfind;
 
+import ma.vi.base.tuple.T2;
 import org.junit.jupiter.api.Test;
 
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -59,4 +62,57 @@ class UnionFindTest {
     assertSame(uf.find(1), uf.find(3));
     assertSame(uf.find(2), uf.find(3));
   }
-}
\ No newline at end of file
+
+  @Test
+  void parallelUnion() throws Exception {
+    /*
+     * Link 10 chains of 10,000 elements each, with the edges
+     * processed in parallel and in no particular order.
+     */
+    int chains = 10, length = 10_000;
+    UnionFind<Integer, Integer> uf = new UnionFind<>();
+    ForkJoinPool pool = new ForkJoinPool(8);
+    pool.submit(() -> IntStream.range(0, chains * length)
+                               .parallel()
+                               .forEach(i -> {
+                                 if (i % length != 0) uf.union(i - 1, i);
+                                 uf.add(i, i);
+                               })).get();
+    pool.shutdown();
+
+    Set<Integer> components = uf.components();
+    assertEquals(chains, components.size());
+    assertEquals(chains, uf.componentCount());
+    for (int c = 0; c < chains; c++) {
+      Integer root = uf.find(c * length);
+      assertTrue(components.contains(root));
+      assertEquals(length, uf.elements(root).size());
+      assertEquals(length, uf.componentSize(root));
+      for (int i = c * length; i < (c + 1) * length; i++) {
+        assertSame(root, uf.find(i));
+      }
+    }
+  }
+
+  @Test
+  void componentStatistics() {
+    UnionFind<Integer, ?> uf = new UnionFind<>(false);
+    uf.unionAll(new Integer[]{1, 2, 4, 6}, new Integer[]{2, 3, 5, 6});
+    assertEquals(3, uf.componentCount());
+    assertEquals(3, uf.componentSize(1));
+    assertEquals(3, uf.componentSize(3));
+    assertEquals(2, uf.componentSize(5));
+    assertEquals(1, uf.componentSize(6));
+
+    uf.unionAll(IntStream.range(0, 100).parallel().mapToObj(i -> T2.of(6, i + 100)));
+    assertEquals(3, uf.componentCount());
+    assertEquals(101, uf.componentSize(150));
+
+    uf.union(3, 4);
+    assertEquals(2, uf.componentCount());
+    assertEquals(5, uf.componentSize(1));
+    assertEquals(Set.of(uf.find(1), uf.find(6)), uf.components());
+
+    assertThrows(UnsupportedOperationException.class, () -> uf.elements(1));
+  }
+}
@@ -2,10 +2,14 @@ package ma.vi.base.util;
 
 import org.junit.jupiter.api.Test;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.time.LocalDate;
-import java.util.UUID;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author Vikash Madhow (vikash.madhow@gmail.com)
@@ -74,6 +78,126 @@ public class ConvertTest {
     assertEquals(date(2077, 6, 30), Convert.toType("2077-JUNE-30", "date"));
   }
 
+  @Test
+  public void convertText() {
+    assertEquals(42, Convert.convert("42", Integer.class));
+    assertEquals(42, Convert.convert("42.9", Integer.class));
+    assertEquals(0L, Convert.convert(".5", Long.class));
+    assertEquals((short)-7, Convert.convert("-7", Short.class));
+    assertEquals((byte)12, Convert.convert("12", Byte.class));
+    assertEquals(1.5, Convert.convert("1.5", Double.class));
+    assertEquals(2.25f, Convert.convert("2.25", Float.class));
+    assertEquals(new BigInteger("123456789012345678901234567890"),
+                 Convert.convert("123456789012345678901234567890.5", BigInteger.class));
+    assertEquals(new BigDecimal("1.50"), Convert.convert("1.50", BigDecimal.class));
+    assertEquals(true, Convert.convert("TRUE", Boolean.class));
+    assertEquals(false, Convert.convert("yes", Boolean.class));
+    assertThrows(NumberFormatException.class, () -> Convert.convert("x", Integer.class));
+    assertThrows(NumberFormatException.class, () -> Convert.convert("300", Byte.class));
+  }
+
+  @Test
+  public void parseRanges() {
+    String text = "|123|-45|9223372036854775807|true|False|";
+    assertEquals(123, Numbers.parseInt(text, 1, 4));
+    assertEquals(-45, Numbers.parseShort(text, 5, 8));
+    assertEquals(Long.MAX_VALUE, Numbers.parseLong(text, 9, 28));
+    assertTrue(Convert.parseBoolean(text, 29, 33));
+    assertFalse(Convert.parseBoolean(text, 34, 39));
+    assertThrows(NumberFormatException.class, () -> Numbers.parseByte(text, 9, 12));
+    assertThrows(NumberFormatException.class, () -> Numbers.parseInt(text, 0, 4));
+
+    String[] doubles = {"0", "-0", "1", "-1.5", "3.141592653589793", "1e22", "1e23", "1.7976931348623157E308",
+                        "4.9e-324", "123456789012345", "1234567890123456789", "0.1", ".5", "5.", "+2.5e-3",
+                        "1E-22", "1e-23", "NaN", "-Infinity", " 7 ", "0x1p3", "2d", "0.000001", "100000000000000000000"};
+    for (String d: doubles) {
+      String wrapped = "[" + d + "]";
+      assertEquals(Double.parseDouble(d), Numbers.parseDouble(wrapped, 1, wrapped.length() - 1), d);
+      assertEquals(Float.parseFloat(d), Numbers.parseFloat(wrapped, 1, wrapped.length() - 1), d);
+    }
+    Random random = new Random(1);
+    for (int i = 0; i < 100_000; i++) {
+      String d = switch (i % 3) {
+        case 0  -> Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+        case 1  -> String.valueOf(random.nextInt(10_000_000)) + '.' + random.nextInt(1000);
+        default -> Float.toString(random.nextFloat() * (float)Math.pow(10, random.nextInt(20) - 10));
+      };
+      assertEquals(Double.parseDouble(d), Numbers.parseDouble(d, 0, d.length()), d);
+      assertEquals(Float.parseFloat(d), Numbers.parseFloat(d, 0, d.length()), d);
+    }
+    for (String bad: new String[]{"", "-", ".", "1e", "1e+", "1.2.3", "abc"}) {
+      assertThrows(NumberFormatException.class, () -> Numbers.parseDouble(bad, 0, bad.length()), bad);
+    }
+  }
+
+  @Test
+  public void detectDates() {
+    DateDetector detector = new DateDetector(false);
+    assertEquals(date(1977, 5, 17), detector.parse("05/17/1977"));
+    assertEquals(date(1977, 6, 5), detector.parse("05/06/1977"));
+    assertEquals(date(1977, 5, 17), detector.parse("May 17, 1977"));
+    assertEquals(date(2077, 6, 30), detector.parse("2077 30 06"));
+    assertEquals(date(2077, 6, 30), detector.parse("20770630"));
+    assertEquals(date(2077, 6, 30), detector.parse("30062077"));
+    assertEquals(date(1977, 5, 17), detector.parse("17-May-77"));
+    assertEquals(date(2077, 6, 30), detector.parse("2077-06-30 22:15"));
+    assertEquals(date(2077, 6, 30), detector.parse("2077-06-30 10:15:20 pm"));
+    assertEquals(date(2077, 6, 30), detector.parse("30 Jun 2077 10:15:20 UTC"));
+    assertEquals(date(2077, 6, 30), detector.parse("2077-06-30T10:15:30"));
+    assertEquals(date(1977, 5, 17), detector.parse("1977-05-17T00:00:00Z"));
+    assertEquals(date(2077, 6, 30), detector.parse("2077-06-30 10:15:30.123"));
+    assertEquals(date(2077, 6, 30), detector.parse("2077-06-30 10:15:30.123456789"));
+    assertEquals(date(2077, 6, 30), detector.parse("2077-06-30T10:15:30.5+05:30"));
+    assertEquals(date(2077, 6, 30), detector.parse("20770630 10:15:30.1"));
+    assertNull(detector.parse(null));
+    assertTrue(detector.canParse(null));
+
+    for (String bad: new String[]{"", "abc", "2077-02-30", "31/31/1977", "2077-06-30 25:00", "17 Foo 1977",
+                                  "1 2 3 4 5 6 7 8", "123-45-6789", "17.05.123 10:15",
+                                  "2077-06-30 10:15.123", "2077-06-30 10:15:30.1234567890"}) {
+      assertFalse(detector.canParse(bad), bad);
+      assertThrows(IllegalArgumentException.class, () -> detector.parse(bad), bad);
+    }
+
+    // an adaptive detector reads ambiguous dates in the order of the last one parsed
+    DateDetector column = new DateDetector();
+    assertEquals(date(1977, 6, 5), column.parse("05/06/1977"));
+    assertEquals(date(1977, 5, 17), column.parse("05/17/1977"));
+    assertEquals(date(1977, 5, 6), column.parse("05/06/1977"));
+    assertEquals(date(1977, 5, 17), column.parse("17/05/1977"));
+    assertEquals(date(1977, 6, 5), column.parse("05/06/1977"));
+  }
+
+  @Test
+  public void convertDatesConcurrently() throws Exception {
+    List<LocalDate> dates = new ArrayList<>();
+    for (LocalDate d = date(1950, 1, 1); d.getYear() < 2050; d = d.plusDays(7)) {
+      dates.add(d);
+    }
+    DateTimeFormatter[] formats = {DateTimeFormatter.ofPattern("dd-MM-uuuu"),
+                                   DateTimeFormatter.ofPattern("uuuu/MM/dd"),
+                                   DateTimeFormatter.ofPattern("d MMM uuuu", Locale.ENGLISH),
+                                   DateTimeFormatter.ofPattern("uuuuMMdd")};
+    List<Thread> threads = new ArrayList<>();
+    AtomicInteger failures = new AtomicInteger();
+    for (int t = 0; t < 8; t++) {
+      DateTimeFormatter format = formats[t % formats.length];
+      Thread thread = new Thread(() -> {
+        for (LocalDate d: dates) {
+          if (!d.equals(Convert.convertDate(format.format(d)))) {
+            failures.incrementAndGet();
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread: threads) {
+      thread.join();
+    }
+    assertEquals(0, failures.get());
+  }
+
   private static LocalDate date(int year, int month, int day) {
     return LocalDate.of(year, month, day);
   }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class ConverterTest {
+  @Test
+  public void convertValues() {
+    assertSame(Converter.of(String.class, "int"), Converter.of(String.class, "int"));
+    assertSame(Converter.of(String.class, "text"), Converter.of(String.class, "string"));
+    assertEquals(42, Converter.of(String.class, "int").convert(" 42 "));
+    assertEquals(42L, Converter.of(Integer.class, "long").convert(42));
+    assertEquals(42L, Converter.of(String.class, "long").convert(42));
+    assertEquals(true, Converter.of(String.class, "bool").convert(" Yes"));
+    assertEquals(false, Converter.of(String.class, "bool").convert("10"));
+    assertEquals(true, Converter.of(Integer.class, "bool").convert(3));
+    assertEquals(LocalDate.of(1977, 5, 17), Converter.of(String.class, "date").convert("17-05-1977"));
+    assertEquals(LocalDate.of(1977, 5, 17), Converter.of(String.class, "date").convert("1977-05-17T00:00:00Z"));
+    assertEquals("x", Converter.of(String.class, "variable").convert("x"));
+    assertEquals((short)3, Converter.of(Byte.class, "short").convert((byte)3));
+    assertEquals(1000.0, Converter.of(String.class, "double").convert("1E3"));
+    assertEquals(7.0, Converter.of(Long.class, "double").convert(7L));
+    assertEquals(UUID.fromString("5b2b9d2c-6bd4-4f6a-9a2e-6a2b6f0d2a11"),
+                 Converter.of(String.class, "uuid").convert("5B2B9D2C-6BD4-4F6A-9A2E-6A2B6F0D2A11 "));
+    assertNull(Converter.of(String.class, "int").convert(null));
+    assertThrows(NumberFormatException.class, () -> Converter.of(String.class, "int").convert("4.2"));
+  }
+
+  @Test
+  public void batch() {
+    String[] column = {"1", null, " 3 ", "x", "2147483648", "-6"};
+    long[] validity = Converter.validity(column.length);
+    assertArrayEquals(new int[]{1, 0, 3, 0, 0, -6}, Converter.of(String.class, "int").toInts(column, validity));
+    assertEquals(0b100101L, validity[0]);
+    assertTrue(Converter.isValid(validity, 5));
+    assertFalse(Converter.isValid(validity, 1));
+
+    assertArrayEquals(new long[]{1, 0, 3, 0, 2147483648L, -6}, Converter.of(String.class, "long").toLongs(column, validity));
+    assertEquals(0b110101L, validity[0]);
+
+    List<Object> mixed = new LinkedList<>(List.of("1.5", 2, 3L, "x"));
+    assertArrayEquals(new double[]{1.5, 2, 3, 0}, Converter.of(String.class, "double").toDoubles(mixed, validity));
+    assertEquals(0b0111L, validity[0]);
+
+    LocalDate[] dates = Converter.of(String.class, "date").toArray(new String[]{"17-05-1977", "never"}, LocalDate.class, validity);
+    assertArrayEquals(new LocalDate[]{LocalDate.of(1977, 5, 17), null}, dates);
+    assertEquals(0b01L, validity[0]);
+    assertThrows(ArrayStoreException.class,
+                 () -> Converter.of(String.class, "date").toArray(new String[]{"never", "17-05-1977"}, String.class, validity));
+
+    assertThrows(IllegalArgumentException.class, () -> Converter.of(String.class, "date").toInts(column, validity));
+    assertThrows(IllegalArgumentException.class, () -> Converter.of(String.class, "int").toInts(column, new long[0]));
+  }
+
+  @Test
+  public void parallelBatch() {
+    int size = 100_003;
+    List<String> column = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      column.add(i % 7 == 0 ? null : i % 11 == 0 ? "n/a" : String.valueOf(i));
+    }
+    long[] validity = Converter.validity(size);
+    long[] longs = Converter.of(String.class, "long").toLongs(column, validity);
+    for (int i = 0; i < size; i++) {
+      boolean valid = i % 7 != 0 && i % 11 != 0;
+      assertEquals(valid, Converter.isValid(validity, i), "Validity of " + i);
+      assertEquals(valid ? i : 0, longs[i]);
+    }
+    assertThrows(ArrayStoreException.class,
+                 () -> Converter.of(String.class, "long").toArray(column, Integer.class, validity));
+  }
+}
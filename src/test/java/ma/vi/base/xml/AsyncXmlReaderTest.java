@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.xml;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class AsyncXmlReaderTest {
+  @Test
+  public void sameFragmentsAsXmlReader() {
+    // the async parser only reads UTF-8 (or US-ASCII) documents
+    String document = new XmlReaderTest().charts.replace("encoding=\"windows-1252\"", "encoding=\"UTF-8\"");
+    List<Fragment> expected = new ArrayList<>();
+    new XmlReader(new StringReader(document)).forEach(expected::add);
+
+    for (int chunkSize: new int[]{1, 7, 64, document.length()}) {
+      assertEquals(expected, readInChunks(document, chunkSize), "Chunks of " + chunkSize + " bytes");
+    }
+  }
+
+  @Test
+  public void incompleteInput() {
+    AsyncXmlReader xml = new AsyncXmlReader();
+    assertNull(xml.next());
+    assertTrue(xml.needsInput());
+
+    xml.feed(ByteBuffer.wrap("<a x='1'>\u00e9t".getBytes(UTF_8)));
+    assertEquals(new Fragment(Fragment.Type.T_START_ELEMENT, "a", Map.of("x", "1")), xml.next());
+    assertNull(xml.next());
+    assertTrue(xml.needsInput());
+    assertFalse(xml.isFinished());
+
+    xml.feed(ByteBuffer.wrap("\u00e9</a>".getBytes(UTF_8)));
+    xml.endOfInput();
+    assertEquals(new Fragment(Fragment.Type.T_TEXT, "\u00e9t\u00e9", Map.of()), xml.next());
+    assertEquals(new Fragment(Fragment.Type.T_END_ELEMENT, "a", Map.of()), xml.next());
+    assertEquals(new Fragment(Fragment.Type.T_END_DOCUMENT, null, Map.of()), xml.next());
+    assertNull(xml.next());
+    assertTrue(xml.isFinished());
+    assertThrows(IllegalStateException.class, () -> xml.feed(ByteBuffer.allocate(1)));
+    xml.close();
+  }
+
+  @Test
+  public void unsupportedEncoding() {
+    try (AsyncXmlReader xml = new AsyncXmlReader()) {
+      xml.feed(ByteBuffer.wrap(new XmlReaderTest().charts.getBytes(UTF_8)));
+      xml.endOfInput();
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class, xml::next);
+      assertTrue(e.getMessage().contains("windows-1252"), e.getMessage());
+    }
+    try (AsyncXmlReader xml = new AsyncXmlReader()) {
+      xml.feed(ByteBuffer.wrap("<?xml version='1.0' encoding='US-ASCII'?><a/>".getBytes(UTF_8)));
+      xml.endOfInput();
+      assertEquals(new Fragment(Fragment.Type.T_START_ELEMENT, "a", Map.of()), xml.next());
+    }
+  }
+
+  private static List<Fragment> readInChunks(String document, int chunkSize) {
+    byte[] bytes = document.getBytes(UTF_8);
+    List<Fragment> fragments = new ArrayList<>();
+    try (AsyncXmlReader xml = new AsyncXmlReader()) {
+      for (int i = 0; i < bytes.length; i += chunkSize) {
+        xml.feed(ByteBuffer.wrap(bytes, i, Math.min(chunkSize, bytes.length - i)));
+        for (Fragment f = xml.next(); f != null; f = xml.next()) {
+          fragments.add(f);
+        }
+        assertTrue(xml.needsInput() || xml.isFinished());
+      }
+      xml.endOfInput();
+      for (Fragment f = xml.next(); f != null; f = xml.next()) {
+        fragments.add(f);
+      }
+      assertTrue(xml.isFinished());
+    }
+    return fragments;
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.xml;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class XmlBinderTest {
+  public static class Supplier {
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    private String name;
+    private String country;
+  }
+
+  public static class Item {
+    private int id;
+    private String name;
+    private double price;
+    private boolean available;
+    private Supplier supplier;
+    private Item related;
+  }
+
+  static final String feed =
+      "<feed>\n" +
+      "  <item id='1' available='true'>\n" +
+      "    <name>Pen</name>\n" +
+      "    <price> 1.5 </price>\n" +
+      "    <unknown><name>ignored</name></unknown>\n" +
+      "    <supplier name='Acme'><country>MU</country></supplier>\n" +
+      "  </item>\n" +
+      "  <other><item id='99'/></other>\n" +
+      "  <item id='2'>\n" +
+      "    <name>Ink <!-- comment -->bottle</name>\n" +
+      "    <related id='3'><name>Nib</name></related>\n" +
+      "  </item>\n" +
+      "</feed>";
+
+  @Test
+  public void bindElements() {
+    XmlReader xml = new XmlReader(new StringReader(feed));
+    List<Item> items = new ArrayList<>();
+    xml.objects(XmlPath.compile("/feed/item"), XmlBinder.of(Item.class)).forEach(items::add);
+    assertEquals(2, items.size());
+
+    Item pen = items.get(0);
+    assertEquals(1, pen.id);
+    assertEquals("Pen", pen.name);
+    assertEquals(1.5, pen.price);
+    assertTrue(pen.available);
+    assertEquals("Acme", pen.supplier.name);
+    assertEquals("MU", pen.supplier.country);
+    assertNull(pen.related);
+
+    Item ink = items.get(1);
+    assertEquals(2, ink.id);
+    assertEquals("Ink bottle", ink.name);
+    assertFalse(ink.available);
+    assertNull(ink.supplier);
+    assertEquals(3, ink.related.id);
+    assertEquals("Nib", ink.related.name);
+  }
+
+  @Test
+  public void bindAtCursor() {
+    XmlReader xml = new XmlReader(new StringReader("<supplier name='Acme'><country>MU</country></supplier>"));
+    Supplier supplier = XmlBinder.of(Supplier.class).bind(xml);
+    assertEquals("Acme", supplier.name);
+    assertEquals("MU", supplier.country);
+    assertSame(XmlBinder.of(Supplier.class), XmlBinder.of(Supplier.class));
+    assertThrows(IllegalArgumentException.class, () -> XmlBinder.of(Runnable.class));
+  }
+}
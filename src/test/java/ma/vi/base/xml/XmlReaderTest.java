@@ -9,8 +9,10 @@ import ma.vi.base.tuple.T2;
 import org.junit.jupiter.api.Test;
 
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.StreamSupport;
 
 import static java.util.Collections.emptyMap;
@@ -229,4 +231,191 @@ public class XmlReaderTest {
       System.out.println(de);
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void cursor() {
+    XmlReader in = XmlReaderBuilder.newBuilder(new StringReader(xml2))
+                                   .discardComments(false)
+                                   .build();
+    assertNull(in.type());
+    assertEquals(T_START_ELEMENT, in.advance());
+    assertEquals("a", in.name());
+    assertEquals(2, in.attributeCount());
+    assertEquals("b", in.attribute("a"));
+    assertEquals("d", in.attribute("c"));
+    assertNull(in.attribute("x"));
+    assertEquals(new Fragment(T_START_ELEMENT, "a", Maps.of(T2.of("a", "b"), T2.of("c", "d"))), in.fragment());
+
+    StringBuilder text = new StringBuilder();
+    while (in.advance() == T_TEXT) {
+      assertNull(in.name());
+      text.append(in.text());
+    }
+    assertEquals("\ntest\n ", text.toString());
+    assertEquals(T_COMMENT, in.type());
+    assertEquals(" A comment ", in.text().toString());
+
+    int elements = 0;
+    while (in.advance() != null) {
+      if (in.type() == T_START_ELEMENT) {
+        elements++;
+      } else if (in.type() == T_TEXT && !in.isWhitespace()) {
+        assertEquals(in.fragment().text, in.text().toString());
+      }
+    }
+    assertEquals(4, elements);
+    assertNull(in.type());
+    assertThrows(IllegalStateException.class, in::next);
+  }
+
+  @Test
+  public void pathValues() {
+    assertEquals(List.of("Price Trend"),
+                 values(charts, "/obj_ref_charts/chart/name"));
+    assertEquals(List.of("Price Trend", "Item Specification", "P&P>IA\tte<>st"),
+                 values(charts, "//name"));
+    assertEquals(List.of("84412", "84413"),
+                 values(charts, "/obj_ref_charts/chart[@type='test']/fields/chartField/sequence"));
+    assertEquals(List.of(),
+                 values(charts, "/obj_ref_charts/chart[@type='other']//sequence"));
+    assertEquals(List.of("price"),
+                 values(charts, "//chartField/member"));
+    assertEquals(List.of("test"), values(charts, "//chart/@type"));
+    assertEquals(List.of("lsd"), values(charts, "/*/chart[@type]/@att"));
+    assertEquals(List.of("b"), values(xml2, "/a/@a"));
+    assertEquals(List.of("c", "d", "   "), values(xml2, "/a/b/*"));
+
+    assertThrows(IllegalArgumentException.class, () -> XmlPath.compile("a/b"));
+    assertThrows(IllegalArgumentException.class, () -> XmlPath.compile("/a/@b/c"));
+    assertThrows(IllegalArgumentException.class, () -> XmlPath.compile("/a[b]"));
+    assertThrows(IllegalArgumentException.class, () -> XmlPath.compile("/a[@b='c]"));
+  }
+
+  @Test
+  public void pathFragments() {
+    XmlReader in = new XmlReader(new StringReader(xml2));
+    List<Fragment> fragments = new ArrayList<>();
+    in.fragments(XmlPath.compile("//b/*")).forEach(fragments::add);
+    assertEquals(Arrays.asList(
+        new Fragment(T_START_ELEMENT, "c", emptyMap()),
+        new Fragment(T_TEXT, "c", emptyMap()),
+        new Fragment(T_END_ELEMENT, "c", emptyMap()),
+        new Fragment(T_START_ELEMENT, "d", emptyMap()),
+        new Fragment(T_TEXT, "d", emptyMap()),
+        new Fragment(T_END_ELEMENT, "d", emptyMap()),
+        new Fragment(T_START_ELEMENT, "e", emptyMap()),
+        new Fragment(T_TEXT, "   ", emptyMap()),
+        new Fragment(T_END_ELEMENT, "e", emptyMap())
+    ), fragments);
+  }
+
+  @Test
+  public void markAndReset() {
+    checkMarkAndReset(XmlReaderBuilder.newBuilder(new StringReader(feed(500))).build());
+  }
+
+  @Test
+  public void markAndResetWithSpill() {
+    checkMarkAndReset(XmlReaderBuilder.newBuilder(new StringReader(feed(500)))
+                                      .spillThreshold(256)
+                                      .build());
+  }
+
+  @Test
+  public void attributesWithSameLocalName() {
+    XmlReader in = new XmlReader(new StringReader(
+        "<r xmlns:a='urn:a' xmlns:b='urn:b' a:id='1' c='3' b:id='2'/>"));
+    Fragment r = in.next();
+    while (r.type != T_START_ELEMENT) {
+      r = in.next();
+    }
+    Map<String, String> attributes = r.attributes;
+    assertEquals(2, attributes.size());
+    assertEquals(2, attributes.entrySet().size());
+    assertEquals(List.of("id", "c"), new ArrayList<>(attributes.keySet()));
+    assertEquals("2", attributes.get("id"));
+    assertEquals(Maps.of(T2.of("id", "2"), T2.of("c", "3")), attributes);
+
+    AttributeMap unique = new AttributeMap(new String[]{"x", "1", "y", "2"});
+    assertEquals(2, unique.size());
+    assertEquals("2", unique.get("y"));
+  }
+
+  @Test
+  public void canonicalNames() {
+    XmlReader in = XmlReaderBuilder.newBuilder(new StringReader(feed(3))).rewindCapacity(10).build();
+    String item = in.symbols().of("item");
+    String id = in.symbols().of(new char[]{'x', 'i', 'd'}, 1, 2);
+    in.mark();
+    List<Fragment> fragments = new ArrayList<>();
+    in.forEach(fragments::add);
+    Fragment first = fragments.get(1);
+    assertSame(item, first.text);
+    assertSame(item, fragments.get(3).text);
+    assertSame(id, first.attributes.keySet().iterator().next());
+    assertEquals(Maps.of(T2.of("id", "0")), first.attributes);
+    assertEquals(Maps.of(T2.of("id", "0")).hashCode(), first.attributes.hashCode());
+    assertThrows(UnsupportedOperationException.class, () -> first.attributes.put("a", "b"));
+
+    // names of fragments decoded after a reset are canonical too
+    in.reset();
+    assertEquals(fragments.get(0), in.next());
+    assertSame(item, in.next().text);
+    assertSame(id, in.previous().attributes.keySet().iterator().next());
+    assertEquals(3, in.symbols().size());
+  }
+
+  private static void checkMarkAndReset(XmlReader in) {
+    assertThrows(IllegalStateException.class, in::reset);
+    assertEquals(new Fragment(T_START_ELEMENT, "feed", emptyMap()), in.next());
+
+    in.mark();
+    List<Fragment> ahead = new ArrayList<>();
+    while (in.hasNext()) {
+      ahead.add(in.next());
+    }
+    assertEquals(1502, ahead.size());
+    assertEquals(new Fragment(T_START_ELEMENT, "item", Maps.of(T2.of("id", "0"))), ahead.get(0));
+    assertEquals(new Fragment(T_TEXT, "Item 499", emptyMap()), ahead.get(1498));
+
+    // reset any number of times, reading everything or part of the lookahead
+    in.reset();
+    for (Fragment f: ahead) {
+      assertEquals(f, in.next());
+    }
+    assertFalse(in.hasNext());
+    in.reset();
+    for (int i = 0; i < 10; i++) {
+      assertEquals(ahead.get(i), in.next());
+    }
+    assertEquals(ahead.get(8), in.previous(2));
+    in.rewind(10);
+    assertEquals(ahead.get(0), in.next());
+
+    // moving the mark keeps the fragments already read ahead of it
+    in.mark();
+    for (int i = 1; i < ahead.size(); i++) {
+      assertEquals(ahead.get(i), in.next());
+    }
+    in.reset();
+    assertEquals(ahead.get(1), in.next());
+
+    in.unmark();
+    assertThrows(IllegalStateException.class, in::reset);
+    in.close();
+  }
+
+  private static String feed(int items) {
+    StringBuilder feed = new StringBuilder("<feed>");
+    for (int i = 0; i < items; i++) {
+      feed.append("<item id='").append(i).append("'>Item ").append(i).append("</item>");
+    }
+    return feed.append("</feed>").toString();
+  }
+
+  private static List<String> values(String xml, String path) {
+    List<String> values = new ArrayList<>();
+    new XmlReader(new StringReader(xml)).values(XmlPath.compile(path)).forEach(values::add);
+    return values;
+  }
+}
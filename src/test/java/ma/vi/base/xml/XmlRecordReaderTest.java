@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.xml;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static ma.vi.base.xml.Fragment.Type.T_START_ELEMENT;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class XmlRecordReaderTest {
+  @Test
+  public void recordsInOrder() {
+    StringBuilder feed = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<feed>\n");
+    int count = 20_000;
+    for (int i = 0; i < count; i++) {
+      if (i % 1000 == 0) {
+        feed.append("<record id='").append(i).append("' note='a > b'/>\n");
+      } else {
+        feed.append("<record\tid=\"").append(i).append("\"><name>Record \u00e9 ").append(i)
+            .append("</name><records><record-ref/></records></record>\n");
+      }
+    }
+    feed.append("</feed>");
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<String> ids = new ArrayList<>();
+    try (XmlRecordReader<String> records = new XmlRecordReader<>(
+        Channels.newChannel(new ByteArrayInputStream(feed.toString().getBytes(StandardCharsets.UTF_8))),
+        StandardCharsets.UTF_8, "record", XmlRecordReaderTest::id, executor, 4, 1024)) {
+      for (String id: records) {
+        ids.add(id);
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(count, ids.size());
+    for (int i = 0; i < count; i++) {
+      assertEquals(String.valueOf(i), ids.get(i));
+    }
+  }
+
+  @Test
+  public void unterminatedRecord() {
+    byte[] feed = "<feed><record id='1'></record><record id='2'>".getBytes(StandardCharsets.UTF_8);
+    XmlRecordReader<String> records = new XmlRecordReader<>(
+        Channels.newChannel(new ByteArrayInputStream(feed)), "record", XmlRecordReaderTest::id);
+    assertThrows(IllegalArgumentException.class, records::hasNext);
+  }
+
+  private static String id(XmlReader xml) {
+    assertEquals(T_START_ELEMENT, xml.advance());
+    assertEquals("record", xml.name());
+    String id = xml.attribute("id");
+    if (Integer.parseInt(id) % 1000 != 0) {
+      // paths are matched from the current position, i.e. in the record element
+      assertEquals("Record \u00e9 " + id, xml.values(XmlPath.compile("/name")).iterator().next());
+    }
+    return id;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018 Vikash Madhow
+ */
+
+package ma.vi.base.xml;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Vikash Madhow (vikash.madhow@gmail.com)
+ */
+public class XmlWriterTest {
+  @Test
+  public void writeElements() {
+    StringWriter out = new StringWriter();
+    try (XmlWriter xml = new XmlWriter(out)) {
+      xml.start("a").attribute("x", "1 < 2 & \"3\"\n")
+           .start("b").text("x < y && y > z").end()
+           .start("c").end()
+           .comment(" note ")
+           .processingInstruction("pi", "data")
+         .endDocument();
+    }
+    assertEquals("<a x=\"1 &lt; 2 &amp; &quot;3&quot;&#10;\">" +
+                 "<b>x &lt; y &amp;&amp; y &gt; z</b>" +
+                 "<c/>" +
+                 "<!-- note -->" +
+                 "<?pi data?>" +
+                 "</a>", out.toString());
+
+    XmlWriter xml = new XmlWriter(new StringWriter());
+    assertThrows(IllegalStateException.class, xml::end);
+    assertThrows(IllegalStateException.class, () -> xml.text("t").attribute("a", "b"));
+    xml.close();
+  }
+
+  @Test
+  public void roundTrip() {
+    String document = new XmlReaderTest().charts;
+    List<Fragment> fragments = fragments(document);
+
+    StringWriter out = new StringWriter();
+    try (XmlWriter xml = new XmlWriter(out)) {
+      xml.writeAll(fragments);
+    }
+    assertEquals(fragments, fragments(out.toString()));
+  }
+
+  @Test
+  public void largeDocumentToChannel() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (XmlWriter xml = new XmlWriter(Channels.newChannel(bytes), UTF_8)) {
+      xml.startDocument().start("items");
+      for (int i = 0; i < 20_000; i++) {
+        xml.start("item").attribute("id", String.valueOf(i))
+           .text("\u00e9l\u00e9ment \ud83d\ude00 & ").text(new char[]{'<', 'x', '>'}, 0, 3)
+           .end();
+      }
+      xml.end();
+    }
+    int count = 0;
+    String text = bytes.toString(UTF_8);
+    for (Fragment f: new XmlReader(new StringReader(text))) {
+      if (f.type == Fragment.Type.T_TEXT) {
+        assertEquals("\u00e9l\u00e9ment \ud83d\ude00 & <x>", f.text);
+        count++;
+      }
+    }
+    assertEquals(20_000, count);
+  }
+
+  private static List<Fragment> fragments(String document) {
+    List<Fragment> fragments = new ArrayList<>();
+    for (Fragment f: XmlReaderBuilder.newBuilder(new StringReader(document))
+                                     .discardComments(false)
+                                     .build()) {
+      fragments.add(f);
+    }
+    return fragments;
+  }
+}